@@ -9,15 +9,14 @@ public class DistributedLockConfig {
     
     public static final class LockKeys {
         public static final String PRIZE_DRAW = "prize_draw:activity:";
-        public static final String USER_DRAW_COUNT = "user_draw_count:";
         public static final String ACTIVITY_STATUS = "activity_status:";
         
         private LockKeys() {}
     }
     
     public static final class TimeoutConfig {
-        public static final long PRIZE_DRAW_TIMEOUT_SECONDS = 10L;
-        public static final long USER_VALIDATION_TIMEOUT_SECONDS = 5L;
+        // Kept short so a crashed holder frees the key quickly; live holders are renewed by the watchdog
+        public static final long PRIZE_DRAW_TIMEOUT_SECONDS = 3L;
         public static final long ACTIVITY_UPDATE_TIMEOUT_SECONDS = 30L;
         
         private TimeoutConfig() {}
@@ -27,6 +26,11 @@ public class DistributedLockConfig {
     private long defaultTimeoutSeconds = 30L;
     private int maxRetryAttempts = 3;
     private long retryDelayMillis = 100L;
+    private long maxRetryDelayMillis = 1000L;
+    private long maxWaitMillis = 3000L;
+    private boolean releaseNotification = false;
+    private boolean watchdogEnabled = true;
+    private long watchdogIntervalMillis = 1000L;
 
     public boolean isEnabled() {
         return enabled;
@@ -59,4 +63,44 @@ public class DistributedLockConfig {
     public void setRetryDelayMillis(long retryDelayMillis) {
         this.retryDelayMillis = retryDelayMillis;
     }
+
+    public long getMaxRetryDelayMillis() {
+        return maxRetryDelayMillis;
+    }
+
+    public void setMaxRetryDelayMillis(long maxRetryDelayMillis) {
+        this.maxRetryDelayMillis = maxRetryDelayMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public boolean isReleaseNotification() {
+        return releaseNotification;
+    }
+
+    public void setReleaseNotification(boolean releaseNotification) {
+        this.releaseNotification = releaseNotification;
+    }
+
+    public boolean isWatchdogEnabled() {
+        return watchdogEnabled;
+    }
+
+    public void setWatchdogEnabled(boolean watchdogEnabled) {
+        this.watchdogEnabled = watchdogEnabled;
+    }
+
+    public long getWatchdogIntervalMillis() {
+        return watchdogIntervalMillis;
+    }
+
+    public void setWatchdogIntervalMillis(long watchdogIntervalMillis) {
+        this.watchdogIntervalMillis = watchdogIntervalMillis;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,56 @@
+package org.example.demolottery.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.demolottery.service.AdaptiveDrawAdmissionController;
+import org.example.demolottery.service.DrawAdmissionController;
+import org.example.demolottery.service.DrawRandomSource;
+import org.example.demolottery.service.LocalDrawAdmissionController;
+import org.example.demolottery.service.RedisDrawAdmissionController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Configuration
+public class DrawAdmissionConfig {
+
+    public static final String LOCAL = "local";
+    public static final String REDIS = "redis";
+
+    @Value("${app.lottery.admission.mode:" + LOCAL + "}")
+    private String admissionMode;
+
+    @Value("${app.lottery.admission.lease-millis:10000}")
+    private long leaseMillis;
+
+    @Value("${app.lottery.admission.adaptive.enabled:false}")
+    private boolean adaptiveEnabled;
+
+    @Value("${app.lottery.admission.adaptive.initial-limit:20}")
+    private int adaptiveInitialLimit;
+
+    @Value("${app.lottery.admission.adaptive.min-limit:4}")
+    private int adaptiveMinLimit;
+
+    @Value("${app.lottery.admission.adaptive.smoothing:0.2}")
+    private double adaptiveSmoothing;
+
+    @Value("${app.lottery.admission.adaptive.long-window:600}")
+    private int adaptiveLongWindow;
+
+    @Bean
+    public DrawAdmissionController drawAdmissionController(StringRedisTemplate stringRedisTemplate,
+                                                           DrawRandomSource drawRandomSource,
+                                                           MeterRegistry meterRegistry) {
+        DrawAdmissionController ceiling = switch (admissionMode) {
+            case LOCAL -> new LocalDrawAdmissionController();
+            case REDIS -> new RedisDrawAdmissionController(stringRedisTemplate, drawRandomSource, leaseMillis);
+            default -> throw new IllegalArgumentException("Unknown app.lottery.admission.mode: " + admissionMode);
+        };
+        if (!adaptiveEnabled) {
+            return ceiling;
+        }
+        return new AdaptiveDrawAdmissionController(ceiling, meterRegistry, adaptiveInitialLimit,
+                adaptiveMinLimit, adaptiveSmoothing, adaptiveLongWindow);
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.demolottery.config;
+
+import org.example.demolottery.repository.UserActivityQuotaRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.service.DrawQuotaStore;
+import org.example.demolottery.service.InMemoryDrawQuotaStore;
+import org.example.demolottery.service.RedisDrawQuotaStore;
+import org.example.demolottery.service.TableDrawQuotaStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+public class DrawQuotaStoreConfig {
+
+    public static final String DATABASE = "database";
+    public static final String IN_MEMORY = "in-memory";
+    public static final String REDIS = "redis";
+    public static final String TABLE = "table";
+
+    @Value("${app.lottery.quota-store:" + DATABASE + "}")
+    private String quotaStore;
+
+    @Bean
+    public DrawQuotaStore drawQuotaStore(UserLotteryRecordRepository recordRepository,
+                                         UserActivityQuotaRepository quotaRepository,
+                                         StringRedisTemplate stringRedisTemplate,
+                                         PlatformTransactionManager transactionManager) {
+        return switch (quotaStore) {
+            case IN_MEMORY -> new InMemoryDrawQuotaStore(recordRepository);
+            case REDIS -> new RedisDrawQuotaStore(stringRedisTemplate, recordRepository);
+            // Both are the database-only store; counting records per draw could not reserve atomically
+            case DATABASE, TABLE -> new TableDrawQuotaStore(quotaRepository, recordRepository, transactionManager);
+            default -> throw new IllegalArgumentException("Unknown app.lottery.quota-store: " + quotaStore);
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.demolottery.config;
+
+import org.example.demolottery.service.DrawRandomSource;
+import org.example.demolottery.service.SharedSecureRandomSource;
+import org.example.demolottery.service.ThreadLocalDrbgRandomSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DrawRandomSourceConfig {
+
+    public static final String SHARED_SECURE_RANDOM = "shared-secure-random";
+    public static final String THREAD_LOCAL_DRBG = "thread-local-drbg";
+
+    @Value("${app.lottery.random.source:" + THREAD_LOCAL_DRBG + "}")
+    private String randomSource;
+
+    @Value("${app.lottery.random.reseed-interval:100000}")
+    private long reseedInterval;
+
+    @Value("${app.lottery.random.reseed-period-millis:60000}")
+    private long reseedPeriodMillis;
+
+    @Bean
+    public DrawRandomSource drawRandomSource() {
+        return switch (randomSource) {
+            case SHARED_SECURE_RANDOM -> new SharedSecureRandomSource();
+            case THREAD_LOCAL_DRBG -> new ThreadLocalDrbgRandomSource(reseedInterval, reseedPeriodMillis);
+            default -> throw new IllegalArgumentException("Unknown app.lottery.random.source: " + randomSource);
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.demolottery.config;
+
+import org.example.demolottery.util.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    // Has to differ between instances writing to the same database
+    @Value("${app.lottery.id-generator.node-id:0}")
+    private long nodeId;
+
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator() {
+        return new SnowflakeIdGenerator(nodeId);
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.demolottery.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.demolottery.service.DistributedLockService;
+import org.example.demolottery.service.HierarchicalLockProvider;
+import org.example.demolottery.service.LocalLockProvider;
+import org.example.demolottery.service.LockProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+@Configuration
+public class LockProviderConfig {
+
+    public static final String LOCAL = "local";
+    public static final String REDIS = "redis";
+    public static final String HIERARCHICAL = "hierarchical";
+
+    // Unset falls back to the older on/off switch: Redis when enabled, otherwise local locks
+    @Value("${app.distributed-lock.mode:}")
+    private String mode;
+
+    @Value("${app.distributed-lock.enabled:false}")
+    private boolean distributedLockEnabled;
+
+    @Value("${app.distributed-lock.local-stripes:256}")
+    private int localStripes;
+
+    @Bean
+    public LockProvider lockProvider(RedisTemplate<String, Object> redisTemplate, DistributedLockConfig config,
+                                     MeterRegistry meterRegistry) {
+        String resolvedMode = mode.isBlank() ? (distributedLockEnabled ? REDIS : LOCAL) : mode;
+        return switch (resolvedMode) {
+            case LOCAL -> new LocalLockProvider(localStripes, config.getMaxWaitMillis());
+            case REDIS -> new DistributedLockService(redisTemplate, config, meterRegistry);
+            case HIERARCHICAL -> new HierarchicalLockProvider(
+                    new LocalLockProvider(localStripes, config.getMaxWaitMillis()),
+                    new DistributedLockService(redisTemplate, config, meterRegistry));
+            default -> throw new IllegalArgumentException("Unknown app.distributed-lock.mode: " + resolvedMode);
+        };
+    }
+}
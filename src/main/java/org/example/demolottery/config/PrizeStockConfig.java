@@ -0,0 +1,48 @@
+package org.example.demolottery.config;
+
+import org.example.demolottery.repository.LotteryActivityRepository;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.service.DatabasePrizeStockStrategy;
+import org.example.demolottery.service.InMemoryPrizeStockStrategy;
+import org.example.demolottery.service.LeasedPrizeStockStrategy;
+import org.example.demolottery.service.OptimisticPrizeStockStrategy;
+import org.example.demolottery.service.PrizeInventory;
+import org.example.demolottery.service.PrizeStockStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+public class PrizeStockConfig {
+
+    public static final String DATABASE = "database";
+    public static final String IN_MEMORY = "in-memory";
+    public static final String LEASED = "leased";
+    public static final String OPTIMISTIC = "optimistic";
+
+    @Value("${app.lottery.stock-mode:" + DATABASE + "}")
+    private String stockMode;
+
+    @Value("${app.lottery.optimistic.max-attempts:3}")
+    private int optimisticMaxAttempts;
+
+    @Value("${app.lottery.stock-lease.size:500}")
+    private int leaseSize;
+
+    @Value("${app.lottery.stock-lease.low-watermark:100}")
+    private int leaseLowWatermark;
+
+    @Bean
+    public PrizeStockStrategy prizeStockStrategy(PrizeRepository prizeRepository, PrizeInventory prizeInventory,
+                                                 LotteryActivityRepository activityRepository,
+                                                 PlatformTransactionManager transactionManager) {
+        return switch (stockMode) {
+            case DATABASE -> new DatabasePrizeStockStrategy(prizeRepository);
+            case IN_MEMORY -> new InMemoryPrizeStockStrategy(prizeInventory, prizeRepository, activityRepository);
+            case OPTIMISTIC -> new OptimisticPrizeStockStrategy(prizeRepository, transactionManager, optimisticMaxAttempts);
+            case LEASED -> new LeasedPrizeStockStrategy(prizeRepository, transactionManager, leaseSize, leaseLowWatermark);
+            default -> throw new IllegalArgumentException("Unknown app.lottery.stock-mode: " + stockMode);
+        };
+    }
+}
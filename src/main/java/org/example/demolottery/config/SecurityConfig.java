@@ -1,5 +1,6 @@
 package org.example.demolottery.config;
 
+import jakarta.servlet.DispatcherType;
 import org.example.demolottery.entity.User;
 import org.example.demolottery.repository.UserRepository;
 import org.example.demolottery.security.CustomUserDetailsService;
@@ -65,6 +66,8 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(authz -> authz
+                        // Completion of an already authorized SSE response; the JWT filter does not run again
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Auth endpoints
                         .requestMatchers("/api/v1/auth/**").permitAll()
                         // Public API endpoints
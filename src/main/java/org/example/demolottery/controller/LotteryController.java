@@ -7,12 +7,17 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.example.demolottery.dto.request.LotteryDrawRequest;
+import org.example.demolottery.dto.response.DrawTicketResponse;
 import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.service.AsyncDrawService;
 import org.example.demolottery.service.LotteryService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/v1/lottery")
@@ -21,9 +26,11 @@ import org.springframework.web.bind.annotation.*;
 public class LotteryController {
 
     private final LotteryService lotteryService;
+    private final AsyncDrawService asyncDrawService;
 
-    public LotteryController(LotteryService lotteryService) {
+    public LotteryController(LotteryService lotteryService, AsyncDrawService asyncDrawService) {
         this.lotteryService = lotteryService;
+        this.asyncDrawService = asyncDrawService;
     }
 
     @PostMapping("/draw")
@@ -46,6 +53,57 @@ public class LotteryController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/draw/async")
+    @Operation(
+        summary = "Submit lottery draw",
+        description = "Queue a lottery draw and return a ticket to poll or subscribe to for the result"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Draw accepted"),
+        @ApiResponse(responseCode = "400", description = "Invalid request parameters or draw limit exceeded"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized"),
+        @ApiResponse(responseCode = "429", description = "Draw queue is full")
+    })
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<DrawTicketResponse> submitDraw(
+            @Valid @RequestBody LotteryDrawRequest request,
+            Authentication authentication) {
+        String userId = authentication.getName();
+        DrawTicketResponse ticket = asyncDrawService.submit(userId, request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ticket);
+    }
+
+    @GetMapping("/draw/tickets/{ticketId}")
+    @Operation(
+        summary = "Get draw ticket",
+        description = "Get the status and, once settled, the result of a submitted draw"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved ticket"),
+        @ApiResponse(responseCode = "400", description = "Ticket not found"),
+        @ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<DrawTicketResponse> getDrawTicket(
+            @PathVariable String ticketId,
+            Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(asyncDrawService.getTicket(userId, ticketId));
+    }
+
+    @GetMapping(value = "/draw/tickets/{ticketId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Stream draw result",
+        description = "Server-sent event stream that emits one 'result' event once the draw is settled"
+    )
+    @PreAuthorize("hasRole('USER')")
+    public SseEmitter streamDrawTicket(
+            @PathVariable String ticketId,
+            Authentication authentication) {
+        String userId = authentication.getName();
+        return asyncDrawService.subscribe(userId, ticketId);
+    }
+
     @GetMapping("/draw-count/{activityId}")
     @Operation(
         summary = "Get user draw count",
@@ -2,6 +2,7 @@ package org.example.demolottery.dto.request;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -32,6 +33,12 @@ public class CreateActivityRequest {
     @Min(value = 1, message = "Max concurrent draws must be at least 1")
     private Integer maxConcurrentDraws;
     
+    @Min(value = 1, message = "Ticket pool size must be at least 1")
+    @Max(value = 10_000_000, message = "Ticket pool size cannot exceed 10,000,000")
+    private Integer ticketPoolSize;
+    
+    private Boolean singleWriter;
+    
     @Valid
     private List<CreatePrizeRequest> prizes;
 
@@ -85,6 +92,22 @@ public class CreateActivityRequest {
         this.maxConcurrentDraws = maxConcurrentDraws;
     }
 
+    public Integer getTicketPoolSize() {
+        return ticketPoolSize;
+    }
+
+    public void setTicketPoolSize(Integer ticketPoolSize) {
+        this.ticketPoolSize = ticketPoolSize;
+    }
+
+    public Boolean getSingleWriter() {
+        return singleWriter;
+    }
+
+    public void setSingleWriter(Boolean singleWriter) {
+        this.singleWriter = singleWriter;
+    }
+
     public List<CreatePrizeRequest> getPrizes() {
         return prizes;
     }
@@ -1,6 +1,8 @@
 package org.example.demolottery.dto.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.*;
+import org.example.demolottery.util.ProbabilityUnits;
 
 import java.math.BigDecimal;
 
@@ -12,8 +14,9 @@ public class CreatePrizeRequest {
     private String description;
     
     @NotNull(message = "Probability is required")
-    @DecimalMin(value = "0.01", message = "Probability must be greater than 0")
+    @DecimalMin(value = "0.0001", message = "Probability must be greater than 0")
     @DecimalMax(value = "100.00", message = "Probability cannot exceed 100")
+    @Digits(integer = 3, fraction = 4, message = "Probability supports at most 4 decimal places")
     private BigDecimal probability;
     
     @NotNull(message = "Total quantity is required")
@@ -50,6 +53,11 @@ public class CreatePrizeRequest {
         this.probability = probability;
     }
 
+    @JsonIgnore
+    public int getProbabilityPpm() {
+        return ProbabilityUnits.toPpm(probability);
+    }
+
     public Integer getTotalQuantity() {
         return totalQuantity;
     }
@@ -1,5 +1,6 @@
 package org.example.demolottery.dto.request;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 
 import java.time.LocalDateTime;
@@ -18,6 +19,12 @@ public class UpdateActivityRequest {
     
     @Min(value = 1, message = "Max concurrent draws must be at least 1")
     private Integer maxConcurrentDraws;
+    
+    @Min(value = 1, message = "Ticket pool size must be at least 1")
+    @Max(value = 10_000_000, message = "Ticket pool size cannot exceed 10,000,000")
+    private Integer ticketPoolSize;
+    
+    private Boolean singleWriter;
 
     public UpdateActivityRequest() {}
 
@@ -68,4 +75,20 @@ public class UpdateActivityRequest {
     public void setMaxConcurrentDraws(Integer maxConcurrentDraws) {
         this.maxConcurrentDraws = maxConcurrentDraws;
     }
+
+    public Integer getTicketPoolSize() {
+        return ticketPoolSize;
+    }
+
+    public void setTicketPoolSize(Integer ticketPoolSize) {
+        this.ticketPoolSize = ticketPoolSize;
+    }
+
+    public Boolean getSingleWriter() {
+        return singleWriter;
+    }
+
+    public void setSingleWriter(Boolean singleWriter) {
+        this.singleWriter = singleWriter;
+    }
 } 
\ No newline at end of file
@@ -14,6 +14,8 @@ public class ActivityResponse {
     private LocalDateTime endTime;
     private Integer maxDrawsPerUser;
     private Integer maxConcurrentDraws;
+    private Integer ticketPoolSize;
+    private Boolean singleWriter;
     private LotteryActivity.ActivityStatus status;
     private List<PrizeResponse> prizes;
     private LocalDateTime createdAt;
@@ -76,6 +78,22 @@ public class ActivityResponse {
         this.maxConcurrentDraws = maxConcurrentDraws;
     }
 
+    public Integer getTicketPoolSize() {
+        return ticketPoolSize;
+    }
+
+    public void setTicketPoolSize(Integer ticketPoolSize) {
+        this.ticketPoolSize = ticketPoolSize;
+    }
+
+    public Boolean getSingleWriter() {
+        return singleWriter;
+    }
+
+    public void setSingleWriter(Boolean singleWriter) {
+        this.singleWriter = singleWriter;
+    }
+
     public LotteryActivity.ActivityStatus getStatus() {
         return status;
     }
@@ -0,0 +1,83 @@
+package org.example.demolottery.dto.response;
+
+import java.time.LocalDateTime;
+
+public class DrawTicketResponse {
+
+    private String ticketId;
+    private String status;
+    private Long activityId;
+    private Integer drawCount;
+    private LocalDateTime submittedAt;
+    private LotteryDrawResponse result;
+    private String errorMessage;
+
+    public DrawTicketResponse() {}
+
+    public DrawTicketResponse(String ticketId, String status, Long activityId, Integer drawCount,
+                              LocalDateTime submittedAt, LotteryDrawResponse result, String errorMessage) {
+        this.ticketId = ticketId;
+        this.status = status;
+        this.activityId = activityId;
+        this.drawCount = drawCount;
+        this.submittedAt = submittedAt;
+        this.result = result;
+        this.errorMessage = errorMessage;
+    }
+
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public void setTicketId(String ticketId) {
+        this.ticketId = ticketId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getActivityId() {
+        return activityId;
+    }
+
+    public void setActivityId(Long activityId) {
+        this.activityId = activityId;
+    }
+
+    public Integer getDrawCount() {
+        return drawCount;
+    }
+
+    public void setDrawCount(Integer drawCount) {
+        this.drawCount = drawCount;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(LocalDateTime submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public LotteryDrawResponse getResult() {
+        return result;
+    }
+
+    public void setResult(LotteryDrawResponse result) {
+        this.result = result;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -1,5 +1,8 @@
 package org.example.demolottery.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.example.demolottery.util.ProbabilityUnits;
+
 import java.math.BigDecimal;
 
 public class PrizeResponse {
@@ -7,7 +10,7 @@ public class PrizeResponse {
     private Long id;
     private String name;
     private String description;
-    private BigDecimal probability;
+    private Integer probabilityPpm;
     private Integer totalQuantity;
     private Integer remainingQuantity;
     private String imageUrl;
@@ -40,11 +43,16 @@ public class PrizeResponse {
     }
 
     public BigDecimal getProbability() {
-        return probability;
+        return probabilityPpm != null ? ProbabilityUnits.toPercent(probabilityPpm) : null;
+    }
+
+    @JsonIgnore
+    public Integer getProbabilityPpm() {
+        return probabilityPpm;
     }
 
-    public void setProbability(BigDecimal probability) {
-        this.probability = probability;
+    public void setProbabilityPpm(Integer probabilityPpm) {
+        this.probabilityPpm = probabilityPpm;
     }
 
     public Integer getTotalQuantity() {
@@ -39,6 +39,20 @@ public class LotteryActivity {
     @Column(nullable = false)
     private Integer maxConcurrentDraws;
 
+    // Set for fixed-stock activities drawn from a pre-shuffled ticket pool of this many tickets
+    @Min(value = 1, message = "Ticket pool size must be at least 1")
+    @Column
+    private Integer ticketPoolSize;
+
+    // Drawn by one dedicated thread that owns the activity's stock and commits draws in batches
+    @Column
+    private Boolean singleWriter;
+
+    // Highest prize-draw lock fencing token that has written for this activity. Only moved by
+    // LotteryActivityRepository.advanceLockFence, never by saving the entity.
+    @Column(insertable = false, updatable = false)
+    private Long lockFence;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private ActivityStatus status;
@@ -136,6 +150,26 @@ public class LotteryActivity {
         this.maxConcurrentDraws = maxConcurrentDraws;
     }
 
+    public Integer getTicketPoolSize() {
+        return ticketPoolSize;
+    }
+
+    public void setTicketPoolSize(Integer ticketPoolSize) {
+        this.ticketPoolSize = ticketPoolSize;
+    }
+
+    public Boolean getSingleWriter() {
+        return singleWriter;
+    }
+
+    public void setSingleWriter(Boolean singleWriter) {
+        this.singleWriter = singleWriter;
+    }
+
+    public Long getLockFence() {
+        return lockFence;
+    }
+
     public ActivityStatus getStatus() {
         return status;
     }
@@ -1,12 +1,11 @@
 package org.example.demolottery.entity;
 
 import jakarta.persistence.*;
-import jakarta.validation.constraints.DecimalMax;
-import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -24,10 +23,10 @@ public class Prize {
     private String description;
 
     @NotNull
-    @DecimalMin(value = "0.00", message = "Probability must be between 0 and 100")
-    @DecimalMax(value = "100.00", message = "Probability must be between 0 and 100")
-    @Column(nullable = false, precision = 5, scale = 2)
-    private BigDecimal probability;
+    @Min(value = 0, message = "Probability must be between 0 and 1000000 ppm")
+    @Max(value = 1_000_000, message = "Probability must be between 0 and 1000000 ppm")
+    @Column(name = "probability_ppm", nullable = false)
+    private Integer probabilityPpm;
 
     @NotNull
     @Column(nullable = false)
@@ -46,6 +45,10 @@ public class Prize {
 
     private Integer sortOrder;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -65,10 +68,10 @@ public class Prize {
 
     public Prize() {}
 
-    public Prize(String name, String description, BigDecimal probability, Integer totalQuantity, Long activityId) {
+    public Prize(String name, String description, Integer probabilityPpm, Integer totalQuantity, Long activityId) {
         this.name = name;
         this.description = description;
-        this.probability = probability;
+        this.probabilityPpm = probabilityPpm;
         this.totalQuantity = totalQuantity;
         this.remainingQuantity = totalQuantity;
         this.activityId = activityId;
@@ -98,12 +101,12 @@ public class Prize {
         this.description = description;
     }
 
-    public BigDecimal getProbability() {
-        return probability;
+    public Integer getProbabilityPpm() {
+        return probabilityPpm;
     }
 
-    public void setProbability(BigDecimal probability) {
-        this.probability = probability;
+    public void setProbabilityPpm(Integer probabilityPpm) {
+        this.probabilityPpm = probabilityPpm;
     }
 
     public Integer getTotalQuantity() {
@@ -161,4 +164,12 @@ public class Prize {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-} 
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
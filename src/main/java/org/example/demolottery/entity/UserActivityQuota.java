@@ -0,0 +1,68 @@
+package org.example.demolottery.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+@Entity
+@Table(name = "user_activity_quota",
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uk_quota_user_activity", columnNames = {"userId", "activityId"})
+       })
+public class UserActivityQuota {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotBlank
+    @Column(nullable = false, length = 50)
+    private String userId;
+
+    @NotNull
+    @Column(nullable = false)
+    private Long activityId;
+
+    @NotNull
+    @Column(nullable = false)
+    private Integer drawsUsed;
+
+    public UserActivityQuota() {}
+
+    public UserActivityQuota(String userId, Long activityId, Integer drawsUsed) {
+        this.userId = userId;
+        this.activityId = activityId;
+        this.drawsUsed = drawsUsed;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Long getActivityId() {
+        return activityId;
+    }
+
+    public void setActivityId(Long activityId) {
+        this.activityId = activityId;
+    }
+
+    public Integer getDrawsUsed() {
+        return drawsUsed;
+    }
+
+    public void setDrawsUsed(Integer drawsUsed) {
+        this.drawsUsed = drawsUsed;
+    }
+}
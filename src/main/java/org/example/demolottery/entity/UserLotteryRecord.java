@@ -3,6 +3,7 @@ package org.example.demolottery.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
@@ -12,9 +13,9 @@ import java.time.LocalDateTime;
            @Index(name = "idx_user_activity", columnList = "userId,activityId"),
            @Index(name = "idx_activity_time", columnList = "activityId,createdAt")
        })
-public class UserLotteryRecord {
+public class UserLotteryRecord implements Persistable<Long> {
+    // Assigned from SnowflakeIdGenerator before insert, so rows need no round trip for their key
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @NotBlank
@@ -25,8 +26,8 @@ public class UserLotteryRecord {
     @Column(nullable = false)
     private Long activityId;
 
-    @Column(length = 100)
-    private String batchId;
+    @Column
+    private Long batchId;
 
     @Column
     private Long prizeId;
@@ -41,6 +42,10 @@ public class UserLotteryRecord {
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // With an assigned id, save() would otherwise look the row up to decide between insert and merge
+    @Transient
+    private boolean persisted;
+
     public enum DrawResult {
         WON, NO_PRIZE
     }
@@ -50,16 +55,22 @@ public class UserLotteryRecord {
         createdAt = LocalDateTime.now();
     }
 
+    @PostPersist
+    @PostLoad
+    protected void markPersisted() {
+        persisted = true;
+    }
+
     public UserLotteryRecord() {}
 
-    public UserLotteryRecord(String userId, Long activityId, String batchId, DrawResult result) {
+    public UserLotteryRecord(String userId, Long activityId, Long batchId, DrawResult result) {
         this.userId = userId;
         this.activityId = activityId;
         this.batchId = batchId;
         this.result = result;
     }
 
-    public UserLotteryRecord(String userId, Long activityId, String batchId, 
+    public UserLotteryRecord(String userId, Long activityId, Long batchId, 
                            Long prizeId, String prizeName, DrawResult result) {
         this.userId = userId;
         this.activityId = activityId;
@@ -69,10 +80,16 @@ public class UserLotteryRecord {
         this.result = result;
     }
 
+    @Override
     public Long getId() {
         return id;
     }
 
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
     public void setId(Long id) {
         this.id = id;
     }
@@ -93,11 +110,11 @@ public class UserLotteryRecord {
         this.activityId = activityId;
     }
 
-    public String getBatchId() {
+    public Long getBatchId() {
         return batchId;
     }
 
-    public void setBatchId(String batchId) {
+    public void setBatchId(Long batchId) {
         this.batchId = batchId;
     }
 
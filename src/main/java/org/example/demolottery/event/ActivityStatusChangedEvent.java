@@ -0,0 +1,22 @@
+package org.example.demolottery.event;
+
+import org.example.demolottery.entity.LotteryActivity;
+
+public class ActivityStatusChangedEvent {
+
+    private final Long activityId;
+    private final LotteryActivity.ActivityStatus status;
+
+    public ActivityStatusChangedEvent(Long activityId, LotteryActivity.ActivityStatus status) {
+        this.activityId = activityId;
+        this.status = status;
+    }
+
+    public Long getActivityId() {
+        return activityId;
+    }
+
+    public LotteryActivity.ActivityStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.demolottery.event;
+
+public class PrizesChangedEvent {
+
+    private final Long activityId;
+
+    public PrizesChangedEvent(Long activityId) {
+        this.activityId = activityId;
+    }
+
+    public Long getActivityId() {
+        return activityId;
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.demolottery.exception;
+
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
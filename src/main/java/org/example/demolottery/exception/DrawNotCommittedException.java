@@ -0,0 +1,9 @@
+package org.example.demolottery.exception;
+
+// A draw that failed before anything of it was written, so its quota can be given back
+public class DrawNotCommittedException extends LotteryException {
+
+    public DrawNotCommittedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.demolottery.exception;
+
+// The lock guarding a draw could not be taken in time; nothing was drawn, so the caller may retry
+public class LockAcquisitionException extends RuntimeException {
+
+    public LockAcquisitionException(String message) {
+        super(message);
+    }
+
+    public LockAcquisitionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
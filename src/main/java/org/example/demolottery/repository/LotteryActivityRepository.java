@@ -2,6 +2,7 @@ package org.example.demolottery.repository;
 
 import org.example.demolottery.entity.LotteryActivity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,4 +24,9 @@ public interface LotteryActivityRepository extends JpaRepository<LotteryActivity
     Optional<LotteryActivity> findActiveActivityById(@Param("id") Long id, 
                                                     @Param("status") LotteryActivity.ActivityStatus status, 
                                                     @Param("now") LocalDateTime now);
+    
+    // Matches no row once a newer lock holder has written, and row-locks the activity until commit
+    @Modifying
+    @Query("UPDATE LotteryActivity a SET a.lockFence = :fence WHERE a.id = :id AND (a.lockFence IS NULL OR a.lockFence <= :fence)")
+    int advanceLockFence(@Param("id") Long id, @Param("fence") Long fence);
 } 
\ No newline at end of file
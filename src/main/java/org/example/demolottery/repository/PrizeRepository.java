@@ -13,7 +13,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PrizeRepository extends JpaRepository<Prize, Long> {
+public interface PrizeRepository extends JpaRepository<Prize, Long>, PrizeStockBatchRepository {
     
     List<Prize> findByActivityIdOrderBySortOrderAsc(Long activityId);
     
@@ -24,9 +24,36 @@ public interface PrizeRepository extends JpaRepository<Prize, Long> {
     Optional<Prize> findByIdWithLock(@Param("prizeId") Long prizeId);
     
     @Modifying
-    @Query("UPDATE Prize p SET p.remainingQuantity = p.remainingQuantity - 1 WHERE p.id = :prizeId AND p.remainingQuantity > 0")
+    @Query("UPDATE Prize p SET p.remainingQuantity = p.remainingQuantity - 1, p.version = p.version + 1 WHERE p.id = :prizeId AND p.remainingQuantity > 0")
     int decrementRemainingQuantity(@Param("prizeId") Long prizeId);
     
-    @Query("SELECT SUM(p.probability) FROM Prize p WHERE p.activityId = :activityId")
-    Double getTotalProbabilityByActivityId(@Param("activityId") Long activityId);
+    @Modifying
+    @Query("UPDATE Prize p SET p.remainingQuantity = p.remainingQuantity - :quantity, p.version = p.version + 1 WHERE p.id = :prizeId AND p.remainingQuantity >= :quantity")
+    int decrementRemainingQuantityBy(@Param("prizeId") Long prizeId, @Param("quantity") Integer quantity);
+    
+    @Modifying
+    @Query("UPDATE Prize p SET p.remainingQuantity = p.remainingQuantity - :quantity, p.version = p.version + 1 " +
+           "WHERE p.id = :prizeId AND p.version = :version AND p.remainingQuantity >= :quantity")
+    int decrementRemainingQuantityIfVersion(@Param("prizeId") Long prizeId, @Param("version") Long version,
+                                            @Param("quantity") Integer quantity);
+    
+    @Modifying
+    @Query("UPDATE Prize p SET p.remainingQuantity = p.remainingQuantity + :quantity, p.version = p.version + 1 WHERE p.id = :prizeId")
+    int incrementRemainingQuantityBy(@Param("prizeId") Long prizeId, @Param("quantity") Integer quantity);
+    
+    @Modifying
+    @Query("UPDATE Prize p SET p.remainingQuantity = :remaining, p.version = p.version + 1 WHERE p.id = :prizeId")
+    int updateRemainingQuantity(@Param("prizeId") Long prizeId, @Param("remaining") Integer remaining);
+    
+    // Scalar read, so it sees the current row rather than an entity cached earlier in the transaction
+    @Query("SELECT p.remainingQuantity AS remainingQuantity, p.version AS version FROM Prize p WHERE p.id = :prizeId")
+    Optional<StockSnapshot> findStockSnapshotById(@Param("prizeId") Long prizeId);
+    
+    @Query("SELECT SUM(p.probabilityPpm) FROM Prize p WHERE p.activityId = :activityId")
+    Long getTotalProbabilityPpmByActivityId(@Param("activityId") Long activityId);
+    
+    interface StockSnapshot {
+        Integer getRemainingQuantity();
+        Long getVersion();
+    }
 } 
\ No newline at end of file
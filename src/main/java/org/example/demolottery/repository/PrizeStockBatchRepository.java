@@ -0,0 +1,9 @@
+package org.example.demolottery.repository;
+
+import java.util.Map;
+
+public interface PrizeStockBatchRepository {
+
+    // Applies accumulated stock decrements (prizeId -> units) in one JDBC batch
+    void batchDecrementRemainingQuantity(Map<Long, Integer> decrements);
+}
@@ -0,0 +1,33 @@
+package org.example.demolottery.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class PrizeStockBatchRepositoryImpl implements PrizeStockBatchRepository {
+
+    private static final String DECREMENT_SQL =
+            "UPDATE prizes SET remaining_quantity = remaining_quantity - ?, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PrizeStockBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void batchDecrementRemainingQuantity(Map<Long, Integer> decrements) {
+        if (decrements.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(decrements.entrySet());
+        jdbcTemplate.batchUpdate(DECREMENT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setLong(2, entry.getKey());
+        });
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.demolottery.repository;
+
+import org.example.demolottery.entity.UserActivityQuota;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserActivityQuotaRepository extends JpaRepository<UserActivityQuota, Long> {
+    
+    @Modifying
+    @Query("UPDATE UserActivityQuota q SET q.drawsUsed = q.drawsUsed + :drawCount " +
+           "WHERE q.userId = :userId AND q.activityId = :activityId AND q.drawsUsed + :drawCount <= :maxDraws")
+    int incrementDrawsUsed(@Param("userId") String userId, @Param("activityId") Long activityId,
+                           @Param("drawCount") Integer drawCount, @Param("maxDraws") Integer maxDraws);
+    
+    @Modifying
+    @Query("UPDATE UserActivityQuota q SET q.drawsUsed = q.drawsUsed - :drawCount " +
+           "WHERE q.userId = :userId AND q.activityId = :activityId AND q.drawsUsed >= :drawCount")
+    int decrementDrawsUsed(@Param("userId") String userId, @Param("activityId") Long activityId,
+                           @Param("drawCount") Integer drawCount);
+    
+    @Query("SELECT q.drawsUsed FROM UserActivityQuota q WHERE q.userId = :userId AND q.activityId = :activityId")
+    Optional<Integer> findDrawsUsed(@Param("userId") String userId, @Param("activityId") Long activityId);
+}
@@ -0,0 +1,11 @@
+package org.example.demolottery.repository;
+
+import org.example.demolottery.entity.UserLotteryRecord;
+
+import java.util.List;
+
+public interface UserLotteryRecordBatchRepository {
+
+    // IDENTITY ids stop Hibernate from batching inserts, so bulk writes go straight through JDBC
+    void batchInsert(List<UserLotteryRecord> records);
+}
@@ -0,0 +1,58 @@
+package org.example.demolottery.repository;
+
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.util.SnowflakeIdGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class UserLotteryRecordBatchRepositoryImpl implements UserLotteryRecordBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO user_lottery_records (id, user_id, activity_id, batch_id, prize_id, prize_name, result, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SnowflakeIdGenerator idGenerator;
+
+    public UserLotteryRecordBatchRepositoryImpl(JdbcTemplate jdbcTemplate, SnowflakeIdGenerator idGenerator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public void batchInsert(List<UserLotteryRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_SQL, records, records.size(), (ps, record) -> {
+            if (record.getId() == null) {
+                record.setId(idGenerator.nextId());
+            }
+            if (record.getCreatedAt() == null) {
+                record.setCreatedAt(now);
+            }
+            ps.setLong(1, record.getId());
+            ps.setString(2, record.getUserId());
+            ps.setLong(3, record.getActivityId());
+            if (record.getBatchId() != null) {
+                ps.setLong(4, record.getBatchId());
+            } else {
+                ps.setNull(4, Types.BIGINT);
+            }
+            if (record.getPrizeId() != null) {
+                ps.setLong(5, record.getPrizeId());
+            } else {
+                ps.setNull(5, Types.BIGINT);
+            }
+            ps.setString(6, record.getPrizeName());
+            ps.setString(7, record.getResult().name());
+            ps.setTimestamp(8, Timestamp.valueOf(record.getCreatedAt()));
+        });
+    }
+}
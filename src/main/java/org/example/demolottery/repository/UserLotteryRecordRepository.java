@@ -9,9 +9,11 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
-public interface UserLotteryRecordRepository extends JpaRepository<UserLotteryRecord, Long> {
+public interface UserLotteryRecordRepository extends JpaRepository<UserLotteryRecord, Long>,
+                                                     UserLotteryRecordBatchRepository {
     
     @Query("SELECT COUNT(r) FROM UserLotteryRecord r WHERE r.userId = :userId AND r.activityId = :activityId")
     long countByUserIdAndActivityId(@Param("userId") String userId, @Param("activityId") Long activityId);
@@ -21,6 +23,15 @@ public interface UserLotteryRecordRepository extends JpaRepository<UserLotteryRe
                                                     @Param("activityId") Long activityId, 
                                                     @Param("startTime") LocalDateTime startTime);
     
+    long countByActivityId(Long activityId);
+    
+    @Query("SELECT r.prizeId, COUNT(r) FROM UserLotteryRecord r WHERE r.activityId = :activityId AND r.result = :result GROUP BY r.prizeId")
+    List<Object[]> countByActivityIdAndResultGroupByPrizeId(@Param("activityId") Long activityId,
+                                                           @Param("result") UserLotteryRecord.DrawResult result);
+    
+    @Query("SELECT r.id FROM UserLotteryRecord r WHERE r.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") List<Long> ids);
+    
     Page<UserLotteryRecord> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
     
     Page<UserLotteryRecord> findByActivityIdOrderByCreatedAtDesc(Long activityId, Pageable pageable);
@@ -7,16 +7,18 @@ import org.example.demolottery.dto.response.ActivityResponse;
 import org.example.demolottery.dto.response.PrizeResponse;
 import org.example.demolottery.entity.LotteryActivity;
 import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.ActivityStatusChangedEvent;
 import org.example.demolottery.exception.LotteryException;
 import org.example.demolottery.repository.LotteryActivityRepository;
 import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.util.ProbabilityUnits;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -26,11 +28,14 @@ public class ActivityService {
 
     private final LotteryActivityRepository activityRepository;
     private final PrizeRepository prizeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ActivityService(LotteryActivityRepository activityRepository,
-                          PrizeRepository prizeRepository) {
+                          PrizeRepository prizeRepository,
+                          ApplicationEventPublisher eventPublisher) {
         this.activityRepository = activityRepository;
         this.prizeRepository = prizeRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -45,6 +50,8 @@ public class ActivityService {
                 request.getMaxDrawsPerUser(),
                 request.getMaxConcurrentDraws()
         );
+        activity.setTicketPoolSize(request.getTicketPoolSize());
+        activity.setSingleWriter(request.getSingleWriter());
 
         activity = activityRepository.save(activity);
         
@@ -76,6 +83,18 @@ public class ActivityService {
         if (request.getMaxConcurrentDraws() != null) {
             activity.setMaxConcurrentDraws(request.getMaxConcurrentDraws());
         }
+        if (request.getTicketPoolSize() != null) {
+            if (activity.getStatus() == LotteryActivity.ActivityStatus.ACTIVE) {
+                throw new LotteryException("Ticket pool size cannot be changed while the activity is active");
+            }
+            activity.setTicketPoolSize(request.getTicketPoolSize());
+        }
+        if (request.getSingleWriter() != null) {
+            if (activity.getStatus() == LotteryActivity.ActivityStatus.ACTIVE) {
+                throw new LotteryException("Draw engine cannot be changed while the activity is active");
+            }
+            activity.setSingleWriter(request.getSingleWriter());
+        }
 
         validateActivityTimes(activity.getStartTime(), activity.getEndTime());
         
@@ -89,13 +108,23 @@ public class ActivityService {
         validateActivityTimes(request.getStartTime(), request.getEndTime());
         
         if (request.getPrizes() != null && !request.getPrizes().isEmpty()) {
-            BigDecimal totalProbability = request.getPrizes().stream()
-                    .map(CreatePrizeRequest::getProbability)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            long totalProbabilityPpm = request.getPrizes().stream()
+                    .mapToLong(CreatePrizeRequest::getProbabilityPpm)
+                    .sum();
             
-            if (totalProbability.compareTo(BigDecimal.valueOf(100)) > 0) {
+            if (totalProbabilityPpm > ProbabilityUnits.PPM_SCALE) {
                 throw new LotteryException("Total prize probability cannot exceed 100%");
             }
+
+            validateTicketPoolSize(request.getTicketPoolSize(), request.getPrizes().stream()
+                    .mapToLong(CreatePrizeRequest::getTotalQuantity)
+                    .sum());
+        }
+    }
+
+    private void validateTicketPoolSize(Integer ticketPoolSize, long totalPrizeQuantity) {
+        if (ticketPoolSize != null && totalPrizeQuantity > ticketPoolSize) {
+            throw new LotteryException("Ticket pool size must cover the total prize quantity");
         }
     }
 
@@ -114,7 +143,7 @@ public class ActivityService {
                 .map(request -> new Prize(
                         request.getName(),
                         request.getDescription(),
-                        request.getProbability(),
+                        request.getProbabilityPpm(),
                         request.getTotalQuantity(),
                         activityId))
                 .collect(Collectors.toList());
@@ -171,10 +200,16 @@ public class ActivityService {
         LotteryActivity activity = activityRepository.findById(activityId)
                 .orElseThrow(() -> new LotteryException("Activity not found"));
         
+        List<Prize> prizes = prizeRepository.findByActivityIdOrderBySortOrderAsc(activityId);
+        if (status == LotteryActivity.ActivityStatus.ACTIVE) {
+            validateTicketPoolSize(activity.getTicketPoolSize(), prizes.stream()
+                    .mapToLong(Prize::getTotalQuantity)
+                    .sum());
+        }
+
         activity.setStatus(status);
         activity = activityRepository.save(activity);
-        
-        List<Prize> prizes = prizeRepository.findByActivityIdOrderBySortOrderAsc(activityId);
+        eventPublisher.publishEvent(new ActivityStatusChangedEvent(activityId, status));
         
         return convertToActivityResponse(activity, prizes);
     }
@@ -188,6 +223,8 @@ public class ActivityService {
         response.setEndTime(activity.getEndTime());
         response.setMaxDrawsPerUser(activity.getMaxDrawsPerUser());
         response.setMaxConcurrentDraws(activity.getMaxConcurrentDraws());
+        response.setTicketPoolSize(activity.getTicketPoolSize());
+        response.setSingleWriter(activity.getSingleWriter());
         response.setStatus(activity.getStatus());
         response.setCreatedAt(activity.getCreatedAt());
         
@@ -204,7 +241,7 @@ public class ActivityService {
         response.setId(prize.getId());
         response.setName(prize.getName());
         response.setDescription(prize.getDescription());
-        response.setProbability(prize.getProbability());
+        response.setProbabilityPpm(prize.getProbabilityPpm());
         response.setTotalQuantity(prize.getTotalQuantity());
         response.setRemainingQuantity(prize.getRemainingQuantity());
         response.setImageUrl(prize.getImageUrl());
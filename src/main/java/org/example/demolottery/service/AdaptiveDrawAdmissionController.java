@@ -0,0 +1,166 @@
+package org.example.demolottery.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.demolottery.entity.LotteryActivity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Gradient-style limiter in front of the configured admission controller. Each activity's limit
+// follows the ratio of its long-term draw latency to the latest sample: it grows while draws stay
+// as fast as usual and shrinks once they queue up on the database or Redis. maxConcurrentDraws,
+// enforced by the wrapped controller, stays the hard ceiling.
+public class AdaptiveDrawAdmissionController implements DrawAdmissionController {
+
+    static final String LIMIT_METRIC = "lottery.draw.concurrency.limit";
+    static final String IN_FLIGHT_METRIC = "lottery.draw.concurrency.in-flight";
+    static final String REJECTED_METRIC = "lottery.draw.admission.rejected";
+
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double TOLERANCE = 1.5;
+
+    private final DrawAdmissionController ceiling;
+    private final MeterRegistry meterRegistry;
+    private final int initialLimit;
+    private final int minLimit;
+    private final double smoothing;
+    private final int longWindow;
+    private final LongSupplier nanoClock;
+
+    private final Map<Long, ActivityLimit> limits = new ConcurrentHashMap<>();
+
+    public AdaptiveDrawAdmissionController(DrawAdmissionController ceiling, MeterRegistry meterRegistry,
+                                           int initialLimit, int minLimit, double smoothing, int longWindow) {
+        this(ceiling, meterRegistry, initialLimit, minLimit, smoothing, longWindow, System::nanoTime);
+    }
+
+    AdaptiveDrawAdmissionController(DrawAdmissionController ceiling, MeterRegistry meterRegistry, int initialLimit,
+                                    int minLimit, double smoothing, int longWindow, LongSupplier nanoClock) {
+        if (minLimit < 1 || initialLimit < minLimit || smoothing <= 0 || smoothing > 1 || longWindow < 1) {
+            throw new IllegalArgumentException("Invalid adaptive admission settings");
+        }
+        this.ceiling = ceiling;
+        this.meterRegistry = meterRegistry;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.smoothing = smoothing;
+        this.longWindow = longWindow;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public AdmissionPermit tryAcquire(LotteryActivity activity) {
+        ActivityLimit limit = limits.computeIfAbsent(activity.getId(), this::register);
+        limit.maxConcurrentDraws = activity.getMaxConcurrentDraws();
+
+        int inFlight;
+        do {
+            inFlight = limit.inFlight.get();
+            if (inFlight >= limit.current()) {
+                limit.adaptiveRejections.increment();
+                return null;
+            }
+        } while (!limit.inFlight.compareAndSet(inFlight, inFlight + 1));
+
+        AdmissionPermit ceilingPermit;
+        try {
+            ceilingPermit = ceiling.tryAcquire(activity);
+        } catch (RuntimeException e) {
+            limit.inFlight.decrementAndGet();
+            throw e;
+        }
+        if (ceilingPermit == null) {
+            limit.inFlight.decrementAndGet();
+            limit.ceilingRejections.increment();
+            return null;
+        }
+
+        long startNanos = nanoClock.getAsLong();
+        int startInFlight = inFlight + 1;
+        AtomicInteger released = new AtomicInteger();
+        return () -> {
+            if (released.compareAndSet(0, 1)) {
+                ceilingPermit.close();
+                limit.inFlight.decrementAndGet();
+                limit.onSample(nanoClock.getAsLong() - startNanos, startInFlight);
+            }
+        };
+    }
+
+    @Override
+    public void shutdown() {
+        ceiling.shutdown();
+    }
+
+    public int getLimit(Long activityId) {
+        ActivityLimit limit = limits.get(activityId);
+        return limit != null ? limit.current() : initialLimit;
+    }
+
+    private ActivityLimit register(Long activityId) {
+        ActivityLimit limit = new ActivityLimit(activityId);
+        String activity = String.valueOf(activityId);
+        Gauge.builder(LIMIT_METRIC, limit, ActivityLimit::current)
+                .tag("activity", activity)
+                .description("Adaptive concurrent draw limit")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_METRIC, limit, l -> l.inFlight.get())
+                .tag("activity", activity)
+                .description("Draws currently admitted")
+                .register(meterRegistry);
+        return limit;
+    }
+
+    private final class ActivityLimit {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter adaptiveRejections;
+        private final Counter ceilingRejections;
+        private volatile double estimate = initialLimit;
+        private volatile int maxConcurrentDraws = Integer.MAX_VALUE;
+        // Not a monitor: draws on virtual threads would pin their carrier while waiting for it
+        private final ReentrantLock sampleLock = new ReentrantLock();
+        private double longRttNanos;
+
+        private ActivityLimit(Long activityId) {
+            String activity = String.valueOf(activityId);
+            this.adaptiveRejections = Counter.builder(REJECTED_METRIC)
+                    .tag("activity", activity).tag("reason", "adaptive-limit")
+                    .register(meterRegistry);
+            this.ceilingRejections = Counter.builder(REJECTED_METRIC)
+                    .tag("activity", activity).tag("reason", "max-concurrent-draws")
+                    .register(meterRegistry);
+        }
+
+        private int current() {
+            return (int) Math.min(estimate, maxConcurrentDraws);
+        }
+
+        private void onSample(long rttNanos, int sampleInFlight) {
+            sampleLock.lock();
+            try {
+                if (longRttNanos == 0) {
+                    longRttNanos = rttNanos;
+                    return;
+                }
+                longRttNanos += (rttNanos - longRttNanos) / longWindow;
+
+                // Latency above the long-term average means queueing; the tolerance keeps jitter from shrinking the limit
+                double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * longRttNanos / rttNanos));
+                double newLimit = estimate * gradient + Math.sqrt(estimate);
+                // A limit that was never close to being reached says nothing about capacity, so it is not raised
+                if (newLimit > estimate && sampleInFlight < estimate / 2) {
+                    return;
+                }
+                newLimit = estimate * (1 - smoothing) + newLimit * smoothing;
+                estimate = Math.max(minLimit, Math.min(maxConcurrentDraws, newLimit));
+            } finally {
+                sampleLock.unlock();
+            }
+        }
+    }
+}
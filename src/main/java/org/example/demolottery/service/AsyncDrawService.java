@@ -0,0 +1,298 @@
+package org.example.demolottery.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.demolottery.dto.request.LotteryDrawRequest;
+import org.example.demolottery.dto.response.DrawTicketResponse;
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.LotteryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Accepts draws into a bounded in-process queue and settles them on a fixed set of workers, so
+// bursts hold neither request threads nor database connections while they wait. Results are kept
+// per ticket for polling and pushed to SSE subscribers. Queued tickets live only in this node's
+// memory: they are failed on shutdown, and their quota is only consumed once they are settled.
+@Service
+public class AsyncDrawService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDrawService.class);
+
+    static final String STATUS_PENDING = "PENDING";
+    static final String STATUS_COMPLETED = "COMPLETED";
+    static final String STATUS_FAILED = "FAILED";
+
+    private static final long ADMISSION_RETRY_MILLIS = 50L;
+
+    private final LotteryService lotteryService;
+    private final DrawRandomSource randomSource;
+    private final int workerCount;
+    private final int batchSize;
+    private final long ticketTtlMillis;
+    private final long sseTimeoutMillis;
+
+    private final BlockingQueue<DrawTicket> queue;
+    private final Map<String, DrawTicket> tickets = new ConcurrentHashMap<>();
+    // Draws accepted but not yet settled, per user and activity, so the quota pre-check sees them
+    private final Map<String, AtomicInteger> pendingDraws = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    @Value("${app.lottery.admission.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    public AsyncDrawService(LotteryService lotteryService,
+                            DrawRandomSource randomSource,
+                            @Value("${app.lottery.async.workers:4}") int workerCount,
+                            @Value("${app.lottery.async.queue-capacity:10000}") int queueCapacity,
+                            @Value("${app.lottery.async.batch-size:32}") int batchSize,
+                            @Value("${app.lottery.async.ticket-ttl-millis:300000}") long ticketTtlMillis,
+                            @Value("${app.lottery.async.sse-timeout-millis:30000}") long sseTimeoutMillis) {
+        this.lotteryService = lotteryService;
+        this.randomSource = randomSource;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.ticketTtlMillis = ticketTtlMillis;
+        this.sseTimeoutMillis = sseTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "draw-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        List<DrawTicket> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        for (DrawTicket ticket : abandoned) {
+            fail(ticket, "Server is shutting down. Please submit the draw again.");
+        }
+    }
+
+    public DrawTicketResponse submit(String userId, LotteryDrawRequest request) {
+        // Counted inside the compute, so eviction cannot drop the counter between creating and raising it.
+        // A counter above zero is never evicted, which keeps it in place for complete() and the rollback below.
+        int[] before = new int[1];
+        AtomicInteger pending = pendingDraws.compute(pendingKey(userId, request.getActivityId()), (key, counter) -> {
+            AtomicInteger draws = counter != null ? counter : new AtomicInteger();
+            before[0] = draws.getAndAdd(request.getDrawCount());
+            return draws;
+        });
+        int pendingBefore = before[0];
+        DrawTicketResponse accepted;
+        try {
+            lotteryService.checkDrawAllowed(userId, request, pendingBefore);
+
+            DrawTicket ticket = new DrawTicket(randomSource.nextUuid().toString(), userId, request);
+            // Taken before a worker can pick the ticket up, so the caller always sees it as accepted
+            accepted = ticket.toResponse();
+            tickets.put(ticket.id, ticket);
+            if (!queue.offer(ticket)) {
+                tickets.remove(ticket.id);
+                throw new AdmissionRejectedException("Draw queue is full. Please try again later.",
+                        retryAfterSeconds);
+            }
+        } catch (RuntimeException e) {
+            pending.addAndGet(-request.getDrawCount());
+            throw e;
+        }
+        return accepted;
+    }
+
+    public DrawTicketResponse getTicket(String userId, String ticketId) {
+        return findTicket(userId, ticketId).toResponse();
+    }
+
+    public SseEmitter subscribe(String userId, String ticketId) {
+        DrawTicket ticket = findTicket(userId, ticketId);
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        if (!ticket.addSubscriber(emitter)) {
+            // Already settled: answer right away
+            send(emitter, ticket.toResponse());
+        }
+        return emitter;
+    }
+
+    private DrawTicket findTicket(String userId, String ticketId) {
+        DrawTicket ticket = tickets.get(ticketId);
+        if (ticket == null || !ticket.userId.equals(userId)) {
+            throw new LotteryException("Draw ticket not found");
+        }
+        return ticket;
+    }
+
+    private void work() {
+        List<DrawTicket> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                boolean rejected = false;
+                for (DrawTicket ticket : batch) {
+                    rejected |= !settle(ticket);
+                }
+                batch.clear();
+                if (rejected) {
+                    // Give in-flight draws of the busy activity a moment before retrying
+                    TimeUnit.MILLISECONDS.sleep(ADMISSION_RETRY_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Returns false when the draw was turned away by admission control and went back into the queue
+    private boolean settle(DrawTicket ticket) {
+        try {
+            LotteryDrawResponse response = lotteryService.performDraw(ticket.userId, ticket.request);
+            complete(ticket, STATUS_COMPLETED, response, null);
+        } catch (AdmissionRejectedException e) {
+            if (queue.offer(ticket)) {
+                return false;
+            }
+            fail(ticket, e.getMessage());
+        } catch (LotteryException e) {
+            fail(ticket, e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Queued draw {} failed", ticket.id, e);
+            fail(ticket, "Draw failed. Please try again.");
+        }
+        return true;
+    }
+
+    private void fail(DrawTicket ticket, String message) {
+        complete(ticket, STATUS_FAILED, null, message);
+    }
+
+    private void complete(DrawTicket ticket, String status, LotteryDrawResponse response, String errorMessage) {
+        AtomicInteger pending = pendingDraws.get(pendingKey(ticket.userId, ticket.request.getActivityId()));
+        if (pending != null) {
+            pending.addAndGet(-ticket.request.getDrawCount());
+        }
+        for (SseEmitter emitter : ticket.settle(status, response, errorMessage)) {
+            send(emitter, ticket.toResponse());
+        }
+    }
+
+    private void send(SseEmitter emitter, DrawTicketResponse response) {
+        try {
+            emitter.send(SseEmitter.event().name("result").data(response, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the emitter timed out; the result can still be polled
+            emitter.completeWithError(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.lottery.async.cleanup-interval-millis:60000}")
+    public void evictSettledTickets() {
+        long cutoff = System.currentTimeMillis() - ticketTtlMillis;
+        tickets.values().removeIf(ticket -> ticket.settledAt != 0 && ticket.settledAt < cutoff);
+        for (String key : pendingDraws.keySet()) {
+            pendingDraws.computeIfPresent(key, (k, pending) -> pending.get() == 0 ? null : pending);
+        }
+    }
+
+    int getQueueSize() {
+        return queue.size();
+    }
+
+    private static String pendingKey(String userId, Long activityId) {
+        return userId + ":" + activityId;
+    }
+
+    private static final class DrawTicket {
+        private final String id;
+        private final String userId;
+        private final LotteryDrawRequest request;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<SseEmitter> subscribers = new ArrayList<>();
+        private volatile String status = STATUS_PENDING;
+        private volatile LotteryDrawResponse response;
+        private volatile String errorMessage;
+        private volatile long settledAt;
+
+        private DrawTicket(String id, String userId, LotteryDrawRequest request) {
+            this.id = id;
+            this.userId = userId;
+            this.request = request;
+        }
+
+        // Returns false when the ticket has already been settled
+        private boolean addSubscriber(SseEmitter emitter) {
+            lock.lock();
+            try {
+                if (settledAt != 0) {
+                    return false;
+                }
+                subscribers.add(emitter);
+                emitter.onCompletion(() -> removeSubscriber(emitter));
+                emitter.onTimeout(() -> removeSubscriber(emitter));
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void removeSubscriber(SseEmitter emitter) {
+            lock.lock();
+            try {
+                subscribers.remove(emitter);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Returns the subscribers waiting for the outcome
+        private List<SseEmitter> settle(String status, LotteryDrawResponse response, String errorMessage) {
+            lock.lock();
+            try {
+                this.response = response;
+                this.errorMessage = errorMessage;
+                this.status = status;
+                this.settledAt = System.currentTimeMillis();
+                List<SseEmitter> waiting = new ArrayList<>(subscribers);
+                subscribers.clear();
+                return waiting;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private DrawTicketResponse toResponse() {
+            return new DrawTicketResponse(id, status, request.getActivityId(), request.getDrawCount(),
+                    submittedAt, response, errorMessage);
+        }
+    }
+}
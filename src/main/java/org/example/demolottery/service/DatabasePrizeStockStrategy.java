@@ -0,0 +1,49 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.repository.PrizeRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public class DatabasePrizeStockStrategy implements PrizeStockStrategy {
+
+    private final PrizeRepository prizeRepository;
+
+    public DatabasePrizeStockStrategy(PrizeRepository prizeRepository) {
+        this.prizeRepository = prizeRepository;
+    }
+
+    @Override
+    public List<Prize> findAvailablePrizes(Long activityId) {
+        return prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(activityId, 0);
+    }
+
+    @Override
+    public int reserve(Prize prize, int quantity) {
+        if (quantity > 1 && prizeRepository.decrementRemainingQuantityBy(prize.getId(), quantity) > 0) {
+            return quantity;
+        }
+
+        // Use pessimistic lock for the specific prize being decremented
+        Optional<Prize> lockedPrizeOptional = prizeRepository.findByIdWithLock(prize.getId());
+        if (lockedPrizeOptional.isEmpty()) {
+            // Prize might have been exhausted by another concurrent transaction
+            return 0;
+        }
+        int available = Math.min(quantity, lockedPrizeOptional.get().getRemainingQuantity());
+        if (available <= 0) {
+            return 0;
+        }
+
+        int updated = available == 1
+                ? prizeRepository.decrementRemainingQuantity(prize.getId())
+                : prizeRepository.decrementRemainingQuantityBy(prize.getId(), available);
+        return updated > 0 ? available : 0;
+    }
+
+    @Override
+    public void release(Prize prize, int quantity) {
+        prizeRepository.incrementRemainingQuantityBy(prize.getId(), quantity);
+    }
+}
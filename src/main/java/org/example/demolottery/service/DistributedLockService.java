@@ -1,81 +1,334 @@
 package org.example.demolottery.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.demolottery.config.DistributedLockConfig;
+import org.example.demolottery.exception.LockAcquisitionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.stereotype.Service;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
 import java.util.function.Supplier;
 
-@Service
-public class DistributedLockService {
+// Redis locks shared by every node; created by LockProviderConfig for the redis and hierarchical modes
+public class DistributedLockService implements LockProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(DistributedLockService.class);
-    
+
+    static final String WAIT_METRIC = "lottery.lock.wait";
+    static final String FAILURE_METRIC = "lottery.lock.failures";
+
     private final RedisTemplate<String, Object> redisTemplate;
-    
+
     private static final String LOCK_PREFIX = "lottery:lock:";
-    private static final String UNLOCK_LUA_SCRIPT = 
+    private static final String FENCE_PREFIX = "lottery:lock:fence:";
+    private static final String RELEASE_CHANNEL = "lottery:lock:released";
+    private static final String UNLOCK_LUA_SCRIPT =
         "if redis.call('get', KEYS[1]) == ARGV[1] then " +
         "    return redis.call('del', KEYS[1]) " +
         "else " +
         "    return 0 " +
         "end";
-    
+    // Same as above, and tells waiters on every node that the key is free
+    private static final String UNLOCK_AND_NOTIFY_LUA_SCRIPT =
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "    redis.call('del', KEYS[1]) " +
+        "    redis.call('publish', '" + RELEASE_CHANNEL + "', KEYS[1]) " +
+        "    return 1 " +
+        "else " +
+        "    return 0 " +
+        "end";
+    // Only a holder that still owns the key may extend it or draw a fencing token
+    private static final String RENEW_LUA_SCRIPT =
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "    return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+        "else " +
+        "    return 0 " +
+        "end";
+    private static final String FENCE_LUA_SCRIPT =
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "    return redis.call('incr', KEYS[2]) " +
+        "else " +
+        "    return 0 " +
+        "end";
+
     private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>();
-    
+    private static final DefaultRedisScript<Long> UNLOCK_AND_NOTIFY_SCRIPT = new DefaultRedisScript<>();
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>();
+    private static final DefaultRedisScript<Long> FENCE_SCRIPT = new DefaultRedisScript<>();
+
     static {
         UNLOCK_SCRIPT.setScriptText(UNLOCK_LUA_SCRIPT);
         UNLOCK_SCRIPT.setResultType(Long.class);
+        UNLOCK_AND_NOTIFY_SCRIPT.setScriptText(UNLOCK_AND_NOTIFY_LUA_SCRIPT);
+        UNLOCK_AND_NOTIFY_SCRIPT.setResultType(Long.class);
+        RENEW_SCRIPT.setScriptText(RENEW_LUA_SCRIPT);
+        RENEW_SCRIPT.setResultType(Long.class);
+        FENCE_SCRIPT.setScriptText(FENCE_LUA_SCRIPT);
+        FENCE_SCRIPT.setResultType(Long.class);
     }
 
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final long maxRetryDelayMillis;
+    private final long maxWaitMillis;
+    private final boolean releaseNotification;
+    private final boolean watchdogEnabled;
+    private final long watchdogIntervalMillis;
+    private final MeterRegistry meterRegistry;
+
+    // Locks held by this node, keyed by lock value, whose TTL the watchdog keeps extending
+    private final Map<String, HeldLock> heldLocks = new ConcurrentHashMap<>();
+    private ScheduledExecutorService watchdog;
+
+    // Threads backing off on a key, woken early when its release is published
+    private final Map<String, Set<Thread>> waiters = new ConcurrentHashMap<>();
+    private RedisMessageListenerContainer releaseListener;
+
+    // Single attempt: fails immediately when the lock is held
     public DistributedLockService(RedisTemplate<String, Object> redisTemplate) {
         this.redisTemplate = redisTemplate;
+        this.maxAttempts = 1;
+        this.retryDelayMillis = 0;
+        this.maxRetryDelayMillis = 0;
+        this.maxWaitMillis = 0;
+        this.releaseNotification = false;
+        this.watchdogEnabled = false;
+        this.watchdogIntervalMillis = 0;
+        this.meterRegistry = new SimpleMeterRegistry();
     }
 
+    public DistributedLockService(RedisTemplate<String, Object> redisTemplate, DistributedLockConfig config,
+                                  MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.maxAttempts = Math.max(1, config.getMaxRetryAttempts());
+        this.retryDelayMillis = config.getRetryDelayMillis();
+        this.maxRetryDelayMillis = Math.max(config.getRetryDelayMillis(), config.getMaxRetryDelayMillis());
+        this.maxWaitMillis = config.getMaxWaitMillis();
+        this.releaseNotification = config.isReleaseNotification();
+        this.watchdogEnabled = config.isWatchdogEnabled();
+        this.watchdogIntervalMillis = Math.max(1, config.getWatchdogIntervalMillis());
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (watchdogEnabled) {
+            // Its own thread: on the shared scheduler a slow task elsewhere would let held locks expire
+            watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "distributed-lock-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            watchdog.scheduleWithFixedDelay(this::renewHeldLocks, watchdogIntervalMillis, watchdogIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (releaseNotification) {
+            subscribeToReleases();
+        }
+    }
+
+    private void subscribeToReleases() {
+        releaseListener = new RedisMessageListenerContainer();
+        releaseListener.setConnectionFactory(redisTemplate.getConnectionFactory());
+        releaseListener.addMessageListener((message, pattern) ->
+                onLockReleased(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(RELEASE_CHANNEL));
+        releaseListener.afterPropertiesSet();
+        releaseListener.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+        if (releaseListener != null) {
+            releaseListener.destroy();
+        }
+    }
+
+    @Override
     public <T> T executeWithLock(String lockKey, long timeout, TimeUnit timeUnit, Supplier<T> action) {
+        return execute(lockKey, timeout, timeUnit, false, fencingToken -> action.get());
+    }
+
+    // A holder whose lock expired during a pause can be told apart from the current one by the
+    // store it writes to, using the token.
+    @Override
+    public <T> T executeWithFencedLock(String lockKey, long timeout, TimeUnit timeUnit, LongFunction<T> action) {
+        return execute(lockKey, timeout, timeUnit, true, action);
+    }
+
+    @Override
+    public void executeWithLock(String lockKey, long timeout, TimeUnit timeUnit, Runnable action) {
+        executeWithLock(lockKey, timeout, timeUnit, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private <T> T execute(String lockKey, long timeout, TimeUnit timeUnit, boolean fenced, LongFunction<T> action) {
         String lockValue = UUID.randomUUID().toString();
         String fullLockKey = LOCK_PREFIX + lockKey;
-        
-        boolean acquired = false;
+
+        Long fencingToken = null;
         try {
-            acquired = acquireLock(fullLockKey, lockValue, timeout, timeUnit);
-            if (!acquired) {
-                throw new RuntimeException("Failed to acquire distributed lock: " + lockKey);
+            fencingToken = acquireWithRetry(lockKey, fullLockKey, lockValue, timeout, timeUnit, fenced);
+            if (fencingToken == null) {
+                throw new LockAcquisitionException("Failed to acquire distributed lock: " + lockKey);
+            }
+            if (watchdogEnabled) {
+                heldLocks.put(lockValue, new HeldLock(fullLockKey, timeUnit.toMillis(timeout)));
             }
-            
+
             logger.debug("Acquired distributed lock: {}", lockKey);
-            return action.get();
-            
+            return action.apply(fencingToken);
+
         } finally {
-            if (acquired) {
+            if (fencingToken != null) {
+                heldLocks.remove(lockValue);
                 releaseLock(fullLockKey, lockValue);
                 logger.debug("Released distributed lock: {}", lockKey);
             }
         }
     }
 
-    public void executeWithLock(String lockKey, long timeout, TimeUnit timeUnit, Runnable action) {
-        executeWithLock(lockKey, timeout, timeUnit, () -> {
-            action.run();
-            return null;
+    // Retries with full-jitter exponential backoff until the attempts or the wait budget run out.
+    // With release notification on, a waiter is registered before each attempt so a release
+    // published between its failed attempt and its sleep still wakes it.
+    // Returns the fencing token (0 when not fenced), or null when the lock was not acquired.
+    private Long acquireWithRetry(String lockKey, String fullLockKey, String lockValue,
+                                  long timeout, TimeUnit timeUnit, boolean fenced) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        Thread current = Thread.currentThread();
+        if (releaseNotification) {
+            waiters.computeIfAbsent(fullLockKey, key -> ConcurrentHashMap.newKeySet()).add(current);
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                if (acquireLock(fullLockKey, lockValue, timeout, timeUnit)) {
+                    long fencingToken = fenced ? nextFencingToken(fullLockKey, lockValue) : 0L;
+                    if (!fenced || fencingToken > 0) {
+                        recordWait(lockKey, start, "acquired");
+                        return fencingToken;
+                    }
+                    // Expired before the token was drawn, so another holder may already own it
+                }
+                long remaining = deadline - System.nanoTime();
+                if (attempt >= maxAttempts || remaining <= 0) {
+                    break;
+                }
+                long backoffMillis = Math.min(maxRetryDelayMillis, retryDelayMillis << Math.min(attempt - 1, 20));
+                long sleepNanos = Math.min(remaining,
+                        TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(backoffMillis + 1)));
+                LockSupport.parkNanos(this, sleepNanos);
+                if (current.isInterrupted()) {
+                    break;
+                }
+            }
+        } finally {
+            if (releaseNotification) {
+                waiters.computeIfPresent(fullLockKey, (key, threads) -> {
+                    threads.remove(current);
+                    return threads.isEmpty() ? null : threads;
+                });
+            }
+        }
+
+        recordWait(lockKey, start, "failed");
+        Counter.builder(FAILURE_METRIC).tag("lock", lockName(lockKey))
+                .description("Distributed lock acquisitions that gave up")
+                .register(meterRegistry).increment();
+        return null;
+    }
+
+    private long nextFencingToken(String fullLockKey, String lockValue) {
+        Long token = redisTemplate.execute(FENCE_SCRIPT,
+                Arrays.asList(fullLockKey, FENCE_PREFIX + fullLockKey.substring(LOCK_PREFIX.length())), lockValue);
+        return token != null ? token : 0L;
+    }
+
+    // Extends every lock this node still holds back to its full TTL. A lock that can no longer be
+    // renewed has already expired; its holder's writes are rejected by the fencing token check.
+    void renewHeldLocks() {
+        heldLocks.forEach((lockValue, held) -> {
+            try {
+                Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(held.fullLockKey),
+                        lockValue, held.ttlMillis);
+                if ((renewed == null || renewed == 0) && heldLocks.remove(lockValue) != null) {
+                    logger.warn("Distributed lock {} expired before it was renewed", held.fullLockKey);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to renew distributed lock {}", held.fullLockKey, e);
+            }
         });
     }
 
+    int heldLockCount() {
+        return heldLocks.size();
+    }
+
+    void onLockReleased(String fullLockKey) {
+        Set<Thread> threads = waiters.get(fullLockKey);
+        if (threads != null) {
+            threads.forEach(LockSupport::unpark);
+        }
+    }
+
+    private void recordWait(String lockKey, long startNanos, String outcome) {
+        Timer.builder(WAIT_METRIC).tag("lock", lockName(lockKey)).tag("outcome", outcome)
+                .description("Time spent acquiring a distributed lock")
+                .register(meterRegistry).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // "prize_draw:activity:42" -> "prize_draw", keeping ids out of the metric tags
+    private static String lockName(String lockKey) {
+        int separator = lockKey.indexOf(':');
+        return separator > 0 ? lockKey.substring(0, separator) : lockKey;
+    }
+
     private boolean acquireLock(String lockKey, String lockValue, long timeout, TimeUnit timeUnit) {
         Boolean result = redisTemplate.opsForValue().setIfAbsent(lockKey, lockValue, timeout, timeUnit);
         return Boolean.TRUE.equals(result);
     }
 
     private boolean releaseLock(String lockKey, String lockValue) {
-        Long result = redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), lockValue);
+        DefaultRedisScript<Long> script = releaseNotification ? UNLOCK_AND_NOTIFY_SCRIPT : UNLOCK_SCRIPT;
+        Long result = redisTemplate.execute(script, Collections.singletonList(lockKey), lockValue);
         return result != null && result > 0;
     }
 
+    private static final class HeldLock {
+        private final String fullLockKey;
+        private final long ttlMillis;
+
+        private HeldLock(String fullLockKey, long ttlMillis) {
+            this.fullLockKey = fullLockKey;
+            this.ttlMillis = ttlMillis;
+        }
+    }
+
     public boolean tryLock(String lockKey, String lockValue, long timeout, TimeUnit timeUnit) {
         String fullLockKey = LOCK_PREFIX + lockKey;
         return acquireLock(fullLockKey, lockValue, timeout, timeUnit);
@@ -85,4 +338,4 @@ public class DistributedLockService {
         String fullLockKey = LOCK_PREFIX + lockKey;
         return releaseLock(fullLockKey, lockValue);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+
+public interface DrawAdmissionController {
+
+    // Returns a permit to close once the draw has completed, or null when the activity is already
+    // running maxConcurrentDraws draws
+    AdmissionPermit tryAcquire(LotteryActivity activity);
+
+    // Stops background work and gives back the permits still held; picked up by Spring as the bean's destroy method
+    default void shutdown() {
+    }
+
+    interface AdmissionPermit extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,280 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// Append-only journal of draw records in memory-mapped segment files on local disk. Every record
+// takes one fixed-size slot ending in a CRC, so a slot torn by a crash reads as the end of the
+// journal. Positions count slots across segments; a checkpoint file holds the position up to which
+// records have been shipped to the database, and segments behind it are deleted. The segment size
+// is part of the journal's layout and cannot change while it is in use.
+public class DrawJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DrawJournal.class);
+
+    static final int RECORD_SIZE = 512;
+
+    private static final int USER_ID_BYTES = 150;
+    private static final int PRIZE_NAME_BYTES = 300;
+
+    private static final int ID = 0;
+    private static final int BATCH_ID = 8;
+    private static final int ACTIVITY_ID = 16;
+    private static final int PRIZE_ID = 24;
+    private static final int CREATED_SECONDS = 32;
+    private static final int CREATED_NANOS = 40;
+    private static final int RESULT = 44;
+    private static final int USER_ID_LENGTH = 45;
+    private static final int PRIZE_NAME_LENGTH = 47;
+    private static final int USER_ID = 49;
+    private static final int PRIZE_NAME = USER_ID + USER_ID_BYTES;
+    private static final int CHECKSUM = PRIZE_NAME + PRIZE_NAME_BYTES;
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final UserLotteryRecord.DrawResult[] RESULTS = UserLotteryRecord.DrawResult.values();
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final boolean force;
+    private final FileChannel checkpoint;
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    // Slots below appended hold complete records; slots below shipped are in the database
+    private volatile long appended;
+    private volatile long shipped;
+    private final long recovered;
+    // Slots below forced are on disk; guarded by forceLock
+    private long forced;
+
+    public DrawJournal(Path directory, int segmentRecords, boolean force) throws IOException {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.force = force;
+        Files.createDirectories(directory);
+        this.checkpoint = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        ByteBuffer saved = ByteBuffer.allocate(2 * Long.BYTES);
+        if (checkpoint.read(saved, 0) == saved.capacity()) {
+            this.shipped = saved.getLong(0);
+            long savedSegmentRecords = saved.getLong(Long.BYTES);
+            if (savedSegmentRecords != segmentRecords) {
+                throw new IllegalStateException("Draw journal " + directory + " was written with "
+                        + savedSegmentRecords + " records per segment, not " + segmentRecords);
+            }
+        } else {
+            this.shipped = 0L;
+        }
+        long end = shipped;
+        while (isComplete(end)) {
+            end++;
+        }
+        this.appended = end;
+        this.recovered = end;
+        this.forced = shipped;
+        if (end > shipped) {
+            logger.info("Recovered {} unshipped draw records from journal {}", end - shipped, directory);
+        }
+    }
+
+    // Returns once every record is in the journal and, with force, on disk
+    public void append(List<UserLotteryRecord> records) {
+        tryAppend(records, Long.MAX_VALUE);
+    }
+
+    // Appends only if the unshipped records, these included, stay within maxUnshipped
+    public boolean tryAppend(List<UserLotteryRecord> records, long maxUnshipped) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        byte[][] slots = new byte[records.size()][];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = encode(records.get(i));
+        }
+
+        long end;
+        appendLock.lock();
+        try {
+            long start = appended;
+            if (start - shipped + slots.length > maxUnshipped) {
+                return false;
+            }
+            for (int i = 0; i < slots.length; i++) {
+                segment(start + i).put(offset(start + i), slots[i]);
+            }
+            end = start + slots.length;
+            appended = end;
+        } finally {
+            appendLock.unlock();
+        }
+
+        if (force) {
+            forceTo(end);
+        }
+        return true;
+    }
+
+    public List<UserLotteryRecord> read(long from, int maxRecords) {
+        long to = Math.min(appended, from + maxRecords);
+        List<UserLotteryRecord> records = new ArrayList<>((int) Math.max(0, to - from));
+        byte[] slot = new byte[RECORD_SIZE];
+        for (long position = from; position < to; position++) {
+            segment(position).get(offset(position), slot);
+            records.add(decode(slot));
+        }
+        return records;
+    }
+
+    // Records everything below position as shipped and drops the segments that are done with
+    public void markShipped(long position) throws IOException {
+        checkpoint.write(ByteBuffer.allocate(2 * Long.BYTES).putLong(0, position).putLong(Long.BYTES, segmentRecords), 0);
+        checkpoint.force(false);
+        long firstLive = position / segmentRecords;
+        for (long index = shipped / segmentRecords; index < firstLive; index++) {
+            segments.remove(index);
+            Files.deleteIfExists(segmentPath(index));
+        }
+        shipped = position;
+    }
+
+    public long appendedPosition() {
+        return appended;
+    }
+
+    public long shippedPosition() {
+        return shipped;
+    }
+
+    // Records below this position were appended before the last restart and may already be in the
+    // database if the checkpoint was not written after their batch committed
+    public long recoveredPosition() {
+        return recovered;
+    }
+
+    @Override
+    public void close() throws IOException {
+        checkpoint.close();
+        segments.clear();
+    }
+
+    // A torn slot ends the journal on recovery, so records are only durable once every slot before
+    // them is on disk too. Forces from the last forced slot, taking along whatever others appended since.
+    private void forceTo(long end) {
+        forceLock.lock();
+        try {
+            if (forced >= end) {
+                return;
+            }
+            long to = appended;
+            for (long position = forced; position < to; ) {
+                // Force each segment the records landed in once
+                int count = (int) Math.min(to - position, segmentRecords - position % segmentRecords);
+                segment(position).force(offset(position), count * RECORD_SIZE);
+                position += count;
+            }
+            forced = to;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private boolean isComplete(long position) {
+        if (!Files.exists(segmentPath(position / segmentRecords))) {
+            return false;
+        }
+        byte[] slot = new byte[RECORD_SIZE];
+        segment(position).get(offset(position), slot);
+        return ByteBuffer.wrap(slot).getInt(CHECKSUM) == checksum(slot);
+    }
+
+    private MappedByteBuffer segment(long position) {
+        return segments.computeIfAbsent(position / segmentRecords, index -> {
+            // The mapping stays valid after the channel is closed
+            try (FileChannel channel = FileChannel.open(segmentPath(index),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to map draw journal segment " + segmentPath(index), e);
+            }
+        });
+    }
+
+    private int offset(long position) {
+        return (int) (position % segmentRecords) * RECORD_SIZE;
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%016d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(UserLotteryRecord record) {
+        byte[] userId = record.getUserId().getBytes(StandardCharsets.UTF_8);
+        byte[] prizeName = record.getPrizeName() != null ? record.getPrizeName().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (userId.length > USER_ID_BYTES || prizeName.length > PRIZE_NAME_BYTES) {
+            throw new IllegalArgumentException("Draw record of user " + record.getUserId() + " does not fit a journal slot");
+        }
+
+        byte[] slot = new byte[RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(slot);
+        buffer.putLong(ID, record.getId());
+        buffer.putLong(BATCH_ID, record.getBatchId() != null ? record.getBatchId() : 0L);
+        buffer.putLong(ACTIVITY_ID, record.getActivityId());
+        buffer.putLong(PRIZE_ID, record.getPrizeId() != null ? record.getPrizeId() : 0L);
+        buffer.putLong(CREATED_SECONDS, record.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(CREATED_NANOS, record.getCreatedAt().getNano());
+        buffer.put(RESULT, (byte) record.getResult().ordinal());
+        buffer.putShort(USER_ID_LENGTH, (short) userId.length);
+        buffer.putShort(PRIZE_NAME_LENGTH, (short) (record.getPrizeName() != null ? prizeName.length : -1));
+        buffer.put(USER_ID, userId);
+        buffer.put(PRIZE_NAME, prizeName);
+        buffer.putInt(CHECKSUM, checksum(slot));
+        return slot;
+    }
+
+    private static UserLotteryRecord decode(byte[] slot) {
+        ByteBuffer buffer = ByteBuffer.wrap(slot);
+        long batchId = buffer.getLong(BATCH_ID);
+        long prizeId = buffer.getLong(PRIZE_ID);
+        short prizeNameLength = buffer.getShort(PRIZE_NAME_LENGTH);
+
+        UserLotteryRecord record = new UserLotteryRecord(
+                new String(slot, USER_ID, buffer.getShort(USER_ID_LENGTH), StandardCharsets.UTF_8),
+                buffer.getLong(ACTIVITY_ID),
+                batchId != 0 ? batchId : null,
+                prizeId != 0 ? prizeId : null,
+                prizeNameLength >= 0 ? new String(slot, PRIZE_NAME, prizeNameLength, StandardCharsets.UTF_8) : null,
+                RESULTS[buffer.get(RESULT)]);
+        record.setId(buffer.getLong(ID));
+        record.setCreatedAt(LocalDateTime.ofEpochSecond(buffer.getLong(CREATED_SECONDS),
+                buffer.getInt(CREATED_NANOS), ZoneOffset.UTC));
+        return record;
+    }
+
+    private static int checksum(byte[] slot) {
+        CRC32 crc = new CRC32();
+        crc.update(slot, 0, CHECKSUM);
+        return (int) crc.getValue();
+    }
+}
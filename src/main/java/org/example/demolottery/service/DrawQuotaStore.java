@@ -0,0 +1,15 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+
+public interface DrawQuotaStore {
+
+    // Reserves drawCount more draws for the user if that stays within maxDrawsPerUser. The check and
+    // the increment are one atomic step, visible to concurrent draws as soon as this returns.
+    boolean tryAcquire(String userId, LotteryActivity activity, int drawCount);
+
+    // Gives back draws reserved by tryAcquire whose draw failed before its records were written
+    void release(String userId, Long activityId, int drawCount);
+
+    long getDrawCount(String userId, Long activityId);
+}
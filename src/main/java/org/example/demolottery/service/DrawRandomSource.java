@@ -0,0 +1,17 @@
+package org.example.demolottery.service;
+
+import java.util.UUID;
+import java.util.random.RandomGenerator;
+
+public interface DrawRandomSource {
+
+    // Generator for the calling thread; callers must not hand it to other threads
+    RandomGenerator current();
+
+    default UUID nextUuid() {
+        RandomGenerator generator = current();
+        long mostSigBits = (generator.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (generator.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,459 @@
+package org.example.demolottery.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.LotteryException;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Write-behind for draw records: request threads hand their records to a bounded buffer and one
+// writer thread inserts them as multi-row JDBC batches, once batch-size records are waiting or
+// flush-interval after the first of them. With durability=flush a draw is answered after its records
+// committed; with durability=enqueue as soon as they are buffered, and the writer retries failed
+// inserts until they succeed. With durability=journal the buffer is a DrawJournal on local disk: a
+// draw is answered once its records are appended there, and the writer ships the journal to the
+// database, picking up where it left off after a restart. A full buffer turns new draws away
+// instead of queueing them.
+@Service
+public class DrawRecordWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DrawRecordWriter.class);
+
+    public static final String SYNC = "sync";
+    public static final String ASYNC = "async";
+
+    public static final String FLUSH = "flush";
+    public static final String ENQUEUE = "enqueue";
+    public static final String JOURNAL = "journal";
+
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000L;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000L;
+    private static final long JOURNAL_SPACE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int RECOVERY_ATTEMPTS = 10;
+
+    private final UserLotteryRecordRepository recordRepository;
+    private final SnowflakeIdGenerator idGenerator;
+    private final TransactionTemplate writeTransaction;
+    private final boolean enabled;
+    private final boolean ackAfterFlush;
+    private final boolean journaled;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int bufferCapacity;
+    private final long enqueueTimeoutMillis;
+    private final long awaitTimeoutMillis;
+    private final BlockingQueue<PendingWrite> buffer;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    // Owned by the writer thread once started
+    private DrawJournal journal;
+    private long replayedBelow;
+
+    @Value("${app.lottery.admission.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    @Value("${app.lottery.record-writer.journal.directory:journal}")
+    private String journalDirectory;
+
+    @Value("${app.lottery.record-writer.journal.segment-records:65536}")
+    private int journalSegmentRecords;
+
+    @Value("${app.lottery.record-writer.journal.force:true}")
+    private boolean journalForce;
+
+    public DrawRecordWriter(UserLotteryRecordRepository recordRepository,
+                            SnowflakeIdGenerator idGenerator,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.lottery.record-writer.mode:" + SYNC + "}") String mode,
+                            @Value("${app.lottery.record-writer.durability:" + FLUSH + "}") String durability,
+                            @Value("${app.lottery.record-writer.batch-size:500}") int batchSize,
+                            @Value("${app.lottery.record-writer.flush-interval-millis:20}") long flushIntervalMillis,
+                            @Value("${app.lottery.record-writer.buffer-capacity:10000}") int bufferCapacity,
+                            @Value("${app.lottery.record-writer.enqueue-timeout-millis:100}") long enqueueTimeoutMillis,
+                            @Value("${app.lottery.record-writer.await-timeout-millis:5000}") long awaitTimeoutMillis) {
+        this.recordRepository = recordRepository;
+        this.idGenerator = idGenerator;
+        // Batches commit on the writer thread, independent of the draws waiting on them
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = switch (mode) {
+            case SYNC -> false;
+            case ASYNC -> true;
+            default -> throw new IllegalArgumentException("Unknown app.lottery.record-writer.mode: " + mode);
+        };
+        switch (durability) {
+            case FLUSH, ENQUEUE, JOURNAL -> { }
+            default -> throw new IllegalArgumentException("Unknown app.lottery.record-writer.durability: " + durability);
+        }
+        this.ackAfterFlush = FLUSH.equals(durability);
+        this.journaled = JOURNAL.equals(durability);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.bufferCapacity = bufferCapacity;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.awaitTimeoutMillis = awaitTimeoutMillis;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (journaled) {
+            try {
+                journal = new DrawJournal(Path.of(journalDirectory), journalSegmentRecords, journalForce);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to open draw journal " + journalDirectory, e);
+            }
+            replayedBelow = journal.recoveredPosition();
+            shipRecovered();
+        }
+        running = true;
+        thread = new Thread(journaled ? this::ship : this::run, "draw-record-writer");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Started draw record writer: batch size {}, flush interval {} ms, ack after {}",
+                batchSize, flushIntervalMillis, ackAfterFlush ? FLUSH : journaled ? JOURNAL : ENQUEUE);
+    }
+
+    // Whether draws should hand their records here instead of inserting them in their own transaction
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns once the records are committed or, with durability=enqueue, buffered. If this throws,
+    // none of the records were or will be written.
+    public void write(List<UserLotteryRecord> records) {
+        LocalDateTime now = LocalDateTime.now();
+        for (UserLotteryRecord record : records) {
+            if (record.getCreatedAt() == null) {
+                record.setCreatedAt(now);
+            }
+        }
+        if (journaled) {
+            appendToJournal(records);
+            return;
+        }
+
+        PendingWrite pending = new PendingWrite(records);
+        try {
+            if (!running || !buffer.offer(pending, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new AdmissionRejectedException("Too many draw records waiting to be written. Please try again later.",
+                        retryAfterSeconds);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LotteryException("Draw was interrupted");
+        }
+
+        if (ackAfterFlush) {
+            await(pending);
+        }
+    }
+
+    // Returns once every record handed over before this call is in the database or was turned away.
+    // Engines that rebuild their stock from committed records call this first, so records still on
+    // their way are counted as issued.
+    public void awaitWritten() {
+        if (!enabled) {
+            return;
+        }
+        if (journaled) {
+            long appended = journal.appendedPosition();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(awaitTimeoutMillis);
+            while (journal.shippedPosition() < appended) {
+                if (System.nanoTime() >= deadline) {
+                    throw new LotteryException("Draw records are still being written. Please try again.");
+                }
+                LockSupport.parkNanos(JOURNAL_SPACE_POLL_NANOS);
+            }
+            return;
+        }
+
+        // Settled by the writer only after everything queued in front of it
+        PendingWrite barrier = new PendingWrite(List.of());
+        try {
+            if (!running || !buffer.offer(barrier, awaitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new LotteryException("Draw records are still being written. Please try again.");
+            }
+            barrier.written.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // The batch in front of it failed, and with durability=flush its records are not written
+        } catch (TimeoutException e) {
+            throw new LotteryException("Draw records are still being written. Please try again.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LotteryException("Draw was interrupted");
+        }
+    }
+
+    private void appendToJournal(List<UserLotteryRecord> records) {
+        // Shipping after a restart relies on the ids to skip records that already made it
+        for (UserLotteryRecord record : records) {
+            if (record.getId() == null) {
+                record.setId(idGenerator.nextId());
+            }
+        }
+
+        // The unshipped part of the journal is the buffer that is bounded
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMillis);
+        while (!running || !journal.tryAppend(records, bufferCapacity)) {
+            if (!running || System.nanoTime() >= deadline) {
+                throw new AdmissionRejectedException("Too many draw records waiting to be written. Please try again later.",
+                        retryAfterSeconds);
+            }
+            LockSupport.parkNanos(JOURNAL_SPACE_POLL_NANOS);
+        }
+    }
+
+    private void await(PendingWrite pending) {
+        Throwable failure;
+        try {
+            pending.written.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+            return;
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+        } catch (TimeoutException | InterruptedException e) {
+            boolean interrupted = e instanceof InterruptedException;
+            if (pending.cancel()) {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new LotteryException("Draw was interrupted");
+                }
+                throw new LotteryException("Draw is taking longer than expected. Please try again.");
+            }
+            // The writer already has these records in a batch, so its outcome is the draw's outcome
+            try {
+                pending.written.join();
+                return;
+            } catch (CompletionException completion) {
+                failure = completion.getCause();
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (failure instanceof RuntimeException cause) {
+            throw cause;
+        }
+        throw new LotteryException("Draw failed. Please try again.");
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (running || !buffer.isEmpty()) {
+            List<UserLotteryRecord> records = new ArrayList<>(batchSize);
+            try {
+                collect(batch, records);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Draw record writer interrupted with {} draws still buffered", buffer.size());
+                return;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch, records);
+                batch.clear();
+            }
+        }
+        logger.info("Stopped draw record writer");
+    }
+
+    // Waits up to the flush interval for the first write, then keeps collecting until the batch is
+    // full or the interval since that first write has passed
+    private void collect(List<PendingWrite> batch, List<UserLotteryRecord> records) throws InterruptedException {
+        PendingWrite pending = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (pending != null && pending != PendingWrite.WAKE_UP) {
+            // A draw that gave up waiting has already been answered with a failure
+            if (pending.claim()) {
+                batch.add(pending);
+                records.addAll(pending.records);
+            }
+            if (records.size() >= batchSize) {
+                return;
+            }
+            pending = buffer.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flush(List<PendingWrite> batch, List<UserLotteryRecord> records) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeTransaction.executeWithoutResult(status -> recordRepository.batchInsert(records));
+                logger.debug("Wrote {} draw records from {} draws", records.size(), batch.size());
+                batch.forEach(pending -> pending.written.complete(null));
+                return;
+            } catch (RuntimeException e) {
+                if (ackAfterFlush) {
+                    // The waiting draws give back their stock and quota
+                    logger.error("Failed to write {} draw records", records.size(), e);
+                    batch.forEach(pending -> pending.written.completeExceptionally(e));
+                    return;
+                }
+                // These draws were already answered, so their records must not be lost
+                logger.warn("Failed to write {} draw records (attempt {}), will retry", records.size(), attempt, e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(
+                        Math.min(MAX_RETRY_DELAY_MILLIS, flushIntervalMillis * attempt)));
+            }
+        }
+    }
+
+    // Stock is reconciled from committed records once the application is ready, so the records drawn
+    // before the restart have to be in the database by then
+    private void shipRecovered() {
+        for (int attempt = 1; journal.shippedPosition() < replayedBelow; ) {
+            long from = journal.shippedPosition();
+            List<UserLotteryRecord> records = journal.read(from, (int) Math.min(batchSize, replayedBelow - from));
+            if (shipJournaled(from, records)) {
+                attempt = 1;
+            } else if (attempt == RECOVERY_ATTEMPTS) {
+                throw new IllegalStateException("Failed to ship " + (replayedBelow - from)
+                        + " draw records recovered from journal " + journalDirectory);
+            } else {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(
+                        Math.min(MAX_RETRY_DELAY_MILLIS, flushIntervalMillis * attempt++)));
+            }
+        }
+    }
+
+    private void ship() {
+        for (int attempt = 1; running || journal.appendedPosition() > journal.shippedPosition(); ) {
+            long from = journal.shippedPosition();
+            if (running && journal.appendedPosition() - from < batchSize) {
+                // Gives a partial batch the flush interval to fill up
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+            }
+            List<UserLotteryRecord> records = journal.read(from, batchSize);
+            if (records.isEmpty()) {
+                continue;
+            }
+            if (shipJournaled(from, records)) {
+                attempt = 1;
+            } else if (!running) {
+                // Left in the journal for the next start
+                break;
+            } else {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(
+                        Math.min(MAX_RETRY_DELAY_MILLIS, flushIntervalMillis * attempt++)));
+            }
+        }
+        logger.info("Stopped draw record writer, {} records left in the journal",
+                journal.appendedPosition() - journal.shippedPosition());
+    }
+
+    private boolean shipJournaled(long from, List<UserLotteryRecord> records) {
+        long to = from + records.size();
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                if (from < replayedBelow) {
+                    // This batch may have committed before the checkpoint after it was written
+                    Set<Long> existing = new HashSet<>(recordRepository.findExistingIds(
+                            records.stream().map(UserLotteryRecord::getId).toList()));
+                    recordRepository.batchInsert(records.stream()
+                            .filter(record -> !existing.contains(record.getId())).toList());
+                } else {
+                    recordRepository.batchInsert(records);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to ship {} journaled draw records, will retry", records.size(), e);
+            return false;
+        }
+
+        try {
+            journal.markShipped(to);
+            logger.debug("Shipped {} journaled draw records", records.size());
+        } catch (IOException e) {
+            // The records are in the database, so shipping them again has to skip them
+            replayedBelow = Math.max(replayedBelow, to);
+            logger.warn("Failed to checkpoint the draw journal at {}", to, e);
+            return false;
+        }
+        return true;
+    }
+
+    // Stops taking new records and waits for what is already buffered to be written. The writer is
+    // woken rather than interrupted, so an insert in progress is not cut short.
+    @PreDestroy
+    public void shutdown() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        // A full buffer means the writer is busy anyway
+        buffer.offer(PendingWrite.WAKE_UP);
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("Draw record writer did not finish within {} ms, {} draws still buffered",
+                    CLOSE_TIMEOUT_MILLIS, buffer.size());
+            // Still shipping from the journal; what it leaves behind is picked up on the next start
+            return;
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close draw journal", e);
+            }
+        }
+    }
+
+    private static final class PendingWrite {
+        private static final int PENDING = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        private static final PendingWrite WAKE_UP = new PendingWrite(List.of());
+
+        private final List<UserLotteryRecord> records;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+        // Settles the race between the writer taking the records and the draw giving up on them
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private PendingWrite(List<UserLotteryRecord> records) {
+            this.records = records;
+        }
+
+        private boolean claim() {
+            return state.compareAndSet(PENDING, CLAIMED);
+        }
+
+        private boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+    }
+}
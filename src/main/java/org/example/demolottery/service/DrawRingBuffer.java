@@ -0,0 +1,62 @@
+package org.example.demolottery.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded ring for many publishing request threads and one consuming thread. Publishers claim a
+// sequence with a CAS and then fill the slot; the consumer only ever reads filled slots, so a
+// publisher that claimed but has not written yet simply ends the consumer's current drain.
+final class DrawRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Written by the consumer only
+    private volatile long head;
+
+    DrawRingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.setRelease((int) sequence & mask, element);
+        return true;
+    }
+
+    // Consumer thread only
+    int drainTo(List<E> sink, int max) {
+        long sequence = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) sequence & mask;
+            E element = slots.getAcquire(index);
+            if (element == null) {
+                break;
+            }
+            slots.setPlain(index, null);
+            sink.add(element);
+            sequence++;
+            drained++;
+        }
+        // The volatile write also publishes the cleared slots to publishers
+        head = sequence;
+        return drained;
+    }
+
+    // A claimed slot counts as taken even before its publisher has filled it
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.demolottery.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+// Takes the local stripe before the Redis lock, so contenders on the same node queue in the JVM
+// and only one of them at a time competes for the Redis key.
+public class HierarchicalLockProvider implements LockProvider {
+
+    private final LocalLockProvider localLocks;
+    private final DistributedLockService sharedLocks;
+
+    public HierarchicalLockProvider(LocalLockProvider localLocks, DistributedLockService sharedLocks) {
+        this.localLocks = localLocks;
+        this.sharedLocks = sharedLocks;
+    }
+
+    @Override
+    public <T> T executeWithLock(String lockKey, long leaseTime, TimeUnit timeUnit, Supplier<T> action) {
+        return localLocks.executeWithLock(lockKey, leaseTime, timeUnit,
+                () -> sharedLocks.executeWithLock(lockKey, leaseTime, timeUnit, action));
+    }
+
+    @Override
+    public <T> T executeWithFencedLock(String lockKey, long leaseTime, TimeUnit timeUnit, LongFunction<T> action) {
+        return localLocks.executeWithLock(lockKey, leaseTime, timeUnit,
+                () -> sharedLocks.executeWithFencedLock(lockKey, leaseTime, timeUnit, action));
+    }
+
+    // The Redis tier is not a bean of its own, so its lifecycle runs through this one
+    @PostConstruct
+    public void start() {
+        sharedLocks.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        sharedLocks.shutdown();
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.event.ActivityStatusChangedEvent;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-user counters seeded once from the user's draw records and then kept in step by the draws
+// themselves. Only correct while this node serves all draws of an activity.
+public class InMemoryDrawQuotaStore implements DrawQuotaStore {
+
+    private final UserLotteryRecordRepository recordRepository;
+
+    private final Map<Long, Map<String, AtomicLong>> activities = new ConcurrentHashMap<>();
+
+    public InMemoryDrawQuotaStore(UserLotteryRecordRepository recordRepository) {
+        this.recordRepository = recordRepository;
+    }
+
+    @Override
+    public boolean tryAcquire(String userId, LotteryActivity activity, int drawCount) {
+        AtomicLong counter = counter(userId, activity.getId());
+        int maxDraws = activity.getMaxDrawsPerUser();
+        while (true) {
+            long used = counter.get();
+            if (used + drawCount > maxDraws) {
+                return false;
+            }
+            if (counter.compareAndSet(used, used + drawCount)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release(String userId, Long activityId, int drawCount) {
+        Map<String, AtomicLong> counters = activities.get(activityId);
+        AtomicLong counter = counters != null ? counters.get(userId) : null;
+        if (counter != null) {
+            counter.addAndGet(-drawCount);
+        }
+    }
+
+    @Override
+    public long getDrawCount(String userId, Long activityId) {
+        return counter(userId, activityId).get();
+    }
+
+    private AtomicLong counter(String userId, Long activityId) {
+        Map<String, AtomicLong> counters = activities.computeIfAbsent(activityId, id -> new ConcurrentHashMap<>());
+        AtomicLong counter = counters.get(userId);
+        if (counter != null) {
+            return counter;
+        }
+        // Counted outside the map's compute so the query does not block other users' entries. No draw
+        // of this user can commit before a counter exists, so whichever seed lands first is right.
+        AtomicLong seeded = new AtomicLong(recordRepository.countByUserIdAndActivityId(userId, activityId));
+        counter = counters.putIfAbsent(userId, seeded);
+        return counter != null ? counter : seeded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityStatusChanged(ActivityStatusChangedEvent event) {
+        // Counters of a paused or ended activity are re-seeded if it is drawn from again
+        if (event.getStatus() != LotteryActivity.ActivityStatus.ACTIVE) {
+            activities.remove(event.getActivityId());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.ActivityStatusChangedEvent;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.repository.LotteryActivityRepository;
+import org.example.demolottery.repository.PrizeRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+public class InMemoryPrizeStockStrategy implements PrizeStockStrategy {
+
+    private final PrizeInventory prizeInventory;
+    private final PrizeRepository prizeRepository;
+    private final LotteryActivityRepository activityRepository;
+
+    public InMemoryPrizeStockStrategy(PrizeInventory prizeInventory, PrizeRepository prizeRepository,
+                                      LotteryActivityRepository activityRepository) {
+        this.prizeInventory = prizeInventory;
+        this.prizeRepository = prizeRepository;
+        this.activityRepository = activityRepository;
+    }
+
+    @Override
+    public List<Prize> findAvailablePrizes(Long activityId) {
+        // The table only lags behind the counters, so it never hides a prize that is still in stock
+        return prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(activityId, 0);
+    }
+
+    @Override
+    public int getAvailableQuantity(Prize prize) {
+        int remaining = prizeInventory.getRemaining(prize.getActivityId(), prize.getId());
+        return remaining >= 0 ? remaining : prize.getRemainingQuantity();
+    }
+
+    @Override
+    public int reserve(Prize prize, int quantity) {
+        int reserved = prizeInventory.tryDecrement(prize, quantity);
+        if (reserved > 0 && TransactionSynchronizationManager.isSynchronizationActive()) {
+            // The draw record never made it to the database, so the units go back on the shelf
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        prizeInventory.release(prize, reserved);
+                    }
+                }
+            });
+        }
+        return reserved;
+    }
+
+    @Override
+    public void release(Prize prize, int quantity) {
+        prizeInventory.release(prize, quantity);
+    }
+
+    // The counters are decremented atomically
+    @Override
+    public boolean requiresDrawLock() {
+        return false;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveActivities() {
+        activityRepository.findByStatusOrderByCreatedAtDesc(LotteryActivity.ActivityStatus.ACTIVE)
+                .forEach(activity -> prizeInventory.load(activity.getId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityStatusChanged(ActivityStatusChangedEvent event) {
+        if (event.getStatus() == LotteryActivity.ActivityStatus.ACTIVE) {
+            prizeInventory.load(event.getActivityId());
+        } else {
+            // The counters stay: draws still in flight release into them
+            prizeInventory.flush(event.getActivityId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrizesChanged(PrizesChangedEvent event) {
+        prizeInventory.applyPrizeChanges(event.getActivityId());
+    }
+}
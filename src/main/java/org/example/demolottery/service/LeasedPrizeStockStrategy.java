@@ -0,0 +1,230 @@
+package org.example.demolottery.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.ActivityStatusChangedEvent;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.repository.PrizeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Each node leases blocks of a prize's stock from its row with one conditional UPDATE and serves
+// draws from that local slice. The row only ever holds unleased stock, so nodes can never oversell
+// between them; once the row holds less than a lease, draws fall back to per-unit decrements.
+public class LeasedPrizeStockStrategy implements PrizeStockStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeasedPrizeStockStrategy.class);
+
+    private final PrizeRepository prizeRepository;
+    private final DatabasePrizeStockStrategy perUnitStrategy;
+    private final TransactionTemplate leaseTransaction;
+    private final int leaseSize;
+    private final int lowWatermark;
+
+    private final Map<Long, StockLease> leases = new ConcurrentHashMap<>();
+
+    public LeasedPrizeStockStrategy(PrizeRepository prizeRepository, PlatformTransactionManager transactionManager,
+                                    int leaseSize, int lowWatermark) {
+        if (leaseSize < 1 || lowWatermark < 0 || lowWatermark >= leaseSize) {
+            throw new IllegalArgumentException("Lease size must be positive and above the low watermark");
+        }
+        this.prizeRepository = prizeRepository;
+        this.perUnitStrategy = new DatabasePrizeStockStrategy(prizeRepository);
+        // Leases commit on their own: a rolled-back draw must not undo stock this node already holds
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaseSize = leaseSize;
+        this.lowWatermark = lowWatermark;
+    }
+
+    @Override
+    public List<Prize> findAvailablePrizes(Long activityId) {
+        return prizeRepository.findByActivityIdOrderBySortOrderAsc(activityId).stream()
+                .filter(prize -> getAvailableQuantity(prize) > 0)
+                .toList();
+    }
+
+    @Override
+    public int getAvailableQuantity(Prize prize) {
+        StockLease lease = leases.get(prize.getId());
+        return prize.getRemainingQuantity() + (lease != null ? lease.remaining.get() : 0);
+    }
+
+    @Override
+    public int reserve(Prize prize, int quantity) {
+        StockLease lease = leases.computeIfAbsent(prize.getId(), id -> new StockLease(prize.getActivityId()));
+
+        int leased = lease.take(quantity);
+        if (leased < quantity) {
+            lease.lock.lock();
+            try {
+                // Another thread may have renewed while this one waited
+                leased += lease.take(quantity - leased);
+                if (leased < quantity && renew(prize.getId(), lease)) {
+                    leased += lease.take(quantity - leased);
+                }
+            } finally {
+                lease.lock.unlock();
+            }
+        } else if (lease.remaining.get() < lowWatermark && lease.lock.tryLock()) {
+            try {
+                renew(prize.getId(), lease);
+            } finally {
+                lease.lock.unlock();
+            }
+        }
+
+        registerRollbackRelease(prize.getId(), lease, leased);
+        if (leased == quantity) {
+            return leased;
+        }
+        // Past the lease, units come off the row one draw at a time under its row lock
+        int perUnit = quantity - leased;
+        Integer reserved = leaseTransaction.execute(status -> perUnitStrategy.reserve(prize, perUnit));
+        return leased + (reserved != null ? reserved : 0);
+    }
+
+    // Goes back into the node's lease, or to the row once the lease has been retired
+    @Override
+    public void release(Prize prize, int quantity) {
+        StockLease lease = leases.get(prize.getId());
+        if (lease != null) {
+            release(prize.getId(), lease, quantity);
+        } else {
+            giveBack(prize.getId(), quantity);
+        }
+    }
+
+    // Leases are taken and refilled under their own lock, and the row fallback is a conditional decrement
+    @Override
+    public boolean requiresDrawLock() {
+        return false;
+    }
+
+    // Caller holds the lease lock
+    private boolean renew(Long prizeId, StockLease lease) {
+        if (lease.retired) {
+            return false;
+        }
+        Integer updated = leaseTransaction.execute(status -> prizeRepository.decrementRemainingQuantityBy(prizeId, leaseSize));
+        if (updated == null || updated == 0) {
+            return false;
+        }
+        lease.remaining.addAndGet(leaseSize);
+        logger.debug("Leased {} units of prize {}", leaseSize, prizeId);
+        return true;
+    }
+
+    private void registerRollbackRelease(Long prizeId, StockLease lease, int quantity) {
+        if (quantity == 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    release(prizeId, lease, quantity);
+                }
+            }
+        });
+    }
+
+    private void release(Long prizeId, StockLease lease, int quantity) {
+        lease.lock.lock();
+        try {
+            if (!lease.retired) {
+                lease.remaining.addAndGet(quantity);
+                return;
+            }
+        } finally {
+            lease.lock.unlock();
+        }
+        giveBack(prizeId, quantity);
+    }
+
+    private void returnLeases(Long activityId) {
+        leases.forEach((prizeId, lease) -> {
+            if (activityId == null || activityId.equals(lease.activityId)) {
+                leases.remove(prizeId, lease);
+                giveBack(prizeId, lease.retire());
+            }
+        });
+    }
+
+    private void giveBack(Long prizeId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        try {
+            leaseTransaction.executeWithoutResult(status -> prizeRepository.incrementRemainingQuantityBy(prizeId, quantity));
+            logger.debug("Returned {} leased units of prize {}", quantity, prizeId);
+        } catch (RuntimeException e) {
+            logger.error("Failed to return {} leased units of prize {}", quantity, prizeId, e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityStatusChanged(ActivityStatusChangedEvent event) {
+        if (event.getStatus() != LotteryActivity.ActivityStatus.ACTIVE) {
+            returnLeases(event.getActivityId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrizesChanged(PrizesChangedEvent event) {
+        // Hand the slices back so the edited rows show their full stock; draws lease again on demand
+        returnLeases(event.getActivityId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        returnLeases(null);
+    }
+
+    private static final class StockLease {
+        private final Long activityId;
+        private final AtomicInteger remaining = new AtomicInteger();
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean retired;
+
+        private StockLease(Long activityId) {
+            this.activityId = activityId;
+        }
+
+        private int take(int quantity) {
+            while (true) {
+                int current = remaining.get();
+                if (current <= 0 || quantity <= 0) {
+                    return 0;
+                }
+                int taken = Math.min(current, quantity);
+                if (remaining.compareAndSet(current, current - taken)) {
+                    return taken;
+                }
+            }
+        }
+
+        private int retire() {
+            lock.lock();
+            try {
+                retired = true;
+                return remaining.getAndSet(0);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
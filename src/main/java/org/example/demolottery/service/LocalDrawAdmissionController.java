@@ -0,0 +1,34 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counting semaphore per activity for single-node deployments. The limit is read from the
+// activity on every acquire, so an edited maxConcurrentDraws applies to the next draw.
+public class LocalDrawAdmissionController implements DrawAdmissionController {
+
+    private final Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public AdmissionPermit tryAcquire(LotteryActivity activity) {
+        AtomicInteger counter = inFlight.computeIfAbsent(activity.getId(), id -> new AtomicInteger());
+        int limit = activity.getMaxConcurrentDraws();
+        while (true) {
+            int current = counter.get();
+            if (current >= limit) {
+                return null;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                AtomicInteger released = new AtomicInteger();
+                return () -> {
+                    if (released.compareAndSet(0, 1)) {
+                        counter.decrementAndGet();
+                    }
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.exception.LockAcquisitionException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+// JVM-local locks for a single instance, or the first tier in front of Redis. Keys hash onto a
+// fixed set of stripes, so unrelated keys may share one; held locks never expire, hence no fencing.
+public class LocalLockProvider implements LockProvider {
+
+    private final ReentrantLock[] stripes;
+    private final long maxWaitMillis;
+
+    public LocalLockProvider(int stripeCount, long maxWaitMillis) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public <T> T executeWithLock(String lockKey, long leaseTime, TimeUnit timeUnit, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(lockKey);
+        acquire(lock, lockKey);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> T executeWithFencedLock(String lockKey, long leaseTime, TimeUnit timeUnit, LongFunction<T> action) {
+        return executeWithLock(lockKey, leaseTime, timeUnit, () -> action.apply(0L));
+    }
+
+    private void acquire(ReentrantLock lock, String lockKey) {
+        try {
+            if (!lock.tryLock(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new LockAcquisitionException("Failed to acquire local lock: " + lockKey);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LockAcquisitionException("Interrupted while acquiring local lock: " + lockKey, e);
+        }
+    }
+
+    ReentrantLock stripeFor(String lockKey) {
+        int hash = lockKey.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+}
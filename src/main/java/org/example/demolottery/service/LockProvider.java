@@ -0,0 +1,23 @@
+package org.example.demolottery.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+public interface LockProvider {
+
+    // leaseTime bounds how long a lock may outlive a holder that stopped renewing it, for
+    // providers whose locks expire
+    <T> T executeWithLock(String lockKey, long leaseTime, TimeUnit timeUnit, Supplier<T> action);
+
+    // The action receives a fencing token that grows with every acquisition of the key, or 0 when
+    // the provider's locks cannot be lost while the action runs
+    <T> T executeWithFencedLock(String lockKey, long leaseTime, TimeUnit timeUnit, LongFunction<T> action);
+
+    default void executeWithLock(String lockKey, long leaseTime, TimeUnit timeUnit, Runnable action) {
+        executeWithLock(lockKey, leaseTime, timeUnit, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
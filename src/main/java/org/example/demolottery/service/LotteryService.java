@@ -6,74 +6,190 @@ import org.example.demolottery.dto.response.LotteryDrawResponse;
 import org.example.demolottery.entity.LotteryActivity;
 import org.example.demolottery.entity.Prize;
 import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.DrawNotCommittedException;
 import org.example.demolottery.exception.LotteryException;
 import org.example.demolottery.repository.LotteryActivityRepository;
-import org.example.demolottery.repository.PrizeRepository;
 import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 public class LotteryService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LotteryService.class);
+
     private final LotteryActivityRepository activityRepository;
-    private final PrizeRepository prizeRepository;
     private final UserLotteryRecordRepository recordRepository;
     private final ProbabilityCalculationService probabilityService;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final DistributedLockService distributedLockService;
+    private final LockProvider lockProvider;
+    private final SnowflakeIdGenerator idGenerator;
+    private final PrizeStockStrategy prizeStockStrategy;
+    private final RedisDrawScriptService redisDrawScriptService;
+    private final TicketPoolService ticketPoolService;
+    private final PrizeExhaustionTracker exhaustionTracker;
+    private final DrawQuotaStore drawQuotaStore;
+    private final DrawAdmissionController admissionController;
+    private final SingleWriterDrawEngine singleWriterEngine;
+    private final DrawRecordWriter recordWriter;
+    private final TransactionTemplate drawTransaction;
+    private final TransactionTemplate reservationTransaction;
+
+    @Value("${app.lottery.batch-draw.enabled:true}")
+    private boolean batchDrawEnabled;
+
+    @Value("${app.lottery.optimistic.resample-attempts:3}")
+    private int resampleAttempts;
 
-    @Value("${app.distributed-lock.enabled:false}")
-    private boolean distributedLockEnabled;
+    @Value("${app.lottery.sold-out.reject:false}")
+    private boolean rejectWhenSoldOut;
 
-    private static final String ACTIVITY_CONCURRENT_KEY = "lottery:concurrent:activity:";
+    @Value("${app.lottery.admission.retry-after-seconds:1}")
+    private long admissionRetryAfterSeconds;
 
     public LotteryService(LotteryActivityRepository activityRepository,
-                         PrizeRepository prizeRepository,
                          UserLotteryRecordRepository recordRepository,
                          ProbabilityCalculationService probabilityService,
-                         @Autowired(required = false) RedisTemplate<String, Object> redisTemplate,
-                         @Autowired(required = false) DistributedLockService distributedLockService) {
+                         LockProvider lockProvider,
+                         SnowflakeIdGenerator idGenerator,
+                         PrizeStockStrategy prizeStockStrategy,
+                         @Autowired(required = false) RedisDrawScriptService redisDrawScriptService,
+                         TicketPoolService ticketPoolService,
+                         PrizeExhaustionTracker exhaustionTracker,
+                         DrawQuotaStore drawQuotaStore,
+                         DrawAdmissionController admissionController,
+                         SingleWriterDrawEngine singleWriterEngine,
+                         DrawRecordWriter recordWriter,
+                         PlatformTransactionManager transactionManager) {
         this.activityRepository = activityRepository;
-        this.prizeRepository = prizeRepository;
         this.recordRepository = recordRepository;
         this.probabilityService = probabilityService;
-        this.redisTemplate = redisTemplate;
-        this.distributedLockService = distributedLockService;
+        this.lockProvider = lockProvider;
+        this.idGenerator = idGenerator;
+        this.prizeStockStrategy = prizeStockStrategy;
+        this.redisDrawScriptService = redisDrawScriptService;
+        this.ticketPoolService = ticketPoolService;
+        this.exhaustionTracker = exhaustionTracker;
+        this.drawQuotaStore = drawQuotaStore;
+        this.admissionController = admissionController;
+        this.singleWriterEngine = singleWriterEngine;
+        this.recordWriter = recordWriter;
+        this.drawTransaction = new TransactionTemplate(transactionManager);
+        // Commits on its own even when the caller is already in a transaction
+        this.reservationTransaction = new TransactionTemplate(transactionManager);
+        this.reservationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
-    @Transactional
+    // Validation phase: plain reads outside any transaction, so a rejected or queued request
+    // never holds a connection
     public LotteryDrawResponse performDraw(String userId, LotteryDrawRequest request) {
         LotteryActivity activity = activityRepository.findById(request.getActivityId())
                 .orElseThrow(() -> new LotteryException("Activity not found"));
 
         validateActivity(activity);
-        validateUserDrawPermission(userId, activity, request.getDrawCount());
 
-        String batchId = UUID.randomUUID().toString();
-        List<LotteryDrawResponse.DrawResult> results = new ArrayList<>();
+        // Over-limit requests are turned away here instead of queueing on the draw locks
+        DrawAdmissionController.AdmissionPermit permit = admissionController.tryAcquire(activity);
+        if (permit == null) {
+            throw new AdmissionRejectedException("Too many concurrent draws. Please try again later.",
+                    admissionRetryAfterSeconds);
+        }
+        try (permit) {
+            return performAdmittedDraw(userId, request, activity);
+        }
+    }
+
+    private LotteryDrawResponse performAdmittedDraw(String userId, LotteryDrawRequest request, LotteryActivity activity) {
+        long batchId = idGenerator.nextId();
+        int drawCount = request.getDrawCount();
+        List<LotteryDrawResponse.DrawResult> results;
+
+        if (redisDrawScriptService != null) {
+            // Quota check, prize pick and stock decrement run as one Redis script
+            results = redisDrawScriptService.draw(userId, activity, batchId, drawCount);
+        } else {
+            boolean singleWriter = activity.getTicketPoolSize() == null && Boolean.TRUE.equals(activity.getSingleWriter());
+            boolean soldOut = activity.getTicketPoolSize() == null && (singleWriter
+                    ? singleWriterEngine.isSoldOut(activity.getId())
+                    : exhaustionTracker.isSoldOut(activity.getId()));
+            if (soldOut && rejectWhenSoldOut) {
+                throw new LotteryException("All prizes of this activity are sold out");
+            }
 
-        for (int i = 0; i < request.getDrawCount(); i++) {
-            LotteryDrawResponse.DrawResult result = performSingleDraw(userId, activity, batchId, i + 1);
-            results.add(result);
+            // The quota is reserved before any stock, so a user who is out of draws never touches the
+            // prize lock and parallel requests of one user cannot get past maxDrawsPerUser together
+            reserveQuota(userId, activity, drawCount);
+            try {
+                if (activity.getTicketPoolSize() != null) {
+                    // Fixed-stock activity: outcomes were shuffled up front, so no probability or stock checks
+                    results = drawTransaction.execute(status -> ticketPoolService.draw(userId, activity, batchId, drawCount));
+                } else if (singleWriter) {
+                    // The activity's draw loop owns its stock; this thread only waits for the committed batch
+                    results = singleWriterEngine.draw(userId, activity, batchId, drawCount);
+                } else if (soldOut) {
+                    // Nothing left to win: skip the prize lock and the prize table altogether
+                    results = performSoldOutDraw(userId, activity, batchId, drawCount);
+                } else {
+                    Prize[] outcomes = batchDrawEnabled && drawCount > 1
+                            ? reserveBatch(activity, drawCount)
+                            : reserveEach(activity, drawCount);
+                    results = persistOutcomes(userId, activity, batchId, outcomes, batchDrawEnabled && drawCount > 1);
+                }
+            } catch (RuntimeException e) {
+                // A single-writer draw that timed out may still commit, so only one that was rejected or
+                // whose batch rolled back is given back
+                if (!singleWriter || e instanceof AdmissionRejectedException || e instanceof DrawNotCommittedException) {
+                    releaseQuota(userId, activity.getId(), drawCount);
+                }
+                throw e;
+            }
         }
 
-        return new LotteryDrawResponse(batchId, activity.getId(), activity.getName(), 
-                                     request.getDrawCount(), results, LocalDateTime.now());
+        // A string in the response: JavaScript numbers cannot hold all 64 bits
+        return new LotteryDrawResponse(String.valueOf(batchId), activity.getId(), activity.getName(), 
+                                     drawCount, results, LocalDateTime.now());
+    }
+
+    // Cheap pre-check for queued draws: the quota store stays authoritative when the draw is performed
+    @Transactional(readOnly = true)
+    public void checkDrawAllowed(String userId, LotteryDrawRequest request, int pendingDraws) {
+        LotteryActivity activity = activityRepository.findById(request.getActivityId())
+                .orElseThrow(() -> new LotteryException("Activity not found"));
+
+        validateActivity(activity);
+
+        long used = getUserDrawCount(userId, activity.getId());
+        if (used + pendingDraws + request.getDrawCount() > activity.getMaxDrawsPerUser()) {
+            throw new LotteryException("Draw count exceeds maximum allowed per user");
+        }
     }
 
     public long getUserDrawCount(String userId, Long activityId) {
-        return recordRepository.countByUserIdAndActivityId(userId, activityId);
+        if (redisDrawScriptService != null) {
+            Long count = redisDrawScriptService.getUserDrawCount(userId, activityId);
+            if (count != null) {
+                return count;
+            }
+        }
+        return drawQuotaStore.getDrawCount(userId, activityId);
     }
 
     private void validateActivity(LotteryActivity activity) {
@@ -87,94 +203,216 @@ public class LotteryService {
         }
     }
 
-    private LotteryDrawResponse.DrawResult performSingleDraw(String userId, LotteryActivity activity,
-                                                           String batchId, Integer drawIndex) {
-        if (distributedLockEnabled && distributedLockService != null) {
-            String prizeLockKey = DistributedLockConfig.LockKeys.PRIZE_DRAW + activity.getId();
-            
-            return distributedLockService.executeWithLock(prizeLockKey, 
-                    DistributedLockConfig.TimeoutConfig.PRIZE_DRAW_TIMEOUT_SECONDS, TimeUnit.SECONDS, () -> {
-                return performDrawLogic(userId, activity, batchId, drawIndex);
-            });
-        } else {
-            // For development without Redis/distributed locks
-            return performDrawLogic(userId, activity, batchId, drawIndex);
-        }
-    }
-
-    private LotteryDrawResponse.DrawResult performDrawLogic(String userId, LotteryActivity activity,
-                                                          String batchId, Integer drawIndex) {
-        List<Prize> availablePrizes = prizeRepository
-                .findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(activity.getId(), 0);
-        
-        Prize wonPrize = probabilityService.calculateWinningPrize(availablePrizes);
-        
-        if (wonPrize != null) {
-            // Use pessimistic lock for the specific prize being decremented
-            Optional<Prize> lockedPrizeOptional = prizeRepository.findByIdWithLock(wonPrize.getId());
-            if (lockedPrizeOptional.isEmpty()) {
-                // Prize might have been exhausted by another concurrent transaction
-                return saveAndCreateNoPrizeResult(userId, activity, batchId, drawIndex);
+    // Reservation phase: the fence check, sampling and stock decrement run under the prize lock in a
+    // transaction of their own, which commits before the lock is released. Stock rows stay locked only
+    // from the decrement to that commit, not across quota checks, record inserts or other draws.
+    // A strategy that synchronizes its own reservations is called directly, without lock or transaction.
+    private <T> T reserveUnderPrizeLock(LotteryActivity activity, Supplier<T> reservation) {
+        if (!prizeStockStrategy.requiresDrawLock()) {
+            return reservation.get();
+        }
+
+        String prizeLockKey = DistributedLockConfig.LockKeys.PRIZE_DRAW + activity.getId();
+
+        return lockProvider.executeWithFencedLock(prizeLockKey,
+                DistributedLockConfig.TimeoutConfig.PRIZE_DRAW_TIMEOUT_SECONDS, TimeUnit.SECONDS, fencingToken ->
+                reservationTransaction.execute(status -> {
+                    checkLockFence(activity, fencingToken);
+                    return reservation.get();
+                }));
+    }
+
+    // Runs in the reservation transaction ahead of any prize write. A holder whose lock expired finds a
+    // newer token already recorded, so its transaction rolls back instead of decrementing stock
+    // alongside the current holder; the row lock also keeps the next holder out until this commits.
+    // Local locks cannot expire under their holder and hand out no token.
+    private void checkLockFence(LotteryActivity activity, long fencingToken) {
+        if (fencingToken > 0 && activityRepository.advanceLockFence(activity.getId(), fencingToken) == 0) {
+            throw new OptimisticLockingFailureException(
+                    "Prize draw lock for activity " + activity.getId() + " was taken over by another holder");
+        }
+    }
+
+    // One reservation per draw; a null outcome is no prize
+    private Prize[] reserveEach(LotteryActivity activity, int drawCount) {
+        Prize[] outcomes = new Prize[drawCount];
+        try {
+            for (int i = 0; i < drawCount; i++) {
+                outcomes[i] = reserveUnderPrizeLock(activity, () -> sampleAndReservePrize(activity));
             }
-            Prize lockedPrize = lockedPrizeOptional.get();
-            if (lockedPrize.getRemainingQuantity() <= 0) {
-                return saveAndCreateNoPrizeResult(userId, activity, batchId, drawIndex);
+        } catch (RuntimeException e) {
+            releaseReserved(outcomes);
+            throw e;
+        }
+        return outcomes;
+    }
+
+    // Returns null for no prize, including a prize exhausted by another concurrent transaction.
+    // A version conflict only means the stock moved under this draw, so the draw is sampled again.
+    private Prize sampleAndReservePrize(LotteryActivity activity) {
+        for (int attempt = 1; ; attempt++) {
+            List<Prize> availablePrizes = findAvailablePrizes(activity);
+            Prize wonPrize = probabilityService.calculateWinningPrize(activity.getId(), availablePrizes);
+            if (wonPrize == null) {
+                return null;
             }
 
-            int updated = prizeRepository.decrementRemainingQuantity(lockedPrize.getId());
-            if (updated == 0) {
-                return saveAndCreateNoPrizeResult(userId, activity, batchId, drawIndex);
+            try {
+                if (prizeStockStrategy.reserve(wonPrize, 1) > 0) {
+                    return wonPrize;
+                }
+                exhaustionTracker.markExhausted(activity.getId(), wonPrize);
+                return null;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= resampleAttempts) {
+                    throw e;
+                }
             }
-            
-            recordRepository.save(new UserLotteryRecord(userId, activity.getId(), batchId, 
-                    lockedPrize.getId(), lockedPrize.getName(), UserLotteryRecord.DrawResult.WON));
-            return new LotteryDrawResponse.DrawResult(drawIndex, true, lockedPrize.getId(), 
-                    lockedPrize.getName(), lockedPrize.getDescription(), lockedPrize.getImageUrl());
-        } else {
-            return saveAndCreateNoPrizeResult(userId, activity, batchId, drawIndex);
         }
     }
 
-    private LotteryDrawResponse.DrawResult saveAndCreateNoPrizeResult(String userId, LotteryActivity activity,
-                                                                    String batchId, Integer drawIndex) {
-        recordRepository.save(new UserLotteryRecord(userId, activity.getId(), batchId, 
-                null, "No Prize", UserLotteryRecord.DrawResult.NO_PRIZE));
-        return createNoPrizeResult(userId, activity, batchId, drawIndex);
+    private Prize[] reserveBatch(LotteryActivity activity, int drawCount) {
+        return reserveUnderPrizeLock(activity, () -> sampleAndReserveBatch(activity, drawCount));
     }
 
-    private LotteryDrawResponse.DrawResult createNoPrizeResult(String userId, LotteryActivity activity,
-                                                             String batchId, Integer drawIndex) {
-        return new LotteryDrawResponse.DrawResult(drawIndex, false);
+    // Samples every draw against one prize snapshot, then reserves stock with one grouped
+    // decrement per won prize.
+    private Prize[] sampleAndReserveBatch(LotteryActivity activity, int drawCount) {
+        List<Prize> availablePrizes = findAvailablePrizes(activity);
+
+        // A prize that runs out within the snapshot drops out of the draw, which is the same as its
+        // probability mass falling through to "no prize" on the remaining draws.
+        Map<Long, Integer> snapshotStock = new HashMap<>();
+        for (Prize prize : availablePrizes) {
+            snapshotStock.put(prize.getId(), prizeStockStrategy.getAvailableQuantity(prize));
+        }
+
+        Prize[] outcomes = new Prize[drawCount];
+        Map<Prize, Integer> wonCounts = new LinkedHashMap<>();
+        for (int i = 0; i < drawCount; i++) {
+            Prize prize = probabilityService.calculateWinningPrize(activity.getId(), availablePrizes);
+            if (prize != null && snapshotStock.merge(prize.getId(), -1, Integer::sum) >= 0) {
+                outcomes[i] = prize;
+                wonCounts.merge(prize, 1, Integer::sum);
+            }
+        }
+
+        for (Map.Entry<Prize, Integer> entry : wonCounts.entrySet()) {
+            Prize prize = entry.getKey();
+            int requested = entry.getValue();
+            int shortfall = requested - prizeStockStrategy.reserve(prize, requested);
+            if (shortfall > 0) {
+                exhaustionTracker.markExhausted(activity.getId(), prize);
+            }
+            // Stock taken by a concurrent transaction turns the last wins of this prize into no-prize
+            for (int i = drawCount - 1; i >= 0 && shortfall > 0; i--) {
+                if (outcomes[i] == prize) {
+                    outcomes[i] = null;
+                    shortfall--;
+                }
+            }
+        }
+        return outcomes;
     }
 
-    private void validateUserDrawPermission(String userId, LotteryActivity activity, Integer drawCount) {
-        if (distributedLockEnabled && distributedLockService != null) {
-            String userLockKey = DistributedLockConfig.LockKeys.USER_DRAW_COUNT + userId + ":activity:" + activity.getId();
-            
-            distributedLockService.executeWithLock(userLockKey, 
-                    DistributedLockConfig.TimeoutConfig.USER_VALIDATION_TIMEOUT_SECONDS, TimeUnit.SECONDS, () -> {
-                performUserValidation(userId, activity, drawCount);
-            });
-        } else {
-            // For development without Redis/distributed locks
-            performUserValidation(userId, activity, drawCount);
+    // Persistence phase: the records commit after the stock has been reserved. If they do not, the
+    // reserved units are put back.
+    private List<LotteryDrawResponse.DrawResult> persistOutcomes(String userId, LotteryActivity activity,
+                                                                 long batchId, Prize[] outcomes, boolean batchInsert) {
+        List<UserLotteryRecord> records = new ArrayList<>(outcomes.length);
+        List<LotteryDrawResponse.DrawResult> results = new ArrayList<>(outcomes.length);
+        for (int i = 0; i < outcomes.length; i++) {
+            Prize prize = outcomes[i];
+            if (prize != null) {
+                records.add(new UserLotteryRecord(userId, activity.getId(), batchId,
+                        prize.getId(), prize.getName(), UserLotteryRecord.DrawResult.WON));
+                results.add(new LotteryDrawResponse.DrawResult(i + 1, true, prize.getId(),
+                        prize.getName(), prize.getDescription(), prize.getImageUrl()));
+            } else {
+                records.add(new UserLotteryRecord(userId, activity.getId(), batchId,
+                        null, "No Prize", UserLotteryRecord.DrawResult.NO_PRIZE));
+                results.add(createNoPrizeResult(userId, activity, batchId, i + 1));
+            }
         }
+
+        try {
+            writeRecords(records, batchInsert);
+        } catch (RuntimeException e) {
+            releaseReserved(outcomes);
+            throw e;
+        }
+        return results;
     }
 
-    private void performUserValidation(String userId, LotteryActivity activity, Integer drawCount) {
-        long existingDraws = recordRepository.countByUserIdAndActivityId(userId, activity.getId());
-        
-        if (existingDraws + drawCount > activity.getMaxDrawsPerUser()) {
-            throw new LotteryException("Draw count exceeds maximum allowed per user");
+    private void writeRecords(List<UserLotteryRecord> records, boolean batchInsert) {
+        if (recordWriter.isEnabled()) {
+            // Batched with the records of other draws; throws if these records will not be written
+            recordWriter.write(records);
+            return;
         }
+        drawTransaction.executeWithoutResult(status -> {
+            if (batchInsert) {
+                recordRepository.batchInsert(records);
+            } else {
+                for (UserLotteryRecord record : records) {
+                    record.setId(idGenerator.nextId());
+                    recordRepository.save(record);
+                }
+            }
+        });
+    }
 
-        if (distributedLockEnabled && redisTemplate != null) {
-            String currentConcurrentKey = ACTIVITY_CONCURRENT_KEY + activity.getId();
-            Long currentConcurrent = redisTemplate.opsForSet().size(currentConcurrentKey);
-            if (currentConcurrent != null && currentConcurrent >= activity.getMaxConcurrentDraws()) {
-                throw new LotteryException("Too many concurrent draws. Please try again later.");
+    private void releaseReserved(Prize[] outcomes) {
+        Map<Prize, Integer> reserved = new LinkedHashMap<>();
+        for (Prize prize : outcomes) {
+            if (prize != null) {
+                reserved.merge(prize, 1, Integer::sum);
             }
         }
-        // Skip concurrent validation when Redis is not available
+        reserved.forEach((prize, quantity) -> {
+            try {
+                reservationTransaction.executeWithoutResult(status -> prizeStockStrategy.release(prize, quantity));
+            } catch (RuntimeException e) {
+                logger.error("Failed to put back {} reserved units of prize {}", quantity, prize.getId(), e);
+            }
+        });
+    }
+
+    private List<Prize> findAvailablePrizes(LotteryActivity activity) {
+        return exhaustionTracker.filterAvailable(activity.getId(),
+                prizeStockStrategy.findAvailablePrizes(activity.getId()));
+    }
+
+    // The draws still count against the user's quota, so their no-prize records are kept
+    private List<LotteryDrawResponse.DrawResult> performSoldOutDraw(String userId, LotteryActivity activity,
+                                                                    long batchId, int drawCount) {
+        List<UserLotteryRecord> records = new ArrayList<>(drawCount);
+        List<LotteryDrawResponse.DrawResult> results = new ArrayList<>(drawCount);
+        for (int i = 0; i < drawCount; i++) {
+            records.add(new UserLotteryRecord(userId, activity.getId(), batchId,
+                    null, "No Prize", UserLotteryRecord.DrawResult.NO_PRIZE));
+            results.add(createNoPrizeResult(userId, activity, batchId, i + 1));
+        }
+        writeRecords(records, true);
+        return results;
+    }
+
+    private LotteryDrawResponse.DrawResult createNoPrizeResult(String userId, LotteryActivity activity,
+                                                             long batchId, Integer drawIndex) {
+        return new LotteryDrawResponse.DrawResult(drawIndex, false);
+    }
+
+    private void reserveQuota(String userId, LotteryActivity activity, int drawCount) {
+        if (!drawQuotaStore.tryAcquire(userId, activity, drawCount)) {
+            throw new LotteryException("Draw count exceeds maximum allowed per user");
+        }
+    }
+
+    private void releaseQuota(String userId, Long activityId, int drawCount) {
+        try {
+            drawQuotaStore.release(userId, activityId, drawCount);
+        } catch (RuntimeException e) {
+            logger.error("Failed to give back {} reserved draws of user {} in activity {}", drawCount, userId, activityId, e);
+        }
     }
-} 
\ No newline at end of file
+}
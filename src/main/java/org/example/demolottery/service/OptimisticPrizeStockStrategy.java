@@ -0,0 +1,81 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.repository.PrizeRepository;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+// Lock-free alternative to the pessimistic row lock: the decrement only applies to the prize
+// version the draw sampled from, and a moved version is re-read and retried a bounded number of times.
+public class OptimisticPrizeStockStrategy implements PrizeStockStrategy {
+
+    private final PrizeRepository prizeRepository;
+    private final TransactionTemplate stockTransaction;
+    private final int maxAttempts;
+
+    public OptimisticPrizeStockStrategy(PrizeRepository prizeRepository, PlatformTransactionManager transactionManager,
+                                        int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1");
+        }
+        this.prizeRepository = prizeRepository;
+        // Each conditional decrement commits on its own; it joins the caller's transaction if there is one
+        this.stockTransaction = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public List<Prize> findAvailablePrizes(Long activityId) {
+        return prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(activityId, 0);
+    }
+
+    @Override
+    public int reserve(Prize prize, int quantity) {
+        int remaining = prize.getRemainingQuantity();
+        Long version = prize.getVersion();
+        if (remaining <= 0) {
+            return 0;
+        }
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            int wanted = Math.min(quantity, remaining);
+            if (version != null && tryDecrement(prize.getId(), version, wanted)) {
+                return wanted;
+            }
+
+            Optional<PrizeRepository.StockSnapshot> snapshot = prizeRepository.findStockSnapshotById(prize.getId());
+            if (snapshot.isEmpty()) {
+                return 0;
+            }
+            remaining = snapshot.get().getRemainingQuantity();
+            version = snapshot.get().getVersion();
+            if (remaining <= 0) {
+                return 0;
+            }
+        }
+
+        throw new OptimisticLockingFailureException("Stock of prize " + prize.getId() + " kept changing after "
+                + maxAttempts + " attempts");
+    }
+
+    @Override
+    public void release(Prize prize, int quantity) {
+        prizeRepository.incrementRemainingQuantityBy(prize.getId(), quantity);
+    }
+
+    // The version check already rejects a decrement that raced another draw
+    @Override
+    public boolean requiresDrawLock() {
+        return false;
+    }
+
+    private boolean tryDecrement(Long prizeId, Long version, int quantity) {
+        Integer updated = stockTransaction.execute(status ->
+                prizeRepository.decrementRemainingQuantityIfVersion(prizeId, version, quantity));
+        return updated != null && updated > 0;
+    }
+}
@@ -0,0 +1,133 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.util.ProbabilityUnits;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+// Vose alias table over an activity's available prizes plus an explicit "no prize" slot.
+// Immutable, so one instance is shared by every draw thread until the prize set changes.
+public final class PrizeAliasTable {
+
+    public static final int TOTAL_WEIGHT = ProbabilityUnits.PPM_SCALE;
+
+    private final long[] prizeIds;
+    private final int[] probabilities;
+    private final int[] weights;
+    private final int[] threshold;
+    private final int[] alias;
+    private final int noPrizeSlot;
+    private final long bound;
+
+    private PrizeAliasTable(long[] prizeIds, int[] probabilities, int[] weights) {
+        this.prizeIds = prizeIds;
+        this.probabilities = probabilities;
+        this.weights = weights;
+        this.noPrizeSlot = prizeIds.length;
+
+        int slots = weights.length;
+        this.threshold = new int[slots];
+        this.alias = new int[slots];
+        this.bound = (long) slots * TOTAL_WEIGHT;
+
+        long[] scaled = new long[slots];
+        int[] small = new int[slots];
+        int[] large = new int[slots];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < slots; i++) {
+            scaled[i] = (long) weights[i] * slots;
+            if (scaled[i] < TOTAL_WEIGHT) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            threshold[less] = (int) scaled[less];
+            alias[less] = more;
+            scaled[more] -= TOTAL_WEIGHT - scaled[less];
+            if (scaled[more] < TOTAL_WEIGHT) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // Integer weights sum to exactly slots * TOTAL_WEIGHT, so whatever is left is a full column
+        while (largeSize > 0) {
+            int slot = large[--largeSize];
+            threshold[slot] = TOTAL_WEIGHT;
+            alias[slot] = slot;
+        }
+        while (smallSize > 0) {
+            int slot = small[--smallSize];
+            threshold[slot] = TOTAL_WEIGHT;
+            alias[slot] = slot;
+        }
+    }
+
+    public static PrizeAliasTable build(List<Prize> prizes) {
+        int size = prizes.size();
+        long[] prizeIds = new long[size];
+        int[] probabilities = new int[size];
+        int[] weights = new int[size + 1];
+
+        // Prizes past 100% cumulative probability can never be hit by the scan this table replaces,
+        // so their weight is clipped the same way.
+        int cumulative = 0;
+        for (int i = 0; i < size; i++) {
+            Prize prize = prizes.get(i);
+            prizeIds[i] = prize.getId() != null ? prize.getId() : i;
+            probabilities[i] = prize.getProbabilityPpm();
+            weights[i] = Math.max(0, Math.min(probabilities[i], TOTAL_WEIGHT - cumulative));
+            cumulative += weights[i];
+        }
+        weights[size] = TOTAL_WEIGHT - cumulative;
+
+        return new PrizeAliasTable(prizeIds, probabilities, weights);
+    }
+
+    public boolean matches(List<Prize> prizes) {
+        if (prizes.size() != prizeIds.length) {
+            return false;
+        }
+        for (int i = 0; i < prizeIds.length; i++) {
+            Prize prize = prizes.get(i);
+            if (prize.getId() == null || prize.getId() != prizeIds[i]
+                    || prize.getProbabilityPpm() != probabilities[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int sample(RandomGenerator random) {
+        return slotFor(random.nextLong(bound));
+    }
+
+    int slotFor(long value) {
+        int column = (int) (value / TOTAL_WEIGHT);
+        int offset = (int) (value % TOTAL_WEIGHT);
+        return offset < threshold[column] ? column : alias[column];
+    }
+
+    public boolean isNoPrize(int slot) {
+        return slot == noPrizeSlot;
+    }
+
+    public int weightOf(int slot) {
+        return weights[slot];
+    }
+
+    public int slotCount() {
+        return weights.length;
+    }
+
+    long bound() {
+        return bound;
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.ActivityStatusChangedEvent;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Per-activity bitmap of prizes this node has seen run out, so draws stop sampling and locking
+// prizes that are gone and a sold-out activity is answered without touching the prize table.
+// Stock only comes back through prize edits, status changes or leases returned by other nodes,
+// so the bitmap is dropped on those events and in any case after the recheck interval.
+@Component
+public class PrizeExhaustionTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrizeExhaustionTracker.class);
+
+    private final long recheckMillis;
+
+    private final Map<Long, ExhaustionMap> activities = new ConcurrentHashMap<>();
+
+    public PrizeExhaustionTracker(@Value("${app.lottery.sold-out.recheck-millis:5000}") long recheckMillis) {
+        this.recheckMillis = recheckMillis;
+    }
+
+    public boolean isSoldOut(Long activityId) {
+        ExhaustionMap map = current(activityId);
+        return map != null && map.isSoldOut();
+    }
+
+    // Drops prizes already known to be exhausted from a stock read. A read without any
+    // prize left marks the whole activity sold out.
+    public List<Prize> filterAvailable(Long activityId, List<Prize> availablePrizes) {
+        if (availablePrizes.isEmpty()) {
+            activities.put(activityId, ExhaustionMap.soldOut(System.currentTimeMillis()));
+            logger.info("Activity {} is sold out", activityId);
+            return availablePrizes;
+        }
+
+        ExhaustionMap map = current(activityId);
+        if (map == null || !map.covers(availablePrizes)) {
+            activities.put(activityId, new ExhaustionMap(availablePrizes, System.currentTimeMillis()));
+            return availablePrizes;
+        }
+        return map.filter(availablePrizes);
+    }
+
+    // Called when a reservation came back short, i.e. the prize had no stock left at that moment
+    public void markExhausted(Long activityId, Prize prize) {
+        ExhaustionMap map = current(activityId);
+        if (map != null && map.mark(prize.getId())) {
+            logger.info("Activity {} is sold out", activityId);
+        }
+    }
+
+    private ExhaustionMap current(Long activityId) {
+        ExhaustionMap map = activities.get(activityId);
+        if (map != null && System.currentTimeMillis() - map.createdAt >= recheckMillis) {
+            activities.remove(activityId, map);
+            return null;
+        }
+        return map;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityStatusChanged(ActivityStatusChangedEvent event) {
+        activities.remove(event.getActivityId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrizesChanged(PrizesChangedEvent event) {
+        activities.remove(event.getActivityId());
+    }
+
+    private static final class ExhaustionMap {
+        private final Long[] prizeIds;
+        private final BitSet exhausted;
+        private final long createdAt;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean soldOut;
+
+        private ExhaustionMap(List<Prize> prizes, long createdAt) {
+            this.prizeIds = prizes.stream().map(Prize::getId).toArray(Long[]::new);
+            this.exhausted = new BitSet(prizeIds.length);
+            this.createdAt = createdAt;
+        }
+
+        private static ExhaustionMap soldOut(long createdAt) {
+            ExhaustionMap map = new ExhaustionMap(List.of(), createdAt);
+            map.soldOut = true;
+            return map;
+        }
+
+        private boolean isSoldOut() {
+            return soldOut;
+        }
+
+        // Reads that still see a prize this map has never tracked mean the prize set changed
+        private boolean covers(List<Prize> prizes) {
+            for (Prize prize : prizes) {
+                if (indexOf(prize.getId()) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private List<Prize> filter(List<Prize> prizes) {
+            lock.lock();
+            try {
+                if (exhausted.isEmpty()) {
+                    return prizes;
+                }
+                List<Prize> available = new ArrayList<>(prizes.size());
+                for (Prize prize : prizes) {
+                    if (!exhausted.get(indexOf(prize.getId()))) {
+                        available.add(prize);
+                    }
+                }
+                return available;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Returns true when this mark exhausted the last prize
+        private boolean mark(Long prizeId) {
+            lock.lock();
+            try {
+                int index = indexOf(prizeId);
+                if (index < 0 || soldOut) {
+                    return false;
+                }
+                exhausted.set(index);
+                soldOut = exhausted.cardinality() == prizeIds.length;
+                return soldOut;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int indexOf(Long prizeId) {
+            for (int i = 0; i < prizeIds.length; i++) {
+                if (prizeIds[i].equals(prizeId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.demolottery.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class PrizeInventory {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrizeInventory.class);
+
+    private final PrizeRepository prizeRepository;
+    private final UserLotteryRecordRepository recordRepository;
+    private final TransactionTemplate writeTransaction;
+
+    private final Map<Long, Map<Long, PrizeCounter>> activities = new ConcurrentHashMap<>();
+    // Serializes reconciles and prize edits; draws only take it for an activity's first load
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    public PrizeInventory(PrizeRepository prizeRepository, UserLotteryRecordRepository recordRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.prizeRepository = prizeRepository;
+        this.recordRepository = recordRepository;
+        // Stock writes run in their own transaction: they are triggered from schedulers,
+        // after-commit listeners and draw transactions alike, and must not share their fate
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void load(Long activityId) {
+        counters(activityId);
+    }
+
+    public int tryDecrement(Prize prize, int quantity) {
+        PrizeCounter counter = counters(prize.getActivityId()).get(prize.getId());
+        if (counter == null) {
+            return 0;
+        }
+
+        while (true) {
+            int current = counter.remaining.get();
+            if (current <= 0) {
+                return 0;
+            }
+            int taken = Math.min(current, quantity);
+            if (counter.remaining.compareAndSet(current, current - taken)) {
+                counter.pendingDecrement.addAndGet(taken);
+                return taken;
+            }
+        }
+    }
+
+    public void release(Prize prize, int quantity) {
+        Map<Long, PrizeCounter> counters = activities.get(prize.getActivityId());
+        PrizeCounter counter = counters != null ? counters.get(prize.getId()) : null;
+        if (counter != null) {
+            counter.remaining.addAndGet(quantity);
+            counter.pendingDecrement.addAndGet(-quantity);
+        }
+    }
+
+    public int getRemaining(Long activityId, Long prizeId) {
+        Map<Long, PrizeCounter> counters = activities.get(activityId);
+        PrizeCounter counter = counters != null ? counters.get(prizeId) : null;
+        return counter != null ? Math.max(0, counter.remaining.get()) : -1;
+    }
+
+    public void flush(Long activityId) {
+        Map<Long, PrizeCounter> counters = activities.get(activityId);
+        if (counters != null) {
+            flush(counters);
+        }
+    }
+
+    // Applies edited prize rows to the live counters as deltas of their total quantity, as
+    // PrizeService.updatePrize did to the rows themselves. Rebuilding
+    // the counters from committed records instead would hand out again the units that in-flight
+    // draws hold, and their releases would land on the new counters on top of that.
+    public void applyPrizeChanges(Long activityId) {
+        loadLock.lock();
+        try {
+            Map<Long, PrizeCounter> counters = activities.get(activityId);
+            if (counters == null) {
+                return;
+            }
+            List<Prize> prizes = prizeRepository.findByActivityIdOrderBySortOrderAsc(activityId);
+            Set<Long> current = new HashSet<>();
+            for (Prize prize : prizes) {
+                current.add(prize.getId());
+                PrizeCounter counter = counters.get(prize.getId());
+                if (counter == null) {
+                    counters.put(prize.getId(), new PrizeCounter(prize.getTotalQuantity(), prize.getRemainingQuantity()));
+                    continue;
+                }
+                int delta = prize.getTotalQuantity() - counter.totalQuantity;
+                if (delta != 0) {
+                    counter.totalQuantity = prize.getTotalQuantity();
+                    counter.remaining.addAndGet(delta);
+                    logger.info("Applied total quantity change of {} to prize {}", delta, prize.getId());
+                }
+            }
+            counters.keySet().retainAll(current);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.lottery.inventory.flush-interval-millis:500}")
+    public void flush() {
+        activities.values().forEach(this::flush);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void flush(Map<Long, PrizeCounter> counters) {
+        Map<Long, Integer> decrements = new HashMap<>();
+        counters.forEach((prizeId, counter) -> {
+            int delta = counter.pendingDecrement.getAndSet(0);
+            if (delta != 0) {
+                decrements.put(prizeId, delta);
+            }
+        });
+        if (decrements.isEmpty()) {
+            return;
+        }
+
+        try {
+            writeTransaction.executeWithoutResult(status -> prizeRepository.batchDecrementRemainingQuantity(decrements));
+            logger.debug("Flushed prize stock decrements: {}", decrements);
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            decrements.forEach((prizeId, delta) -> {
+                PrizeCounter counter = counters.get(prizeId);
+                if (counter != null) {
+                    counter.pendingDecrement.addAndGet(delta);
+                }
+            });
+            logger.warn("Failed to flush prize stock decrements, will retry", e);
+        }
+    }
+
+    private Map<Long, PrizeCounter> counters(Long activityId) {
+        Map<Long, PrizeCounter> counters = activities.get(activityId);
+        if (counters != null) {
+            return counters;
+        }
+        // Reconciling reads and writes the database, so it runs outside the map's own locking
+        loadLock.lock();
+        try {
+            counters = activities.get(activityId);
+            if (counters == null) {
+                counters = reconcile(activityId);
+                activities.put(activityId, counters);
+            }
+            return counters;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    // Committed WON records are the source of truth for issued stock, so deltas lost in a crash
+    // before their flush are recovered here instead of being re-issued.
+    private Map<Long, PrizeCounter> reconcile(Long activityId) {
+        Map<Long, Long> issued = new HashMap<>();
+        for (Object[] row : recordRepository.countByActivityIdAndResultGroupByPrizeId(
+                activityId, UserLotteryRecord.DrawResult.WON)) {
+            if (row[0] != null) {
+                issued.put((Long) row[0], (Long) row[1]);
+            }
+        }
+
+        Map<Long, PrizeCounter> counters = new ConcurrentHashMap<>();
+        List<Prize> prizes = prizeRepository.findByActivityIdOrderBySortOrderAsc(activityId);
+        for (Prize prize : prizes) {
+            int remaining = (int) Math.max(0, prize.getTotalQuantity() - issued.getOrDefault(prize.getId(), 0L));
+            if (remaining != prize.getRemainingQuantity()) {
+                logger.info("Reconciled prize {} stock from {} to {}", prize.getId(), prize.getRemainingQuantity(), remaining);
+                writeTransaction.executeWithoutResult(status -> prizeRepository.updateRemainingQuantity(prize.getId(), remaining));
+            }
+            counters.put(prize.getId(), new PrizeCounter(prize.getTotalQuantity(), remaining));
+        }
+        logger.debug("Loaded in-memory stock for activity {}: {} prizes", activityId, counters.size());
+        return counters;
+    }
+
+    private static final class PrizeCounter {
+        private final AtomicInteger remaining;
+        private final AtomicInteger pendingDecrement = new AtomicInteger();
+        // Guarded by loadLock
+        private int totalQuantity;
+
+        private PrizeCounter(int totalQuantity, int remaining) {
+            this.totalQuantity = totalQuantity;
+            this.remaining = new AtomicInteger(remaining);
+        }
+    }
+}
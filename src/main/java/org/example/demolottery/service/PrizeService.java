@@ -3,9 +3,11 @@ package org.example.demolottery.service;
 import org.example.demolottery.dto.request.CreatePrizeRequest;
 import org.example.demolottery.dto.response.PrizeResponse;
 import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.PrizesChangedEvent;
 import org.example.demolottery.exception.LotteryException;
 import org.example.demolottery.repository.LotteryActivityRepository;
 import org.example.demolottery.repository.PrizeRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,10 +19,13 @@ public class PrizeService {
 
     private final PrizeRepository prizeRepository;
     private final LotteryActivityRepository activityRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public PrizeService(PrizeRepository prizeRepository, LotteryActivityRepository activityRepository) {
+    public PrizeService(PrizeRepository prizeRepository, LotteryActivityRepository activityRepository,
+                        ApplicationEventPublisher eventPublisher) {
         this.prizeRepository = prizeRepository;
         this.activityRepository = activityRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -28,7 +33,7 @@ public class PrizeService {
         Prize prize = new Prize(
                 request.getName(),
                 request.getDescription(),
-                request.getProbability(),
+                request.getProbabilityPpm(),
                 request.getTotalQuantity(),
                 activityId
         );
@@ -37,6 +42,7 @@ public class PrizeService {
         prize.setSortOrder(request.getSortOrder() != null ? request.getSortOrder() : 0);
         
         prize = prizeRepository.save(prize);
+        eventPublisher.publishEvent(new PrizesChangedEvent(activityId));
         
         return convertToPrizeResponse(prize);
     }
@@ -66,9 +72,15 @@ public class PrizeService {
             throw new LotteryException("Prize does not belong to this activity");
         }
 
+        // Units added to or taken off the total change what is left to win, whatever the stock mode
+        int added = request.getTotalQuantity() - prize.getTotalQuantity();
+        if (added != 0) {
+            prize.setRemainingQuantity(Math.max(0, prize.getRemainingQuantity() + added));
+        }
+
         prize.setName(request.getName());
         prize.setDescription(request.getDescription());
-        prize.setProbability(request.getProbability());
+        prize.setProbabilityPpm(request.getProbabilityPpm());
         prize.setTotalQuantity(request.getTotalQuantity());
         prize.setImageUrl(request.getImageUrl());
         if (request.getSortOrder() != null) {
@@ -76,6 +88,7 @@ public class PrizeService {
         }
 
         prize = prizeRepository.save(prize);
+        eventPublisher.publishEvent(new PrizesChangedEvent(activityId));
         
         return convertToPrizeResponse(prize);
     }
@@ -94,6 +107,7 @@ public class PrizeService {
         }
 
         prizeRepository.delete(prize);
+        eventPublisher.publishEvent(new PrizesChangedEvent(activityId));
     }
 
     private PrizeResponse convertToPrizeResponse(Prize prize) {
@@ -101,7 +115,7 @@ public class PrizeService {
         response.setId(prize.getId());
         response.setName(prize.getName());
         response.setDescription(prize.getDescription());
-        response.setProbability(prize.getProbability());
+        response.setProbabilityPpm(prize.getProbabilityPpm());
         response.setTotalQuantity(prize.getTotalQuantity());
         response.setRemainingQuantity(prize.getRemainingQuantity());
         response.setImageUrl(prize.getImageUrl());
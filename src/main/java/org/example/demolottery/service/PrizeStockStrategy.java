@@ -0,0 +1,28 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+
+import java.util.List;
+
+public interface PrizeStockStrategy {
+
+    // Prizes this node can still hand out, in draw order
+    List<Prize> findAvailablePrizes(Long activityId);
+
+    // Units of the prize this node can still hand out, as seen by its stock source
+    default int getAvailableQuantity(Prize prize) {
+        return prize.getRemainingQuantity();
+    }
+
+    // Reserves up to quantity units of the prize and returns how many were actually reserved
+    int reserve(Prize prize, int quantity);
+
+    // Puts back units whose reservation committed but whose draw records could not be saved
+    void release(Prize prize, int quantity);
+
+    // Whether reservations must be serialized under the activity's prize lock and fence. A strategy
+    // that keeps concurrent reservations consistent on its own, and runs its own writes, returns false.
+    default boolean requiresDrawLock() {
+        return true;
+    }
+}
@@ -1,63 +1,75 @@
 package org.example.demolottery.service;
 
 import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.util.ProbabilityUnits;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.security.SecureRandom;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ProbabilityCalculationService {
 
-    private final SecureRandom random = new SecureRandom();
+    private final DrawRandomSource randomSource;
+
+    private final Map<Long, PrizeAliasTable> aliasTables = new ConcurrentHashMap<>();
+
+    public ProbabilityCalculationService(DrawRandomSource randomSource) {
+        this.randomSource = randomSource;
+    }
 
     public Prize calculateWinningPrize(List<Prize> availablePrizes) {
         if (availablePrizes.isEmpty()) {
             return null;
         }
 
-        BigDecimal totalProbability = calculateTotalProbability(availablePrizes);
-        BigDecimal noPrizeProbability = BigDecimal.valueOf(100).subtract(totalProbability);
+        return pick(PrizeAliasTable.build(availablePrizes), availablePrizes);
+    }
 
-        if (noPrizeProbability.compareTo(BigDecimal.ZERO) < 0) {
-            noPrizeProbability = BigDecimal.ZERO;
+    public Prize calculateWinningPrize(Long activityId, List<Prize> availablePrizes) {
+        if (availablePrizes.isEmpty()) {
+            return null;
         }
 
-        BigDecimal randomValue = generateRandomPercentage();
-        
-        BigDecimal cumulativeProbability = BigDecimal.ZERO;
-        
-        for (Prize prize : availablePrizes) {
-            cumulativeProbability = cumulativeProbability.add(prize.getProbability());
-            if (randomValue.compareTo(cumulativeProbability) <= 0) {
-                return prize;
-            }
+        return pick(getAliasTable(activityId, availablePrizes), availablePrizes);
+    }
+
+    // The available prize list already excludes exhausted prizes, so a changed prize set or
+    // stock-exhaustion state shows up as a mismatch and triggers a rebuild.
+    private PrizeAliasTable getAliasTable(Long activityId, List<Prize> availablePrizes) {
+        PrizeAliasTable table = aliasTables.get(activityId);
+        if (table == null || !table.matches(availablePrizes)) {
+            table = PrizeAliasTable.build(availablePrizes);
+            aliasTables.put(activityId, table);
         }
+        return table;
+    }
 
-        return null;
+    private Prize pick(PrizeAliasTable table, List<Prize> availablePrizes) {
+        int slot = table.sample(randomSource.current());
+        return table.isNoPrize(slot) ? null : availablePrizes.get(slot);
     }
 
-    private BigDecimal calculateTotalProbability(List<Prize> prizes) {
-        return prizes.stream()
-                .map(Prize::getProbability)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrizesChanged(PrizesChangedEvent event) {
+        aliasTables.remove(event.getActivityId());
     }
 
-    private BigDecimal generateRandomPercentage() {
-        double randomDouble = random.nextDouble() * 100;
-        return BigDecimal.valueOf(randomDouble).setScale(2, RoundingMode.HALF_UP);
+    private long calculateTotalProbabilityPpm(List<Prize> prizes) {
+        return prizes.stream()
+                .mapToLong(Prize::getProbabilityPpm)
+                .sum();
     }
 
     public boolean validateProbabilitySum(List<Prize> prizes) {
-        BigDecimal totalProbability = calculateTotalProbability(prizes);
-        return totalProbability.compareTo(BigDecimal.valueOf(100)) <= 0;
+        return calculateTotalProbabilityPpm(prizes) <= ProbabilityUnits.PPM_SCALE;
     }
 
-    public BigDecimal calculateNoPrizeProbability(List<Prize> prizes) {
-        BigDecimal totalProbability = calculateTotalProbability(prizes);
-        BigDecimal noPrizeProbability = BigDecimal.valueOf(100).subtract(totalProbability);
-        return noPrizeProbability.max(BigDecimal.ZERO);
+    public int calculateNoPrizeProbabilityPpm(List<Prize> prizes) {
+        long noPrizeProbabilityPpm = ProbabilityUnits.PPM_SCALE - calculateTotalProbabilityPpm(prizes);
+        return (int) Math.max(noPrizeProbabilityPpm, 0);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,140 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Cluster-wide admission: every running draw holds a leased entry in a per-activity sorted set,
+// scored by its expiry. Entries of nodes that died mid-draw simply age out of the count, while this
+// node keeps extending the leases of its draws that are still running.
+public class RedisDrawAdmissionController implements DrawAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisDrawAdmissionController.class);
+
+    private static final String KEY_PREFIX = "lottery:admission:{";
+
+    // KEYS: permits. ARGV: limit, lease millis, permit token. Expiry uses the Redis clock so node clocks do not matter.
+    private static final String ACQUIRE_LUA_SCRIPT =
+        "local time = redis.call('time') " +
+        "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+        "redis.call('zremrangebyscore', KEYS[1], '-inf', now) " +
+        "if redis.call('zcard', KEYS[1]) >= tonumber(ARGV[1]) then return 0 end " +
+        "redis.call('zadd', KEYS[1], now + tonumber(ARGV[2]), ARGV[3]) " +
+        "redis.call('pexpire', KEYS[1], ARGV[2]) " +
+        "return 1";
+
+    // KEYS: permits. ARGV: lease millis, then the tokens to extend. Tokens that already expired are
+    // not brought back, since their slot may have been handed out again.
+    private static final String RENEW_LUA_SCRIPT =
+        "local time = redis.call('time') " +
+        "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+        "local renewed = 0 " +
+        "for i = 2, #ARGV do " +
+        "    local expiry = redis.call('zscore', KEYS[1], ARGV[i]) " +
+        "    if expiry and tonumber(expiry) > now then " +
+        "        redis.call('zadd', KEYS[1], now + tonumber(ARGV[1]), ARGV[i]) " +
+        "        renewed = renewed + 1 " +
+        "    end " +
+        "end " +
+        "if renewed > 0 then redis.call('pexpire', KEYS[1], ARGV[1]) end " +
+        "return renewed";
+
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(ACQUIRE_LUA_SCRIPT, Long.class);
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(RENEW_LUA_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final DrawRandomSource randomSource;
+    private final long leaseMillis;
+    private final ScheduledExecutorService renewer;
+
+    // Tokens of the permits this node holds, per permits key
+    private final Map<String, Set<String>> held = new ConcurrentHashMap<>();
+
+    public RedisDrawAdmissionController(StringRedisTemplate redisTemplate, DrawRandomSource randomSource,
+                                        long leaseMillis) {
+        this.redisTemplate = redisTemplate;
+        this.randomSource = randomSource;
+        this.leaseMillis = leaseMillis;
+
+        // Renews on its own thread so a stalled scheduler elsewhere cannot let leases run out
+        long renewIntervalMillis = Math.max(1, leaseMillis / 3);
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "draw-admission-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewer.scheduleWithFixedDelay(this::renewHeldPermits, renewIntervalMillis, renewIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public AdmissionPermit tryAcquire(LotteryActivity activity) {
+        String key = permitsKey(activity.getId());
+        String token = randomSource.nextUuid().toString();
+        Long admitted = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(key),
+                String.valueOf(activity.getMaxConcurrentDraws()), String.valueOf(leaseMillis), token);
+        if (admitted == null || admitted == 0) {
+            return null;
+        }
+        Set<String> tokens = held.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+        tokens.add(token);
+        return () -> {
+            tokens.remove(token);
+            try {
+                redisTemplate.opsForZSet().remove(key, token);
+            } catch (RuntimeException e) {
+                // The lease expires on its own
+                logger.warn("Failed to release admission permit for activity {}", activity.getId(), e);
+            }
+        };
+    }
+
+    // Draws still running past this point lose their slot early rather than keeping it renewed
+    @Override
+    public void shutdown() {
+        renewer.shutdownNow();
+        held.forEach((key, tokens) -> {
+            if (tokens.isEmpty()) {
+                return;
+            }
+            try {
+                redisTemplate.opsForZSet().remove(key, tokens.toArray());
+            } catch (RuntimeException e) {
+                // The leases expire on their own
+                logger.warn("Failed to release {} admission permits of {}", tokens.size(), key, e);
+            }
+        });
+        held.clear();
+    }
+
+    void renewHeldPermits() {
+        held.forEach((key, tokens) -> {
+            if (tokens.isEmpty()) {
+                return;
+            }
+            List<Object> args = new ArrayList<>(tokens.size() + 1);
+            args.add(String.valueOf(leaseMillis));
+            args.addAll(tokens);
+            try {
+                redisTemplate.execute(RENEW_SCRIPT, List.of(key), args.toArray());
+            } catch (RuntimeException e) {
+                logger.warn("Failed to renew {} admission permits of {}", tokens.size(), key, e);
+            }
+        });
+    }
+
+    private static String permitsKey(Long activityId) {
+        return KEY_PREFIX + activityId + "}";
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.ZoneId;
+import java.util.List;
+
+// Shared per-user counters for multi-node deployments: one hash per activity, seeded from the
+// user's draw records on first use and checked and incremented in a single script call.
+public class RedisDrawQuotaStore implements DrawQuotaStore {
+
+    static final long STATUS_ACQUIRED = 1L;
+    static final long STATUS_QUOTA_EXCEEDED = 0L;
+    static final long STATUS_USER_NOT_LOADED = -1L;
+
+    private static final long KEY_GRACE_SECONDS = 86_400L;
+
+    private static final String KEY_PREFIX = "lottery:quota:{";
+
+    // KEYS: quota. ARGV: userId, maxDrawsPerUser, drawCount.
+    private static final String ACQUIRE_LUA_SCRIPT =
+        "local used = redis.call('hget', KEYS[1], ARGV[1]) " +
+        "if not used then return -1 end " +
+        "if tonumber(used) + tonumber(ARGV[3]) > tonumber(ARGV[2]) then return 0 end " +
+        "redis.call('hincrby', KEYS[1], ARGV[1], ARGV[3]) " +
+        "return 1";
+
+    // KEYS: quota. ARGV: userId, draws already recorded in the database, expire-at epoch seconds.
+    private static final String SEED_LUA_SCRIPT =
+        "redis.call('hsetnx', KEYS[1], ARGV[1], ARGV[2]) " +
+        "redis.call('expireat', KEYS[1], ARGV[3]) " +
+        "return 1";
+
+    // KEYS: quota. ARGV: userId, drawCount. A counter that expired or was never seeded is left
+    // alone: the next acquire seeds it from the records, and a negative count would hand out draws.
+    private static final String RELEASE_LUA_SCRIPT =
+        "local used = redis.call('hget', KEYS[1], ARGV[1]) " +
+        "if not used then return 0 end " +
+        "local left = tonumber(used) - tonumber(ARGV[2]) " +
+        "if left < 0 then return 0 end " +
+        "redis.call('hset', KEYS[1], ARGV[1], left) " +
+        "return 1";
+
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(ACQUIRE_LUA_SCRIPT, Long.class);
+    private static final DefaultRedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>(SEED_LUA_SCRIPT, Long.class);
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(RELEASE_LUA_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserLotteryRecordRepository recordRepository;
+
+    public RedisDrawQuotaStore(StringRedisTemplate redisTemplate, UserLotteryRecordRepository recordRepository) {
+        this.redisTemplate = redisTemplate;
+        this.recordRepository = recordRepository;
+    }
+
+    @Override
+    public boolean tryAcquire(String userId, LotteryActivity activity, int drawCount) {
+        List<String> keys = List.of(quotaKey(activity.getId()));
+        Long status = redisTemplate.execute(ACQUIRE_SCRIPT, keys, userId,
+                String.valueOf(activity.getMaxDrawsPerUser()), String.valueOf(drawCount));
+        if (status != null && status == STATUS_USER_NOT_LOADED) {
+            seed(userId, activity);
+            status = redisTemplate.execute(ACQUIRE_SCRIPT, keys, userId,
+                    String.valueOf(activity.getMaxDrawsPerUser()), String.valueOf(drawCount));
+        }
+        return status != null && status == STATUS_ACQUIRED;
+    }
+
+    @Override
+    public void release(String userId, Long activityId, int drawCount) {
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(quotaKey(activityId)), userId, String.valueOf(drawCount));
+    }
+
+    @Override
+    public long getDrawCount(String userId, Long activityId) {
+        Object used = redisTemplate.opsForHash().get(quotaKey(activityId), userId);
+        return used != null ? Long.parseLong((String) used) : recordRepository.countByUserIdAndActivityId(userId, activityId);
+    }
+
+    private void seed(String userId, LotteryActivity activity) {
+        long recorded = recordRepository.countByUserIdAndActivityId(userId, activity.getId());
+        long endEpochSeconds = activity.getEndTime().atZone(ZoneId.systemDefault()).toEpochSecond();
+        redisTemplate.execute(SEED_SCRIPT, List.of(quotaKey(activity.getId())),
+                userId, String.valueOf(recorded), String.valueOf(endEpochSeconds + KEY_GRACE_SECONDS));
+    }
+
+    private static String quotaKey(Long activityId) {
+        return KEY_PREFIX + activityId + "}";
+    }
+}
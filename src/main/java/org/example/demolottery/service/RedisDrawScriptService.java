@@ -0,0 +1,434 @@
+package org.example.demolottery.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.LotteryException;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.util.ProbabilityUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+
+// Draw engine for multi-node deployments: quota check, weighted pick and stock decrement run
+// as one Redis script, and the draw records are written to the database behind it. With the record
+// writer on they are handed to it before the draw is answered, so durability=journal covers them,
+// and the stock rows follow on the next flush.
+@Service
+@ConditionalOnProperty(name = "app.lottery.draw-engine", havingValue = "redis-script")
+public class RedisDrawScriptService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisDrawScriptService.class);
+
+    static final long STATUS_OK = 0L;
+    static final long STATUS_QUOTA_EXCEEDED = 1L;
+    static final long STATUS_PRIZES_NOT_LOADED = 2L;
+    static final long STATUS_USER_NOT_LOADED = 3L;
+
+    private static final int MAX_DRAW_ATTEMPTS = 3;
+    private static final int MAX_RECORD_ATTEMPTS = 3;
+    private static final long CATALOG_TTL_MILLIS = 60_000L;
+    private static final long KEY_GRACE_SECONDS = 86_400L;
+
+    // The activity id is a hash tag so all keys of one activity live in the same cluster slot
+    private static final String KEY_PREFIX = "lottery:draw:{";
+
+    // KEYS: weights, stock, quota. ARGV: userId, maxDrawsPerUser, drawCount, one random value per draw.
+    // Returns the status followed by the won prize id (0 for no prize) of every draw.
+    private static final String DRAW_LUA_SCRIPT =
+        "local weights = redis.call('hgetall', KEYS[1]) " +
+        "if #weights == 0 then return {2} end " +
+        "local used = redis.call('hget', KEYS[3], ARGV[1]) " +
+        "if not used then return {3} end " +
+        "local count = tonumber(ARGV[3]) " +
+        "if tonumber(used) + count > tonumber(ARGV[2]) then return {1} end " +
+        "local stock = {} " +
+        "for i = 1, #weights, 2 do " +
+        "    stock[i] = tonumber(redis.call('hget', KEYS[2], weights[i]) or '0') " +
+        "end " +
+        "local result = {0} " +
+        "for d = 1, count do " +
+        "    local value = tonumber(ARGV[3 + d]) " +
+        "    local cumulative = 0 " +
+        "    local won = 0 " +
+        "    for i = 1, #weights, 2 do " +
+        "        if stock[i] > 0 then " +
+        "            cumulative = cumulative + tonumber(weights[i + 1]) " +
+        "            if value < cumulative then " +
+        "                stock[i] = stock[i] - 1 " +
+        "                redis.call('hincrby', KEYS[2], weights[i], -1) " +
+        "                won = tonumber(weights[i]) " +
+        "                break " +
+        "            end " +
+        "        end " +
+        "    end " +
+        "    result[d + 1] = won " +
+        "end " +
+        "redis.call('hincrby', KEYS[3], ARGV[1], count) " +
+        "return result";
+
+    // KEYS: weights, stock, totals. ARGV: expire-at epoch seconds, then (prizeId, probabilityPpm,
+    // remaining, totalQuantity) quadruples. Stock already in Redis wins over the database copy, which
+    // lags behind the record writes of every node; an edited total quantity is applied to it as a delta.
+    private static final String SEED_PRIZES_LUA_SCRIPT =
+        "redis.call('del', KEYS[1]) " +
+        "for i = 2, #ARGV, 4 do " +
+        "    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+        "    local total = redis.call('hget', KEYS[3], ARGV[i]) " +
+        "    if total and redis.call('hexists', KEYS[2], ARGV[i]) == 1 then " +
+        "        redis.call('hincrby', KEYS[2], ARGV[i], tonumber(ARGV[i + 3]) - tonumber(total)) " +
+        "    else " +
+        "        redis.call('hsetnx', KEYS[2], ARGV[i], ARGV[i + 2]) " +
+        "    end " +
+        "    redis.call('hset', KEYS[3], ARGV[i], ARGV[i + 3]) " +
+        "end " +
+        "redis.call('expireat', KEYS[1], ARGV[1]) " +
+        "redis.call('expireat', KEYS[2], ARGV[1]) " +
+        "redis.call('expireat', KEYS[3], ARGV[1]) " +
+        "return 1";
+
+    // KEYS: quota. ARGV: userId, draws already recorded in the database, expire-at epoch seconds.
+    private static final String SEED_QUOTA_LUA_SCRIPT =
+        "redis.call('hsetnx', KEYS[1], ARGV[1], ARGV[2]) " +
+        "redis.call('expireat', KEYS[1], ARGV[3]) " +
+        "return 1";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> DRAW_SCRIPT = new DefaultRedisScript<>(DRAW_LUA_SCRIPT, List.class);
+    private static final DefaultRedisScript<Long> SEED_PRIZES_SCRIPT = new DefaultRedisScript<>(SEED_PRIZES_LUA_SCRIPT, Long.class);
+    private static final DefaultRedisScript<Long> SEED_QUOTA_SCRIPT = new DefaultRedisScript<>(SEED_QUOTA_LUA_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final PrizeRepository prizeRepository;
+    private final UserLotteryRecordRepository recordRepository;
+    private final DrawRandomSource randomSource;
+    private final DrawRecordWriter recordWriter;
+    private final TransactionTemplate writeTransaction;
+    private final BlockingQueue<PendingRecord> pendingRecords = new LinkedBlockingQueue<>();
+    // Prizes won in draws whose records went to the record writer, not yet taken off the stock rows
+    private final Map<Long, Integer> pendingDecrements = new ConcurrentHashMap<>();
+    // Records of committed draws not yet in the database, including failed batches waiting for a retry
+    private final AtomicInteger unflushed = new AtomicInteger();
+    private final int queueCapacity;
+
+    private final Map<Long, PrizeCatalog> catalogs = new ConcurrentHashMap<>();
+
+    @Value("${app.lottery.admission.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    public RedisDrawScriptService(StringRedisTemplate redisTemplate,
+                                  PrizeRepository prizeRepository,
+                                  UserLotteryRecordRepository recordRepository,
+                                  DrawRandomSource randomSource,
+                                  DrawRecordWriter recordWriter,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.lottery.redis-script.queue-capacity:100000}") int queueCapacity) {
+        this.redisTemplate = redisTemplate;
+        this.prizeRepository = prizeRepository;
+        this.recordRepository = recordRepository;
+        this.randomSource = randomSource;
+        this.recordWriter = recordWriter;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.queueCapacity = queueCapacity;
+    }
+
+    public List<LotteryDrawResponse.DrawResult> draw(String userId, LotteryActivity activity,
+                                                     long batchId, int drawCount) {
+        // Room for the records is taken before the script commits the draw in Redis: once it has,
+        // the records must be written eventually and the request must not fail
+        if (unflushed.addAndGet(drawCount) > queueCapacity) {
+            unflushed.addAndGet(-drawCount);
+            throw new AdmissionRejectedException("Too many draw records waiting to be written. Please try again later.",
+                    retryAfterSeconds);
+        }
+        List<Long> outcome = null;
+        try {
+            for (int attempt = 1; outcome == null; attempt++) {
+                List<Long> response = executeDrawScript(userId, activity, drawCount);
+                long status = response.get(0);
+                if (status == STATUS_OK) {
+                    outcome = response;
+                } else if (status == STATUS_QUOTA_EXCEEDED) {
+                    throw new LotteryException("Draw count exceeds maximum allowed per user");
+                } else if (attempt >= MAX_DRAW_ATTEMPTS) {
+                    throw new LotteryException("Draw state is not available. Please try again later.");
+                } else if (status == STATUS_PRIZES_NOT_LOADED) {
+                    seedPrizes(activity);
+                } else if (status == STATUS_USER_NOT_LOADED) {
+                    seedUserQuota(userId, activity);
+                }
+            }
+        } finally {
+            if (outcome == null) {
+                unflushed.addAndGet(-drawCount);
+            }
+        }
+
+        PrizeCatalog catalog = getCatalog(activity.getId(), outcome);
+        LocalDateTime now = LocalDateTime.now();
+        List<UserLotteryRecord> records = new ArrayList<>(drawCount);
+        List<LotteryDrawResponse.DrawResult> results = new ArrayList<>(drawCount);
+        for (int i = 1; i <= drawCount; i++) {
+            Prize prize = catalog.prizes.get(outcome.get(i));
+            UserLotteryRecord record;
+            if (prize != null) {
+                record = new UserLotteryRecord(userId, activity.getId(), batchId,
+                        prize.getId(), prize.getName(), UserLotteryRecord.DrawResult.WON);
+                results.add(new LotteryDrawResponse.DrawResult(i, true, prize.getId(),
+                        prize.getName(), prize.getDescription(), prize.getImageUrl()));
+            } else {
+                record = new UserLotteryRecord(userId, activity.getId(), batchId,
+                        null, "No Prize", UserLotteryRecord.DrawResult.NO_PRIZE);
+                results.add(new LotteryDrawResponse.DrawResult(i, false));
+            }
+            record.setCreatedAt(now);
+            records.add(record);
+        }
+        queueRecords(records, drawCount);
+        return results;
+    }
+
+    // The draw is already committed in Redis, so a writer that turns the records away only moves
+    // them to the in-memory queue, whose room was taken up front
+    private void queueRecords(List<UserLotteryRecord> records, int drawCount) {
+        if (recordWriter.isEnabled()) {
+            try {
+                recordWriter.write(records);
+                unflushed.addAndGet(-drawCount);
+                for (UserLotteryRecord record : records) {
+                    if (record.getResult() == UserLotteryRecord.DrawResult.WON) {
+                        pendingDecrements.merge(record.getPrizeId(), 1, Integer::sum);
+                    }
+                }
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Record writer did not take {} draw records, queueing them here", records.size(), e);
+            }
+        }
+        records.forEach(record -> pendingRecords.add(new PendingRecord(record)));
+    }
+
+    public Long getUserDrawCount(String userId, Long activityId) {
+        Object used = redisTemplate.opsForHash().get(quotaKey(activityId), userId);
+        return used != null ? Long.valueOf((String) used) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> executeDrawScript(String userId, LotteryActivity activity, int drawCount) {
+        RandomGenerator random = randomSource.current();
+        Object[] args = new Object[3 + drawCount];
+        args[0] = userId;
+        args[1] = String.valueOf(activity.getMaxDrawsPerUser());
+        args[2] = String.valueOf(drawCount);
+        for (int i = 0; i < drawCount; i++) {
+            args[3 + i] = String.valueOf(random.nextInt(ProbabilityUnits.PPM_SCALE));
+        }
+        Long activityId = activity.getId();
+        return (List<Long>) redisTemplate.execute(DRAW_SCRIPT,
+                Arrays.asList(weightsKey(activityId), stockKey(activityId), quotaKey(activityId)), args);
+    }
+
+    private void seedPrizes(LotteryActivity activity) {
+        List<Prize> prizes = prizeRepository.findByActivityIdOrderBySortOrderAsc(activity.getId());
+        List<Object> args = new ArrayList<>(1 + prizes.size() * 4);
+        args.add(expireAt(activity));
+        for (Prize prize : prizes) {
+            args.add(String.valueOf(prize.getId()));
+            args.add(String.valueOf(prize.getProbabilityPpm()));
+            args.add(String.valueOf(prize.getRemainingQuantity()));
+            args.add(String.valueOf(prize.getTotalQuantity()));
+        }
+        redisTemplate.execute(SEED_PRIZES_SCRIPT,
+                Arrays.asList(weightsKey(activity.getId()), stockKey(activity.getId()), totalsKey(activity.getId())),
+                args.toArray());
+        catalogs.put(activity.getId(), new PrizeCatalog(prizes));
+        logger.debug("Seeded Redis draw state for activity {}: {} prizes", activity.getId(), prizes.size());
+    }
+
+    private void seedUserQuota(String userId, LotteryActivity activity) {
+        // Records still in the writer would otherwise be missing from the count
+        recordWriter.awaitWritten();
+        long recorded = recordRepository.countByUserIdAndActivityId(userId, activity.getId())
+                + countPending(userId, activity.getId());
+        redisTemplate.execute(SEED_QUOTA_SCRIPT, List.of(quotaKey(activity.getId())),
+                userId, String.valueOf(recorded), expireAt(activity));
+    }
+
+    private long countPending(String userId, Long activityId) {
+        return pendingRecords.stream()
+                .map(pending -> pending.record)
+                .filter(record -> record.getActivityId().equals(activityId) && record.getUserId().equals(userId))
+                .count();
+    }
+
+    private PrizeCatalog getCatalog(Long activityId, List<Long> outcome) {
+        PrizeCatalog catalog = catalogs.get(activityId);
+        boolean stale = catalog == null || System.currentTimeMillis() - catalog.loadedAt > CATALOG_TTL_MILLIS;
+        for (int i = 1; !stale && i < outcome.size(); i++) {
+            stale = outcome.get(i) != 0 && !catalog.prizes.containsKey(outcome.get(i));
+        }
+        if (stale) {
+            catalog = new PrizeCatalog(prizeRepository.findByActivityIdOrderBySortOrderAsc(activityId));
+            catalogs.put(activityId, catalog);
+        }
+        return catalog;
+    }
+
+    @Scheduled(fixedDelayString = "${app.lottery.redis-script.flush-interval-millis:200}")
+    public void flush() {
+        List<PendingRecord> batch = new ArrayList<>();
+        pendingRecords.drainTo(batch);
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+        flushDecrements();
+    }
+
+    // The rows are only the database copy of the stock Redis holds, so they may trail the records
+    private void flushDecrements() {
+        Map<Long, Integer> decrements = new HashMap<>();
+        for (Long prizeId : pendingDecrements.keySet()) {
+            Integer won = pendingDecrements.remove(prizeId);
+            if (won != null) {
+                decrements.put(prizeId, won);
+            }
+        }
+        if (decrements.isEmpty()) {
+            return;
+        }
+        try {
+            writeTransaction.executeWithoutResult(status -> prizeRepository.batchDecrementRemainingQuantity(decrements));
+        } catch (RuntimeException e) {
+            decrements.forEach((prizeId, won) -> pendingDecrements.merge(prizeId, won, Integer::sum));
+            logger.warn("Failed to update stock of {} prizes, will retry", decrements.size(), e);
+        }
+    }
+
+    private void flush(List<PendingRecord> batch) {
+        try {
+            writeRecords(batch.stream().map(pending -> pending.record).toList());
+            unflushed.addAndGet(-batch.size());
+            logger.debug("Flushed {} draw records", batch.size());
+        } catch (NonTransientDataAccessException e) {
+            // Some record will never go in as it is: halve the batch until it is found, so it does not
+            // hold back the records behind it
+            if (batch.size() > 1) {
+                flush(batch.subList(0, batch.size() / 2));
+                flush(batch.subList(batch.size() / 2, batch.size()));
+                return;
+            }
+            PendingRecord pending = batch.get(0);
+            if (++pending.attempts < MAX_RECORD_ATTEMPTS) {
+                pendingRecords.add(pending);
+                logger.warn("Failed to write draw record of user {}, will retry", pending.record.getUserId(), e);
+                return;
+            }
+            unflushed.decrementAndGet();
+            UserLotteryRecord record = pending.record;
+            logger.error("Dropping draw record after {} attempts: user {}, activity {}, batch {}, prize {}, result {}, created {}",
+                    pending.attempts, record.getUserId(), record.getActivityId(), record.getBatchId(),
+                    record.getPrizeId(), record.getResult(), record.getCreatedAt(), e);
+        } catch (RuntimeException e) {
+            // Redis already holds the outcome, so the records go back until a flush gets them in;
+            // the queue is unbounded and new draws are held back by the unflushed count instead
+            pendingRecords.addAll(batch);
+            logger.warn("Failed to flush {} draw records, will retry", batch.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void writeRecords(List<UserLotteryRecord> records) {
+        Map<Long, Integer> decrements = new HashMap<>();
+        for (UserLotteryRecord record : records) {
+            if (record.getResult() == UserLotteryRecord.DrawResult.WON) {
+                decrements.merge(record.getPrizeId(), 1, Integer::sum);
+            }
+        }
+        writeTransaction.executeWithoutResult(status -> {
+            recordRepository.batchInsert(records);
+            prizeRepository.batchDecrementRemainingQuantity(decrements);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrizesChanged(PrizesChangedEvent event) {
+        // Only the weights are dropped: the next draw reseeds them and applies the edit to the stock,
+        // which holds decrements that neither this node nor the others have flushed yet
+        Long activityId = event.getActivityId();
+        redisTemplate.delete(weightsKey(activityId));
+        catalogs.remove(activityId);
+    }
+
+    private String expireAt(LotteryActivity activity) {
+        long endEpochSeconds = activity.getEndTime().atZone(ZoneId.systemDefault()).toEpochSecond();
+        return String.valueOf(endEpochSeconds + KEY_GRACE_SECONDS);
+    }
+
+    private static String weightsKey(Long activityId) {
+        return KEY_PREFIX + activityId + "}:weights";
+    }
+
+    private static String stockKey(Long activityId) {
+        return KEY_PREFIX + activityId + "}:stock";
+    }
+
+    private static String totalsKey(Long activityId) {
+        return KEY_PREFIX + activityId + "}:totals";
+    }
+
+    private static String quotaKey(Long activityId) {
+        return KEY_PREFIX + activityId + "}:quota";
+    }
+
+    private static final class PendingRecord {
+        private final UserLotteryRecord record;
+        // Failures of this record on its own, not counting batches that failed for other reasons
+        private int attempts;
+
+        private PendingRecord(UserLotteryRecord record) {
+            this.record = record;
+        }
+    }
+
+    private static final class PrizeCatalog {
+        private final Map<Long, Prize> prizes = new HashMap<>();
+        private final long loadedAt = System.currentTimeMillis();
+
+        private PrizeCatalog(List<Prize> prizes) {
+            prizes.forEach(prize -> this.prizes.put(prize.getId(), prize));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.demolottery.service;
+
+import java.security.SecureRandom;
+import java.util.random.RandomGenerator;
+
+public class SharedSecureRandomSource implements DrawRandomSource {
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public RandomGenerator current() {
+        return random;
+    }
+}
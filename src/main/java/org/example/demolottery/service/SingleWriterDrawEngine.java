@@ -0,0 +1,392 @@
+package org.example.demolottery.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.event.ActivityStatusChangedEvent;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.DrawNotCommittedException;
+import org.example.demolottery.exception.LotteryException;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.random.RandomGenerator;
+
+// Draw engine for activities flagged singleWriter: one thread per activity owns its prize stock,
+// takes draws off a ring buffer, samples them without any lock and commits each micro-batch of
+// records and stock decrements in one transaction before answering the waiting request threads.
+// With the record writer on, the micro-batch is handed to it instead and the stock rows follow.
+// Stock is held by this node only, so such an activity must be served by a single instance.
+@Service
+public class SingleWriterDrawEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleWriterDrawEngine.class);
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000L;
+
+    private final PrizeRepository prizeRepository;
+    private final UserLotteryRecordRepository recordRepository;
+    private final DrawRandomSource randomSource;
+    private final DrawRecordWriter recordWriter;
+    private final TransactionTemplate writeTransaction;
+    private final int ringCapacity;
+    private final int batchSize;
+    private final long awaitTimeoutMillis;
+
+    private final Map<Long, ActivityLoop> loops = new ConcurrentHashMap<>();
+    // Serializes starting and closing an activity's loop, so the stock is loaded and the old loop
+    // drained without blocking inside the map's compute
+    private final Map<Long, ReentrantLock> lifecycleLocks = new ConcurrentHashMap<>();
+
+    @Value("${app.lottery.admission.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    public SingleWriterDrawEngine(PrizeRepository prizeRepository,
+                                  UserLotteryRecordRepository recordRepository,
+                                  DrawRandomSource randomSource,
+                                  DrawRecordWriter recordWriter,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.lottery.single-writer.ring-capacity:4096}") int ringCapacity,
+                                  @Value("${app.lottery.single-writer.batch-size:256}") int batchSize,
+                                  @Value("${app.lottery.single-writer.await-timeout-millis:5000}") long awaitTimeoutMillis) {
+        this.prizeRepository = prizeRepository;
+        this.recordRepository = recordRepository;
+        this.randomSource = randomSource;
+        this.recordWriter = recordWriter;
+        // Batches commit on the loop thread, independent of the request transactions waiting on them
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ringCapacity = ringCapacity;
+        this.batchSize = batchSize;
+        this.awaitTimeoutMillis = awaitTimeoutMillis;
+    }
+
+    public List<LotteryDrawResponse.DrawResult> draw(String userId, LotteryActivity activity,
+                                                     long batchId, int drawCount) {
+        DrawRequest request = new DrawRequest(userId, batchId, drawCount);
+        while (true) {
+            ActivityLoop loop = loops.get(activity.getId());
+            if (loop == null) {
+                loop = start(activity.getId());
+            }
+            int published = loop.publish(request);
+            if (published < 0) {
+                // Closed after a prize or status change; the next loop reloads the stock
+                continue;
+            }
+            if (published == 0) {
+                throw new AdmissionRejectedException("Too many draws queued for this activity. Please try again later.",
+                        retryAfterSeconds);
+            }
+            return await(request);
+        }
+    }
+
+    public boolean isSoldOut(Long activityId) {
+        ActivityLoop loop = loops.get(activityId);
+        return loop != null && loop.soldOut;
+    }
+
+    private List<LotteryDrawResponse.DrawResult> await(DrawRequest request) {
+        try {
+            return request.result.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new LotteryException("Draw failed. Please try again.");
+        } catch (TimeoutException e) {
+            // The batch may still commit; its records then show up in the user's history
+            throw new LotteryException("Draw is taking longer than expected. Please check your draw records.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LotteryException("Draw was interrupted");
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityStatusChanged(ActivityStatusChangedEvent event) {
+        // Started again lazily by the next draw of an active activity
+        close(event.getActivityId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrizesChanged(PrizesChangedEvent event) {
+        close(event.getActivityId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loops.keySet().forEach(this::close);
+    }
+
+    // Holds the activity's lifecycle lock until the loop has committed, so no new loop can load the stock before
+    private void close(Long activityId) {
+        ReentrantLock lock = lifecycleLock(activityId);
+        lock.lock();
+        try {
+            ActivityLoop loop = loops.remove(activityId);
+            if (loop != null) {
+                loop.closeAndAwait();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ActivityLoop start(Long activityId) {
+        ReentrantLock lock = lifecycleLock(activityId);
+        lock.lock();
+        try {
+            ActivityLoop loop = loops.get(activityId);
+            if (loop != null) {
+                return loop;
+            }
+            List<Prize> prizes = prizeRepository.findByActivityIdOrderBySortOrderAsc(activityId);
+            loop = new ActivityLoop(activityId, prizes, reconcile(activityId, prizes));
+            Thread thread = new Thread(loop, "draw-loop-" + activityId);
+            thread.setDaemon(true);
+            loop.thread = thread;
+            thread.start();
+            loops.put(activityId, loop);
+            return loop;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lifecycleLock(Long activityId) {
+        return lifecycleLocks.computeIfAbsent(activityId, id -> new ReentrantLock());
+    }
+
+    // Committed WON records are the source of truth, so a new loop carries on from what was issued.
+    // The prize entities are only read: they may belong to the calling draw's persistence context.
+    private int[] reconcile(Long activityId, List<Prize> prizes) {
+        recordWriter.awaitWritten();
+        Map<Long, Long> issued = new HashMap<>();
+        for (Object[] row : recordRepository.countByActivityIdAndResultGroupByPrizeId(
+                activityId, UserLotteryRecord.DrawResult.WON)) {
+            if (row[0] != null) {
+                issued.put((Long) row[0], (Long) row[1]);
+            }
+        }
+
+        int[] remaining = new int[prizes.size()];
+        for (int i = 0; i < remaining.length; i++) {
+            Prize prize = prizes.get(i);
+            int left = (int) Math.max(0, prize.getTotalQuantity() - issued.getOrDefault(prize.getId(), 0L));
+            if (left != prize.getRemainingQuantity()) {
+                logger.info("Reconciled prize {} stock from {} to {}", prize.getId(), prize.getRemainingQuantity(), left);
+                writeTransaction.executeWithoutResult(status -> prizeRepository.updateRemainingQuantity(prize.getId(), left));
+            }
+            remaining[i] = left;
+        }
+        logger.info("Started single-writer draw loop for activity {}: {} prizes", activityId, prizes.size());
+        return remaining;
+    }
+
+    private static final class DrawRequest {
+        private final String userId;
+        private final long batchId;
+        private final int drawCount;
+        private final CompletableFuture<List<LotteryDrawResponse.DrawResult>> result = new CompletableFuture<>();
+
+        private DrawRequest(String userId, long batchId, int drawCount) {
+            this.userId = userId;
+            this.batchId = batchId;
+            this.drawCount = drawCount;
+        }
+    }
+
+    private final class ActivityLoop implements Runnable {
+        private final Long activityId;
+        private final DrawRingBuffer<DrawRequest> ring;
+        // Publishers between their closed check and their offer; the loop drains until none are left
+        private final AtomicInteger publishers = new AtomicInteger();
+        private volatile boolean closed;
+        private volatile boolean parked;
+        private volatile boolean soldOut;
+        private Thread thread;
+
+        // Owned by the loop thread
+        private final Prize[] prizes;
+        private final int[] remaining;
+        private final PrizeAliasTable table;
+
+        private ActivityLoop(Long activityId, List<Prize> prizes, int[] remaining) {
+            this.activityId = activityId;
+            this.ring = new DrawRingBuffer<>(ringCapacity);
+            this.prizes = prizes.toArray(new Prize[0]);
+            this.remaining = remaining;
+            // Sold-out prizes keep their slot and simply draw as no prize, like a stock read without them would
+            this.table = PrizeAliasTable.build(prizes);
+            this.soldOut = isEverythingIssued();
+        }
+
+        // Returns 1 when published, 0 when the ring is full and -1 when the loop is closed
+        private int publish(DrawRequest request) {
+            publishers.incrementAndGet();
+            try {
+                if (closed) {
+                    return -1;
+                }
+                if (!ring.offer(request)) {
+                    return 0;
+                }
+            } finally {
+                publishers.decrementAndGet();
+            }
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+            return 1;
+        }
+
+        private void closeAndAwait() {
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                logger.warn("Draw loop for activity {} did not stop within {} ms", activityId, CLOSE_TIMEOUT_MILLIS);
+            }
+        }
+
+        @Override
+        public void run() {
+            RandomGenerator random = randomSource.current();
+            List<DrawRequest> batch = new ArrayList<>(batchSize);
+            while (true) {
+                if (ring.drainTo(batch, batchSize) > 0) {
+                    try {
+                        settle(batch, random);
+                    } catch (RuntimeException e) {
+                        // Keep the loop alive for the next batch instead of leaving every caller to time out
+                        logger.error("Draw loop for activity {} failed a batch", activityId, e);
+                        LotteryException failure = new LotteryException("Draw failed. Please try again.");
+                        batch.forEach(request -> request.result.completeExceptionally(failure));
+                    }
+                    batch.clear();
+                } else if (closed && publishers.get() == 0 && ring.isEmpty()) {
+                    logger.info("Stopped single-writer draw loop for activity {}", activityId);
+                    return;
+                } else {
+                    // Publishers read parked after their offer, so either they unpark this thread or the ring
+                    // check below sees their draw
+                    parked = true;
+                    if (ring.isEmpty() && !closed) {
+                        LockSupport.park(this);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+        private void settle(List<DrawRequest> batch, RandomGenerator random) {
+            int[] issued = new int[prizes.length];
+            List<UserLotteryRecord> records = new ArrayList<>();
+            List<List<LotteryDrawResponse.DrawResult>> results = new ArrayList<>(batch.size());
+            for (DrawRequest request : batch) {
+                List<LotteryDrawResponse.DrawResult> requestResults = new ArrayList<>(request.drawCount);
+                for (int i = 0; i < request.drawCount; i++) {
+                    int slot = table.sample(random);
+                    if (!table.isNoPrize(slot) && remaining[slot] > 0) {
+                        Prize prize = prizes[slot];
+                        remaining[slot]--;
+                        issued[slot]++;
+                        records.add(new UserLotteryRecord(request.userId, activityId, request.batchId,
+                                prize.getId(), prize.getName(), UserLotteryRecord.DrawResult.WON));
+                        requestResults.add(new LotteryDrawResponse.DrawResult(i + 1, true, prize.getId(),
+                                prize.getName(), prize.getDescription(), prize.getImageUrl()));
+                    } else {
+                        records.add(new UserLotteryRecord(request.userId, activityId, request.batchId,
+                                null, "No Prize", UserLotteryRecord.DrawResult.NO_PRIZE));
+                        requestResults.add(new LotteryDrawResponse.DrawResult(i + 1, false));
+                    }
+                }
+                results.add(requestResults);
+            }
+
+            Map<Long, Integer> decrements = new HashMap<>();
+            for (int i = 0; i < prizes.length; i++) {
+                if (issued[i] > 0) {
+                    decrements.put(prizes[i].getId(), issued[i]);
+                }
+            }
+
+            try {
+                writeRecords(records, decrements);
+            } catch (RuntimeException e) {
+                // Nothing of this batch was issued: put the stock back and let the callers retry
+                for (int i = 0; i < prizes.length; i++) {
+                    remaining[i] += issued[i];
+                }
+                logger.error("Failed to commit {} draws of activity {}", records.size(), activityId, e);
+                DrawNotCommittedException failure = new DrawNotCommittedException("Draw failed. Please try again.", e);
+                batch.forEach(request -> request.result.completeExceptionally(failure));
+                return;
+            }
+
+            soldOut = isEverythingIssued();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        }
+
+        private void writeRecords(List<UserLotteryRecord> records, Map<Long, Integer> decrements) {
+            if (!recordWriter.isEnabled()) {
+                writeTransaction.executeWithoutResult(status -> {
+                    recordRepository.batchInsert(records);
+                    prizeRepository.batchDecrementRemainingQuantity(decrements);
+                });
+                return;
+            }
+
+            // Once the writer has the records the batch is issued. The rows only trail this loop's
+            // stock, and the next loop reconciles them from the records if this update is lost.
+            recordWriter.write(records);
+            try {
+                writeTransaction.executeWithoutResult(status -> prizeRepository.batchDecrementRemainingQuantity(decrements));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to update prize stock of activity {}, left to the next reconcile", activityId, e);
+            }
+        }
+
+        private boolean isEverythingIssued() {
+            for (int stock : remaining) {
+                if (stock > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
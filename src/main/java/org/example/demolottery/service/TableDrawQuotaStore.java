@@ -0,0 +1,74 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.UserActivityQuota;
+import org.example.demolottery.repository.UserActivityQuotaRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Database-only quota: one user_activity_quota row per user and activity, reserved with a single
+// conditional UPDATE that commits on its own, so the row lock is held for that statement only.
+// A failed draw gives its reservation back with the matching decrement.
+public class TableDrawQuotaStore implements DrawQuotaStore {
+
+    private final UserActivityQuotaRepository quotaRepository;
+    private final UserLotteryRecordRepository recordRepository;
+    private final TransactionTemplate quotaTransaction;
+
+    public TableDrawQuotaStore(UserActivityQuotaRepository quotaRepository,
+                               UserLotteryRecordRepository recordRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.quotaRepository = quotaRepository;
+        this.recordRepository = recordRepository;
+        // Reservations, releases and seeds each commit at once, whatever transaction the caller is in
+        this.quotaTransaction = new TransactionTemplate(transactionManager);
+        this.quotaTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public boolean tryAcquire(String userId, LotteryActivity activity, int drawCount) {
+        Long activityId = activity.getId();
+        int maxDraws = activity.getMaxDrawsPerUser();
+        if (increment(userId, activityId, drawCount, maxDraws)) {
+            return true;
+        }
+        if (quotaRepository.findDrawsUsed(userId, activityId).isPresent()) {
+            return false;
+        }
+
+        seed(userId, activityId);
+        return increment(userId, activityId, drawCount, maxDraws);
+    }
+
+    @Override
+    public void release(String userId, Long activityId, int drawCount) {
+        quotaTransaction.executeWithoutResult(status -> quotaRepository.decrementDrawsUsed(userId, activityId, drawCount));
+    }
+
+    @Override
+    public long getDrawCount(String userId, Long activityId) {
+        return quotaRepository.findDrawsUsed(userId, activityId)
+                .map(Integer::longValue)
+                .orElseGet(() -> recordRepository.countByUserIdAndActivityId(userId, activityId));
+    }
+
+    private boolean increment(String userId, Long activityId, int drawCount, int maxDraws) {
+        Integer updated = quotaTransaction.execute(status ->
+                quotaRepository.incrementDrawsUsed(userId, activityId, drawCount, maxDraws));
+        return updated != null && updated > 0;
+    }
+
+    private void seed(String userId, Long activityId) {
+        try {
+            quotaTransaction.executeWithoutResult(status -> {
+                long recorded = recordRepository.countByUserIdAndActivityId(userId, activityId);
+                quotaRepository.save(new UserActivityQuota(userId, activityId, (int) recorded));
+            });
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent draw of the same user seeded the row first
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.demolottery.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.random.RandomGenerator;
+
+import static java.security.DrbgParameters.Capability.RESEED_ONLY;
+
+public class ThreadLocalDrbgRandomSource implements DrawRandomSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadLocalDrbgRandomSource.class);
+
+    private static final int SECURITY_STRENGTH = 256;
+    private static final int BUFFER_BYTES = 512;
+
+    private final long reseedInterval;
+    private final long reseedPeriodNanos;
+    private final AtomicLong instanceCounter = new AtomicLong();
+    private final ThreadLocal<ReseedingDrbg> generators = ThreadLocal.withInitial(this::newGenerator);
+
+    // Virtual threads live for one request, so a thread-local instance would be seeded per draw.
+    // They share a fixed set of striped generators instead, guarded by locks that do not pin the carrier.
+    private final ReseedingDrbg[] stripes;
+    private final ReentrantLock[] stripeLocks;
+    private final RandomGenerator virtualThreadGenerator = this::nextStripedLong;
+
+    public ThreadLocalDrbgRandomSource(long reseedInterval, long reseedPeriodMillis) {
+        this.reseedInterval = reseedInterval;
+        this.reseedPeriodNanos = reseedPeriodMillis * 1_000_000L;
+        int stripeCount = Runtime.getRuntime().availableProcessors();
+        this.stripes = new ReseedingDrbg[stripeCount];
+        this.stripeLocks = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public RandomGenerator current() {
+        return Thread.currentThread().isVirtual() ? virtualThreadGenerator : generators.get();
+    }
+
+    private long nextStripedLong() {
+        int stripe = (int) (Thread.currentThread().threadId() % stripes.length);
+        ReentrantLock lock = stripeLocks[stripe];
+        lock.lock();
+        try {
+            if (stripes[stripe] == null) {
+                stripes[stripe] = newGenerator();
+            }
+            return stripes[stripe].nextLong();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReseedingDrbg newGenerator() {
+        // Personalization keeps per-thread instances distinct even if they are seeded in the same instant
+        byte[] personalization = ("lottery-draw-" + instanceCounter.incrementAndGet()).getBytes();
+        try {
+            SecureRandom random = SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(SECURITY_STRENGTH, RESEED_ONLY, personalization));
+            return new ReseedingDrbg(random);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("DRBG SecureRandom is not available", e);
+        }
+    }
+
+    // Pulls DRBG output in blocks so the per-call generate/lock overhead is paid once per block
+    private final class ReseedingDrbg implements RandomGenerator {
+        private final SecureRandom random;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private long valuesSinceReseed;
+        private long lastReseedNanos = System.nanoTime();
+
+        private ReseedingDrbg(SecureRandom random) {
+            this.random = random;
+            buffer.position(BUFFER_BYTES);
+        }
+
+        @Override
+        public long nextLong() {
+            if (!buffer.hasRemaining()) {
+                refill();
+            }
+            return buffer.getLong();
+        }
+
+        private void refill() {
+            if (valuesSinceReseed >= reseedInterval || System.nanoTime() - lastReseedNanos >= reseedPeriodNanos) {
+                random.reseed();
+                valuesSinceReseed = 0;
+                lastReseedNanos = System.nanoTime();
+                logger.trace("Reseeded draw DRBG on thread {}", Thread.currentThread().getName());
+            }
+            random.nextBytes(buffer.array());
+            buffer.clear();
+            valuesSinceReseed += BUFFER_BYTES / Long.BYTES;
+        }
+    }
+}
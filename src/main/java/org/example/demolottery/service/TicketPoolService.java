@@ -0,0 +1,302 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.event.ActivityStatusChangedEvent;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.exception.LotteryException;
+import org.example.demolottery.repository.LotteryActivityRepository;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+// Draw engine for activities with a fixed ticket pool: the exact multiset of outcomes is shuffled
+// once and every draw pops the next ticket, so prizes are issued in exactly their configured quantities.
+@Service
+public class TicketPoolService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketPoolService.class);
+
+    private static final int NO_PRIZE_TICKET = -1;
+
+    private final LotteryActivityRepository activityRepository;
+    private final PrizeRepository prizeRepository;
+    private final UserLotteryRecordRepository recordRepository;
+    private final DrawRandomSource randomSource;
+    private final DrawRecordWriter recordWriter;
+
+    private final Map<Long, ActivityTickets> activities = new ConcurrentHashMap<>();
+
+    public TicketPoolService(LotteryActivityRepository activityRepository,
+                             PrizeRepository prizeRepository,
+                             UserLotteryRecordRepository recordRepository,
+                             DrawRandomSource randomSource,
+                             DrawRecordWriter recordWriter) {
+        this.activityRepository = activityRepository;
+        this.prizeRepository = prizeRepository;
+        this.recordRepository = recordRepository;
+        this.randomSource = randomSource;
+        this.recordWriter = recordWriter;
+    }
+
+    public List<LotteryDrawResponse.DrawResult> draw(String userId, LotteryActivity activity,
+                                                     long batchId, int drawCount) {
+        ActivityTickets tickets = activities.computeIfAbsent(activity.getId(), id -> new ActivityTickets());
+        TicketPool pool = tickets.enter(() -> build(activity));
+        boolean exitOnCompletion = false;
+        try {
+            int[] positions = pool.take(drawCount);
+            if (positions == null) {
+                throw new LotteryException("All tickets for this activity have been drawn");
+            }
+            AtomicBoolean handedOver = new AtomicBoolean();
+            exitOnCompletion = registerCompletion(tickets, pool, positions, handedOver);
+            return issue(userId, activity, batchId, pool, positions, handedOver);
+        } finally {
+            if (!exitOnCompletion) {
+                tickets.exit();
+            }
+        }
+    }
+
+    private List<LotteryDrawResponse.DrawResult> issue(String userId, LotteryActivity activity, long batchId,
+                                                       TicketPool pool, int[] positions, AtomicBoolean handedOver) {
+        int drawCount = positions.length;
+        List<UserLotteryRecord> records = new ArrayList<>(drawCount);
+        List<LotteryDrawResponse.DrawResult> results = new ArrayList<>(drawCount);
+        Map<Long, Integer> wonCounts = new HashMap<>();
+        for (int i = 0; i < drawCount; i++) {
+            Prize prize = pool.prizeAt(positions[i]);
+            if (prize != null) {
+                wonCounts.merge(prize.getId(), 1, Integer::sum);
+                records.add(new UserLotteryRecord(userId, activity.getId(), batchId,
+                        prize.getId(), prize.getName(), UserLotteryRecord.DrawResult.WON));
+                results.add(new LotteryDrawResponse.DrawResult(i + 1, true, prize.getId(),
+                        prize.getName(), prize.getDescription(), prize.getImageUrl()));
+            } else {
+                records.add(new UserLotteryRecord(userId, activity.getId(), batchId,
+                        null, "No Prize", UserLotteryRecord.DrawResult.NO_PRIZE));
+                results.add(new LotteryDrawResponse.DrawResult(i + 1, false));
+            }
+        }
+
+        // The pool already guarantees the stock, so the rows are only kept in step for reporting
+        prizeRepository.batchDecrementRemainingQuantity(wonCounts);
+        if (recordWriter.isEnabled()) {
+            // Handed over last: once accepted the records are written even if this transaction rolls back
+            recordWriter.write(records);
+            handedOver.set(true);
+        } else {
+            recordRepository.batchInsert(records);
+        }
+        return results;
+    }
+
+    // Rebuilt from committed records, so a restart or prize edit carries on with exactly the
+    // outcomes that have not been issued yet. Only called once no draw holds tickets of the old pool.
+    private TicketPool build(LotteryActivity activity) {
+        recordWriter.awaitWritten();
+        List<Prize> prizes = prizeRepository.findByActivityIdOrderBySortOrderAsc(activity.getId());
+        Map<Long, Long> issued = new HashMap<>();
+        for (Object[] row : recordRepository.countByActivityIdAndResultGroupByPrizeId(
+                activity.getId(), UserLotteryRecord.DrawResult.WON)) {
+            if (row[0] != null) {
+                issued.put((Long) row[0], (Long) row[1]);
+            }
+        }
+
+        long drawn = recordRepository.countByActivityId(activity.getId());
+        long ticketsLeft = Math.max(0, activity.getTicketPoolSize() - drawn);
+        long[] prizeTickets = new long[prizes.size()];
+        long totalPrizeTickets = 0;
+        for (int i = 0; i < prizes.size(); i++) {
+            Prize prize = prizes.get(i);
+            prizeTickets[i] = Math.max(0, prize.getTotalQuantity() - issued.getOrDefault(prize.getId(), 0L));
+            totalPrizeTickets += prizeTickets[i];
+        }
+        if (totalPrizeTickets > ticketsLeft) {
+            throw new LotteryException("Ticket pool is smaller than the remaining prize stock");
+        }
+
+        int[] tickets = new int[(int) ticketsLeft];
+        int position = 0;
+        for (int i = 0; i < prizes.size(); i++) {
+            for (long n = 0; n < prizeTickets[i]; n++) {
+                tickets[position++] = i;
+            }
+        }
+        while (position < tickets.length) {
+            tickets[position++] = NO_PRIZE_TICKET;
+        }
+
+        RandomGenerator random = randomSource.current();
+        for (int i = tickets.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int ticket = tickets[i];
+            tickets[i] = tickets[j];
+            tickets[j] = ticket;
+        }
+
+        logger.info("Built ticket pool for activity {}: {} tickets, {} winning", activity.getId(),
+                tickets.length, totalPrizeTickets);
+        return new TicketPool(prizes.toArray(new Prize[0]), tickets);
+    }
+
+    // The draw stays in flight until its transaction completes; returns false outside a transaction
+    private boolean registerCompletion(ActivityTickets tickets, TicketPool pool, int[] positions,
+                                       AtomicBoolean handedOver) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK && !handedOver.get()) {
+                    pool.release(positions);
+                }
+                tickets.exit();
+            }
+        });
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityStatusChanged(ActivityStatusChangedEvent event) {
+        if (event.getStatus() == LotteryActivity.ActivityStatus.ACTIVE) {
+            activityRepository.findById(event.getActivityId())
+                    .filter(activity -> activity.getTicketPoolSize() != null)
+                    .ifPresent(activity -> activities.computeIfAbsent(activity.getId(), id -> new ActivityTickets())
+                            .rebuild(() -> build(activity)));
+        } else {
+            discard(event.getActivityId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrizesChanged(PrizesChangedEvent event) {
+        discard(event.getActivityId());
+    }
+
+    private void discard(Long activityId) {
+        ActivityTickets tickets = activities.get(activityId);
+        if (tickets != null) {
+            tickets.rebuild(() -> null);
+        }
+    }
+
+    // Draws share the fence from taking their tickets until their transaction completes. Replacing
+    // the pool takes it exclusively, so the rebuild sees every ticket of the old pool either
+    // recorded or released by a rollback, and none is issued twice.
+    private static final class ActivityTickets {
+        private final ReentrantReadWriteLock fence = new ReentrantReadWriteLock();
+        // Guarded by fence
+        private TicketPool pool;
+
+        private TicketPool enter(Supplier<TicketPool> builder) {
+            fence.readLock().lock();
+            if (pool != null) {
+                return pool;
+            }
+            fence.readLock().unlock();
+
+            fence.writeLock().lock();
+            try {
+                if (pool == null) {
+                    pool = builder.get();
+                }
+                fence.readLock().lock();
+                return pool;
+            } finally {
+                fence.writeLock().unlock();
+            }
+        }
+
+        private void exit() {
+            fence.readLock().unlock();
+        }
+
+        private void rebuild(Supplier<TicketPool> builder) {
+            fence.writeLock().lock();
+            try {
+                // A failed build leaves no pool, so the next draw builds it again
+                pool = null;
+                pool = builder.get();
+            } finally {
+                fence.writeLock().unlock();
+            }
+        }
+    }
+
+    private static final class TicketPool {
+        private final Prize[] prizes;
+        private final int[] tickets;
+        private final AtomicInteger next = new AtomicInteger();
+        // Tickets of rolled-back draws go back out before the next fresh ones
+        private final Queue<Integer> released = new ConcurrentLinkedQueue<>();
+
+        private TicketPool(Prize[] prizes, int[] tickets) {
+            this.prizes = prizes;
+            this.tickets = tickets;
+        }
+
+        private int[] take(int count) {
+            int[] positions = new int[count];
+            int taken = 0;
+            Integer position;
+            while (taken < count && (position = released.poll()) != null) {
+                positions[taken++] = position;
+            }
+
+            int needed = count - taken;
+            while (needed > 0) {
+                int start = next.get();
+                if (start + needed > tickets.length) {
+                    release(positions, taken);
+                    return null;
+                }
+                if (next.compareAndSet(start, start + needed)) {
+                    for (int i = 0; i < needed; i++) {
+                        positions[taken++] = start + i;
+                    }
+                    needed = 0;
+                }
+            }
+            return positions;
+        }
+
+        private void release(int[] positions) {
+            release(positions, positions.length);
+        }
+
+        private void release(int[] positions, int count) {
+            for (int i = 0; i < count; i++) {
+                released.add(positions[i]);
+            }
+        }
+
+        private Prize prizeAt(int position) {
+            int ticket = tickets[position];
+            return ticket == NO_PRIZE_TICKET ? null : prizes[ticket];
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.demolottery.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Probabilities are stored and drawn as integer parts-per-million; percentages only exist in JSON.
+public final class ProbabilityUnits {
+
+    public static final int PPM_SCALE = 1_000_000;
+
+    private static final int PERCENT_TO_PPM_SHIFT = 4;
+
+    private ProbabilityUnits() {}
+
+    public static int toPpm(BigDecimal percent) {
+        return percent.movePointRight(PERCENT_TO_PPM_SHIFT).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    public static BigDecimal toPercent(int ppm) {
+        // Keep the familiar two-decimal form unless the odds actually need the extra precision
+        if (ppm % 100 == 0) {
+            return BigDecimal.valueOf(ppm / 100, 2);
+        }
+        return BigDecimal.valueOf(ppm, PERCENT_TO_PPM_SHIFT);
+    }
+}
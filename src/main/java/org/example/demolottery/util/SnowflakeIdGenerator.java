@@ -0,0 +1,48 @@
+package org.example.demolottery.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Time-ordered 64-bit ids: 41 bits of milliseconds since 2024-01-01 UTC, 10 bits of node id and a
+// 12-bit sequence. Ids of one node only ever increase: a clock that steps back, or more than 4096 ids
+// in one millisecond, borrows from the following milliseconds until the clock catches up. Two
+// instances must not share a node id.
+public class SnowflakeIdGenerator {
+
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+
+    // Milliseconds since the epoch shifted over the sequence of the last id handed out
+    private final AtomicLong lastTick = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    public long nextId() {
+        while (true) {
+            long last = lastTick.get();
+            long next = Math.max((clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS, last + 1);
+            if (lastTick.compareAndSet(last, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+                return millis << (NODE_BITS + SEQUENCE_BITS) | nodeBits | sequence;
+            }
+        }
+    }
+}
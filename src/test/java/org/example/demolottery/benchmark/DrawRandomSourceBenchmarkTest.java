@@ -0,0 +1,38 @@
+package org.example.demolottery.benchmark;
+
+import org.example.demolottery.service.DrawRandomSource;
+import org.example.demolottery.service.PrizeAliasTable;
+import org.example.demolottery.service.SharedSecureRandomSource;
+import org.example.demolottery.service.ThreadLocalDrbgRandomSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+// ./mvnw test -Dtest=DrawRandomSourceBenchmarkTest -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DrawRandomSourceBenchmarkTest {
+
+    private static final long DURATION_MILLIS = 2000;
+
+    @Test
+    void compareDrawThroughputAcrossThreadCounts() throws InterruptedException {
+        PrizeAliasTable table = PrizeAliasTable.build(ThroughputBenchmark.samplePrizes());
+
+        report("shared-secure-random", new SharedSecureRandomSource(), table);
+        report("thread-local-drbg", new ThreadLocalDrbgRandomSource(100_000, 60_000), table);
+    }
+
+    private void report(String name, DrawRandomSource source, PrizeAliasTable table) throws InterruptedException {
+        ThroughputBenchmark.warmUp(() -> table.sample(source.current()));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        double singleThread = 0;
+        System.out.printf("%n%s%n%8s %16s %10s%n", name, "threads", "draws/sec", "scaling");
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double throughput = ThroughputBenchmark.run(threads, DURATION_MILLIS, () -> table.sample(source.current()));
+            if (threads == 1) {
+                singleThread = throughput;
+            }
+            System.out.printf("%8d %16.0f %9.2fx%n", threads, throughput, throughput / singleThread);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.example.demolottery.benchmark;
+
+import org.example.demolottery.dto.request.LotteryDrawRequest;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.repository.LotteryActivityRepository;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.service.DatabasePrizeStockStrategy;
+import org.example.demolottery.service.DrawRecordWriter;
+import org.example.demolottery.service.InMemoryDrawQuotaStore;
+import org.example.demolottery.service.LocalDrawAdmissionController;
+import org.example.demolottery.service.LockProvider;
+import org.example.demolottery.service.LotteryService;
+import org.example.demolottery.service.PrizeExhaustionTracker;
+import org.example.demolottery.service.ProbabilityCalculationService;
+import org.example.demolottery.service.SingleWriterDrawEngine;
+import org.example.demolottery.service.ThreadLocalDrbgRandomSource;
+import org.example.demolottery.service.TicketPoolService;
+import org.example.demolottery.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// ./mvnw test -Dtest=SingleWriterDrawBenchmarkTest -Dbenchmark=true
+// Runs LotteryService against repositories and a distributed lock that each cost one simulated
+// network round trip, comparing the locked performDrawLogic path with the single-writer loop.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SingleWriterDrawBenchmarkTest {
+
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long DURATION_MILLIS = 3000;
+    private static final int[] THREAD_COUNTS = {1, 8, 64};
+
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    @Test
+    void compareLockedDrawWithSingleWriterLoop() throws InterruptedException {
+        report("locked performDrawLogic", false);
+        report("single-writer loop", true);
+    }
+
+    private void report(String name, boolean singleWriter) throws InterruptedException {
+        LotteryActivity activity = activity(singleWriter);
+        List<Prize> prizes = prizes();
+        PrizeRepository prizeRepository = prizeRepository(prizes);
+        UserLotteryRecordRepository recordRepository = recordRepository();
+        LotteryActivityRepository activityRepository = mock(LotteryActivityRepository.class, withSettings().stubOnly());
+        when(activityRepository.findById(1L)).thenAnswer(roundTrip(() -> Optional.of(activity)));
+        when(activityRepository.advanceLockFence(eq(1L), anyLong())).thenAnswer(roundTrip(() -> 1));
+
+        ThreadLocalDrbgRandomSource randomSource = new ThreadLocalDrbgRandomSource(100_000, 60_000);
+        DrawRecordWriter recordWriter = mock(DrawRecordWriter.class, withSettings().stubOnly());
+        SingleWriterDrawEngine engine = new SingleWriterDrawEngine(prizeRepository, recordRepository, randomSource,
+                recordWriter, mock(PlatformTransactionManager.class, withSettings().stubOnly()), 4096, 256, 30_000);
+        LotteryService lotteryService = new LotteryService(activityRepository, recordRepository,
+                new ProbabilityCalculationService(randomSource), lockProvider(), new SnowflakeIdGenerator(0),
+                new DatabasePrizeStockStrategy(prizeRepository), null,
+                mock(TicketPoolService.class, withSettings().stubOnly()), new PrizeExhaustionTracker(5000),
+                new InMemoryDrawQuotaStore(recordRepository), new LocalDrawAdmissionController(), engine, recordWriter,
+                mock(PlatformTransactionManager.class, withSettings().stubOnly()));
+        ReflectionTestUtils.setField(lotteryService, "batchDrawEnabled", true);
+
+        System.out.printf("%n%s (round trip %d us)%n%8s %16s%n", name,
+                TimeUnit.NANOSECONDS.toMicros(ROUND_TRIP_NANOS), "threads", "draws/sec");
+        try {
+            ThroughputBenchmark.run(8, 1000, () -> draw(lotteryService));
+            for (int threads : THREAD_COUNTS) {
+                double throughput = ThroughputBenchmark.run(threads, DURATION_MILLIS, () -> draw(lotteryService));
+                System.out.printf("%8d %16.0f%n", threads, throughput);
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private long draw(LotteryService lotteryService) {
+        String userId = Thread.currentThread().getName();
+        return lotteryService.performDraw(userId, new LotteryDrawRequest(1L, 1)).getResults().size();
+    }
+
+    // Held for the whole critical section, with a round trip each to acquire and release it
+    private LockProvider lockProvider() {
+        LockProvider provider = mock(LockProvider.class, withSettings().stubOnly());
+        when(provider.executeWithLock(anyString(), anyLong(), any(), anySupplier())).thenAnswer(invocation -> {
+            ReentrantLock lock = locks.computeIfAbsent(invocation.getArgument(0), key -> new ReentrantLock());
+            lock.lock();
+            try {
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                Object result = invocation.<Supplier<?>>getArgument(3).get();
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        });
+        when(provider.executeWithFencedLock(anyString(), anyLong(), any(), any())).thenAnswer(invocation -> {
+            ReentrantLock lock = locks.computeIfAbsent(invocation.getArgument(0), key -> new ReentrantLock());
+            lock.lock();
+            try {
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                Object result = invocation.<LongFunction<?>>getArgument(3).apply(1L);
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        });
+        doAnswer(invocation -> {
+            ReentrantLock lock = locks.computeIfAbsent(invocation.getArgument(0), key -> new ReentrantLock());
+            lock.lock();
+            try {
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                invocation.<Runnable>getArgument(3).run();
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }).when(provider).executeWithLock(anyString(), anyLong(), any(), any(Runnable.class));
+        return provider;
+    }
+
+    private PrizeRepository prizeRepository(List<Prize> prizes) {
+        PrizeRepository prizeRepository = mock(PrizeRepository.class, withSettings().stubOnly());
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenAnswer(roundTrip(() -> prizes));
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenAnswer(roundTrip(() -> prizes));
+        for (Prize prize : prizes) {
+            when(prizeRepository.findByIdWithLock(prize.getId())).thenAnswer(roundTrip(() -> Optional.of(prize)));
+        }
+        when(prizeRepository.decrementRemainingQuantity(anyLong())).thenAnswer(roundTrip(() -> 1));
+        doAnswer(roundTrip(() -> null)).when(prizeRepository).batchDecrementRemainingQuantity(anyMap());
+        return prizeRepository;
+    }
+
+    private UserLotteryRecordRepository recordRepository() {
+        UserLotteryRecordRepository recordRepository = mock(UserLotteryRecordRepository.class, withSettings().stubOnly());
+        when(recordRepository.countByUserIdAndActivityId(anyString(), eq(1L))).thenAnswer(roundTrip(() -> 0L));
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(eq(1L), any()))
+                .thenAnswer(roundTrip(ArrayList::new));
+        when(recordRepository.save(any())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(ROUND_TRIP_NANOS);
+            return invocation.getArgument(0);
+        });
+        doAnswer(roundTrip(() -> null)).when(recordRepository).batchInsert(anyList());
+        return recordRepository;
+    }
+
+    private static <T> Answer<T> roundTrip(Supplier<T> result) {
+        return invocation -> {
+            LockSupport.parkNanos(ROUND_TRIP_NANOS);
+            return result.get();
+        };
+    }
+
+    private LotteryActivity activity(boolean singleWriter) {
+        LotteryActivity activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setName("Benchmark");
+        activity.setStatus(LotteryActivity.ActivityStatus.ACTIVE);
+        activity.setStartTime(LocalDateTime.now().minusHours(1));
+        activity.setEndTime(LocalDateTime.now().plusHours(1));
+        activity.setMaxDrawsPerUser(Integer.MAX_VALUE);
+        activity.setMaxConcurrentDraws(Integer.MAX_VALUE);
+        activity.setSingleWriter(singleWriter);
+        return activity;
+    }
+
+    private List<Prize> prizes() {
+        List<Prize> prizes = new ArrayList<>();
+        int[] probabilitiesPpm = {5, 20_000, 50_000, 100_000, 150_000};
+        for (int i = 0; i < probabilitiesPpm.length; i++) {
+            Prize prize = new Prize();
+            prize.setId((long) i + 1);
+            prize.setActivityId(1L);
+            prize.setName("Prize " + (i + 1));
+            prize.setProbabilityPpm(probabilitiesPpm[i]);
+            prize.setTotalQuantity(Integer.MAX_VALUE);
+            prize.setRemainingQuantity(Integer.MAX_VALUE);
+            prizes.add(prize);
+        }
+        return prizes;
+    }
+
+    private static <T> Supplier<T> anySupplier() {
+        return any();
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.demolottery.benchmark;
+
+import org.example.demolottery.entity.Prize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Minimal fixed-duration throughput harness for the opt-in benchmarks (-Dbenchmark=true)
+final class ThroughputBenchmark {
+
+    private ThroughputBenchmark() {}
+
+    // Runs the operation on the given number of threads and returns operations per second
+    static double run(int threads, long durationMillis, LongSupplier operation) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] sink = new long[threads];
+        long[] elapsed = new long[1];
+
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+                    long count = 0;
+                    long checksum = 0;
+                    while ((count & 0xFF) != 0 || System.nanoTime() < deadline) {
+                        checksum += operation.getAsLong();
+                        count++;
+                    }
+                    sink[index] = checksum;
+                    operations.add(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "benchmark-" + t);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        elapsed[0] = System.nanoTime() - begin;
+
+        return operations.sum() * 1_000_000_000.0 / elapsed[0];
+    }
+
+    static void warmUp(LongSupplier operation) throws InterruptedException {
+        run(Runtime.getRuntime().availableProcessors(), 1000, operation);
+    }
+
+    // Five prizes from a jackpot at 5 ppm up to 15%, the rest of the wheel wins nothing
+    static List<Prize> samplePrizes() {
+        List<Prize> prizes = new ArrayList<>();
+        int[] probabilitiesPpm = {5, 20_000, 50_000, 100_000, 150_000};
+        for (int i = 0; i < probabilitiesPpm.length; i++) {
+            Prize prize = new Prize();
+            prize.setId((long) i + 1);
+            prize.setProbabilityPpm(probabilitiesPpm[i]);
+            prizes.add(prize);
+        }
+        return prizes;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.demolottery.benchmark;
+
+import org.example.demolottery.service.DrawRandomSource;
+import org.example.demolottery.service.PrizeAliasTable;
+import org.example.demolottery.service.ThreadLocalDrbgRandomSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// ./mvnw test -Dtest=VirtualThreadDrawBenchmarkTest -Dbenchmark=true
+// Compares executors only, not the endpoint: 10k tasks park for a draw's Redis round trip and
+// pooled JDBC time, then take a real alias-table pick, on 200 platform threads and on virtual threads.
+// Its numbers say how the executors schedule blocked work; they are not a load test of /draw.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadDrawBenchmarkTest {
+
+    private static final int CLIENTS = 10_000;
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int CONNECTION_POOL_SIZE = 50;
+    private static final long REDIS_ROUND_TRIP_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long JDBC_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void comparePlatformAndVirtualThreadsOnSimulatedDraws() throws Exception {
+        PrizeAliasTable table = PrizeAliasTable.build(ThroughputBenchmark.samplePrizes());
+        DrawRandomSource randomSource = new ThreadLocalDrbgRandomSource(100_000, 60_000);
+
+        System.out.printf("%n%d simulated draws%n%-22s %12s %10s %10s%n",
+                CLIENTS, "executor", "draws/sec", "p50 ms", "p99 ms");
+        report("platform (200 threads)", () -> Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), table, randomSource);
+        report("virtual threads", Executors::newVirtualThreadPerTaskExecutor, table, randomSource);
+    }
+
+    private void report(String name, Supplier<ExecutorService> executors, PrizeAliasTable table,
+                        DrawRandomSource randomSource) throws Exception {
+        // The first round pays for class loading, JIT and thread/generator creation
+        replay(executors.get(), table, randomSource);
+        long[] sorted = new long[CLIENTS];
+        long elapsed = replay(executors.get(), table, randomSource, sorted);
+        Arrays.sort(sorted);
+
+        System.out.printf("%-22s %12.0f %10.1f %10.1f%n", name, CLIENTS * 1_000_000_000.0 / elapsed,
+                sorted[CLIENTS / 2] / 1e6, sorted[CLIENTS * 99 / 100] / 1e6);
+    }
+
+    private void replay(ExecutorService executor, PrizeAliasTable table, DrawRandomSource randomSource) throws Exception {
+        replay(executor, table, randomSource, new long[CLIENTS]);
+    }
+
+    // Returns the wall time in nanos and fills in each client's latency
+    private long replay(ExecutorService executor, PrizeAliasTable table, DrawRandomSource randomSource,
+                        long[] latencies) throws Exception {
+        Semaphore connections = new Semaphore(CONNECTION_POOL_SIZE);
+        long begin = System.nanoTime();
+        List<Future<Long>> futures = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            long submitted = System.nanoTime();
+            futures.add(executor.submit(() -> {
+                LockSupport.parkNanos(REDIS_ROUND_TRIP_NANOS);
+                connections.acquire();
+                try {
+                    LockSupport.parkNanos(JDBC_NANOS);
+                    table.sample(randomSource.current());
+                } finally {
+                    connections.release();
+                }
+                return System.nanoTime() - submitted;
+            }));
+        }
+
+        for (int i = 0; i < CLIENTS; i++) {
+            latencies[i] = futures.get(i).get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        return elapsed;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.demolottery.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.demolottery.entity.LotteryActivity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveDrawAdmissionControllerTest {
+
+    private MeterRegistry meterRegistry;
+
+    // Draw latencies are simulated by moving this clock, so the limit follows them exactly
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    private AdaptiveDrawAdmissionController admissionController;
+
+    private LotteryActivity activity;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        admissionController = new AdaptiveDrawAdmissionController(new LocalDrawAdmissionController(),
+                meterRegistry, 4, 2, 1.0, 600, nanoTime::get);
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setMaxConcurrentDraws(100);
+    }
+
+    @Test
+    void testRejectsBeyondAdaptiveLimitAndCountsIt() {
+        List<DrawAdmissionController.AdmissionPermit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(admissionController.tryAcquire(activity));
+        }
+
+        assertTrue(permits.stream().allMatch(permit -> permit != null));
+        assertNull(admissionController.tryAcquire(activity));
+        assertEquals(1.0, meterRegistry.get(AdaptiveDrawAdmissionController.REJECTED_METRIC)
+                .tag("reason", "adaptive-limit").counter().count());
+    }
+
+    @Test
+    void testLimitGrowsWhileLatencyHoldsSteady() {
+        for (int round = 0; round < 20; round++) {
+            runSaturatedRound(100_000);
+        }
+
+        assertTrue(admissionController.getLimit(1L) > 4);
+        assertEquals(admissionController.getLimit(1L),
+                meterRegistry.get(AdaptiveDrawAdmissionController.LIMIT_METRIC).gauge().value(), 1.0);
+    }
+
+    @Test
+    void testLimitShrinksWhenLatencyClimbs() {
+        for (int round = 0; round < 10; round++) {
+            runSaturatedRound(100_000);
+        }
+        int steadyLimit = admissionController.getLimit(1L);
+
+        for (int round = 0; round < 5; round++) {
+            runSaturatedRound(20_000_000);
+        }
+
+        assertTrue(admissionController.getLimit(1L) < steadyLimit);
+    }
+
+    @Test
+    void testNeverExceedsMaxConcurrentDraws() {
+        activity.setMaxConcurrentDraws(3);
+
+        for (int round = 0; round < 20; round++) {
+            runSaturatedRound(100_000);
+        }
+
+        assertTrue(admissionController.getLimit(1L) <= 3);
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(admissionController.tryAcquire(activity));
+        }
+        assertNull(admissionController.tryAcquire(activity));
+    }
+
+    // Fills the current limit, holds every permit for the given time, then releases them all
+    private void runSaturatedRound(long holdNanos) {
+        List<DrawAdmissionController.AdmissionPermit> permits = new ArrayList<>();
+        DrawAdmissionController.AdmissionPermit permit;
+        while ((permit = admissionController.tryAcquire(activity)) != null) {
+            permits.add(permit);
+        }
+        nanoTime.addAndGet(holdNanos);
+        permits.forEach(DrawAdmissionController.AdmissionPermit::close);
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.dto.request.LotteryDrawRequest;
+import org.example.demolottery.dto.response.DrawTicketResponse;
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.LotteryException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncDrawServiceTest {
+
+    @Mock
+    private LotteryService lotteryService;
+
+    private AsyncDrawService asyncDrawService;
+
+    private LotteryDrawRequest request;
+
+    private LotteryDrawResponse drawResponse;
+
+    @BeforeEach
+    void setUp() {
+        asyncDrawService = new AsyncDrawService(lotteryService, new SharedSecureRandomSource(), 1, 1, 8, 60000, 1000);
+
+        request = new LotteryDrawRequest(1L, 2);
+        drawResponse = new LotteryDrawResponse("batch", 1L, "Test Activity", 2, List.of(), LocalDateTime.now());
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncDrawService.shutdown();
+    }
+
+    @Test
+    void testSubmittedDrawCanBePolledOnceSettled() throws Exception {
+        when(lotteryService.performDraw("user", request)).thenReturn(drawResponse);
+        asyncDrawService.start();
+
+        DrawTicketResponse ticket = asyncDrawService.submit("user", request);
+        assertEquals(AsyncDrawService.STATUS_PENDING, ticket.getStatus());
+
+        DrawTicketResponse settled = awaitSettled("user", ticket.getTicketId());
+        assertEquals(AsyncDrawService.STATUS_COMPLETED, settled.getStatus());
+        assertSame(drawResponse, settled.getResult());
+
+        // Settled draws no longer count as pending for the next submission
+        asyncDrawService.submit("user", request);
+        verify(lotteryService, times(2)).checkDrawAllowed("user", request, 0);
+    }
+
+    @Test
+    void testQueuedDrawsCountTowardsQuotaPreCheck() throws Exception {
+        CountDownLatch drawing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(lotteryService.performDraw("user", request)).thenAnswer(invocation -> {
+            drawing.countDown();
+            release.await();
+            return drawResponse;
+        });
+        asyncDrawService.start();
+
+        asyncDrawService.submit("user", request);
+        assertTrue(drawing.await(5, TimeUnit.SECONDS));
+        asyncDrawService.submit("user", request);
+
+        verify(lotteryService).checkDrawAllowed("user", request, 2);
+
+        // Worker busy and the single queue slot taken
+        assertThrows(AdmissionRejectedException.class, () -> asyncDrawService.submit("user", request));
+        release.countDown();
+    }
+
+    @Test
+    void testRejectedPreCheckIsNotQueued() {
+        doThrow(new LotteryException("Draw count exceeds maximum allowed per user"))
+                .when(lotteryService).checkDrawAllowed("user", request, 0);
+
+        assertThrows(LotteryException.class, () -> asyncDrawService.submit("user", request));
+        assertEquals(0, asyncDrawService.getQueueSize());
+    }
+
+    @Test
+    void testFailedDrawIsReportedOnTicket() throws Exception {
+        when(lotteryService.performDraw("user", request)).thenThrow(new LotteryException("Activity is not active"));
+        asyncDrawService.start();
+
+        DrawTicketResponse ticket = asyncDrawService.submit("user", request);
+
+        DrawTicketResponse settled = awaitSettled("user", ticket.getTicketId());
+        assertEquals(AsyncDrawService.STATUS_FAILED, settled.getStatus());
+        assertEquals("Activity is not active", settled.getErrorMessage());
+        assertThrows(LotteryException.class, () -> asyncDrawService.getTicket("other", ticket.getTicketId()));
+    }
+
+    @Test
+    void testDrawTurnedAwayByAdmissionIsRetried() throws Exception {
+        when(lotteryService.performDraw("user", request))
+                .thenThrow(new AdmissionRejectedException("Too many concurrent draws", 1))
+                .thenReturn(drawResponse);
+        asyncDrawService.start();
+
+        DrawTicketResponse ticket = asyncDrawService.submit("user", request);
+
+        assertEquals(AsyncDrawService.STATUS_COMPLETED, awaitSettled("user", ticket.getTicketId()).getStatus());
+        verify(lotteryService, times(2)).performDraw(anyString(), any());
+    }
+
+    private DrawTicketResponse awaitSettled(String userId, String ticketId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        DrawTicketResponse ticket = asyncDrawService.getTicket(userId, ticketId);
+        while (AsyncDrawService.STATUS_PENDING.equals(ticket.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ticket = asyncDrawService.getTicket(userId, ticketId);
+        }
+        return ticket;
+    }
+}
@@ -1,5 +1,8 @@
 package org.example.demolottery.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.demolottery.config.DistributedLockConfig;
+import org.example.demolottery.exception.LockAcquisitionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,6 +12,8 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -42,7 +47,7 @@ class DistributedLockServiceTest {
         
         when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
                 .thenReturn(true);
-        when(redisTemplate.execute(any(DefaultRedisScript.class), anyList(), anyString()))
+        when(redisTemplate.execute(anyScript(), anyList(), anyString()))
                 .thenReturn(1L);
 
         AtomicInteger counter = new AtomicInteger(0);
@@ -56,7 +61,7 @@ class DistributedLockServiceTest {
         assertEquals(1, counter.get());
         
         verify(valueOperations).setIfAbsent(contains(lockKey), anyString(), eq(10L), eq(TimeUnit.SECONDS));
-        verify(redisTemplate).execute(any(DefaultRedisScript.class), anyList(), anyString());
+        verify(redisTemplate).execute(anyScript(), anyList(), anyString());
     }
 
     @Test
@@ -66,7 +71,7 @@ class DistributedLockServiceTest {
         when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
                 .thenReturn(false);
 
-        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+        LockAcquisitionException exception = assertThrows(LockAcquisitionException.class, () -> {
             distributedLockService.executeWithLock(lockKey, 10, TimeUnit.SECONDS, () -> {
                 return "should not execute";
             });
@@ -74,7 +79,7 @@ class DistributedLockServiceTest {
 
         assertTrue(exception.getMessage().contains("Failed to acquire distributed lock"));
         verify(valueOperations).setIfAbsent(contains(lockKey), anyString(), eq(10L), eq(TimeUnit.SECONDS));
-        verify(redisTemplate, never()).execute(any(DefaultRedisScript.class), anyList(), anyString());
+        verify(redisTemplate, never()).execute(anyScript(), anyList(), anyString());
     }
 
     @Test
@@ -99,7 +104,7 @@ class DistributedLockServiceTest {
                 .thenReturn(false)
                 .thenReturn(false);
         
-        when(redisTemplate.execute(any(DefaultRedisScript.class), anyList(), anyString()))
+        when(redisTemplate.execute(anyScript(), anyList(), anyString()))
                 .thenReturn(1L);
 
         for (int i = 0; i < threadCount; i++) {
@@ -136,7 +141,7 @@ class DistributedLockServiceTest {
         
         when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
                 .thenReturn(true);
-        when(redisTemplate.execute(any(DefaultRedisScript.class), anyList(), anyString()))
+        when(redisTemplate.execute(anyScript(), anyList(), anyString()))
                 .thenReturn(1L);
 
         AtomicInteger counter = new AtomicInteger(0);
@@ -149,7 +154,7 @@ class DistributedLockServiceTest {
 
         assertEquals(1, counter.get());
         verify(valueOperations).setIfAbsent(contains(lockKey), anyString(), eq(10L), eq(TimeUnit.SECONDS));
-        verify(redisTemplate).execute(any(DefaultRedisScript.class), anyList(), anyString());
+        verify(redisTemplate).execute(anyScript(), anyList(), anyString());
     }
 
     @Test
@@ -158,7 +163,7 @@ class DistributedLockServiceTest {
         
         when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
                 .thenReturn(true);
-        when(redisTemplate.execute(any(DefaultRedisScript.class), anyList(), anyString()))
+        when(redisTemplate.execute(anyScript(), anyList(), anyString()))
                 .thenReturn(1L);
 
         RuntimeException testException = new RuntimeException("Test exception");
@@ -172,6 +177,144 @@ class DistributedLockServiceTest {
         assertEquals(testException, thrown);
         
         // Verify lock was still released even after exception
-        verify(redisTemplate).execute(any(DefaultRedisScript.class), anyList(), anyString());
+        verify(redisTemplate).execute(anyScript(), anyList(), anyString());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testRetriesUntilLockIsReleased() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DistributedLockService retryingService = new DistributedLockService(redisTemplate, config(5, 3000, false), meterRegistry);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(false, false, true);
+        when(redisTemplate.execute(anyScript(), anyList(), anyString()))
+                .thenReturn(1L);
+
+        String result = retryingService.executeWithLock("prize_draw:activity:1", 10, TimeUnit.SECONDS, () -> "success");
+
+        assertEquals("success", result);
+        verify(valueOperations, times(3)).setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        assertEquals(1, meterRegistry.get(DistributedLockService.WAIT_METRIC)
+                .tags("lock", "prize_draw", "outcome", "acquired").timer().count());
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttemptsAndCountsFailure() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DistributedLockService retryingService = new DistributedLockService(redisTemplate, config(4, 3000, false), meterRegistry);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(false);
+
+        LockAcquisitionException exception = assertThrows(LockAcquisitionException.class, () ->
+                retryingService.executeWithLock("prize_draw:activity:1", 10, TimeUnit.SECONDS, () -> "never"));
+
+        assertEquals("Failed to acquire distributed lock: prize_draw:activity:1", exception.getMessage());
+        verify(valueOperations, times(4)).setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        assertEquals(1.0, meterRegistry.get(DistributedLockService.FAILURE_METRIC)
+                .tag("lock", "prize_draw").counter().count());
+        assertEquals(1, meterRegistry.get(DistributedLockService.WAIT_METRIC)
+                .tags("lock", "prize_draw", "outcome", "failed").timer().count());
+    }
+
+    @Test
+    void testReleaseNotificationWakesWaiterBeforeBackoffEnds() throws Exception {
+        DistributedLockConfig config = config(3, 60_000, true);
+        config.setRetryDelayMillis(30_000);
+        config.setMaxRetryDelayMillis(30_000);
+        DistributedLockService notifiedService = new DistributedLockService(redisTemplate, config, new SimpleMeterRegistry());
+        CountDownLatch firstAttempt = new CountDownLatch(1);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> {
+                    firstAttempt.countDown();
+                    return false;
+                })
+                .thenReturn(true);
+        when(redisTemplate.execute(anyScript(), anyList(), anyString()))
+                .thenReturn(1L);
+
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() ->
+                notifiedService.executeWithLock("test-lock", 10, TimeUnit.SECONDS, () -> "success"));
+        assertTrue(firstAttempt.await(5, TimeUnit.SECONDS));
+
+        // Keep publishing until the waiter has retried; a single unpark may land before it parks
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!result.isDone() && System.nanoTime() < deadline) {
+            notifiedService.onLockReleased("lottery:lock:test-lock");
+            Thread.sleep(10);
+        }
+
+        assertEquals("success", result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testWatchdogRenewsLockWhileActionRuns() {
+        DistributedLockService watchedService = new DistributedLockService(redisTemplate, config(1, 0, false), new SimpleMeterRegistry());
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(true);
+        when(redisTemplate.execute(anyScript(), anyList(), any()))
+                .thenReturn(1L);
+
+        watchedService.executeWithLock("test-lock", 3, TimeUnit.SECONDS, () -> {
+            assertEquals(1, watchedService.heldLockCount());
+            watchedService.renewHeldLocks();
+            return null;
+        });
+
+        verify(redisTemplate).execute(anyScript(), eq(List.of("lottery:lock:test-lock")),
+                anyString(), eq(3000L));
+        assertEquals(0, watchedService.heldLockCount());
+    }
+
+    @Test
+    void testWatchdogRenewsOnItsOwnThreadOnceStarted() throws Exception {
+        DistributedLockConfig config = config(1, 0, false);
+        config.setWatchdogIntervalMillis(10);
+        DistributedLockService watchedService = new DistributedLockService(redisTemplate, config, new SimpleMeterRegistry());
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(true);
+        when(redisTemplate.execute(anyScript(), anyList(), any()))
+                .thenReturn(1L);
+
+        watchedService.start();
+        try {
+            watchedService.executeWithLock("test-lock", 3, TimeUnit.SECONDS, () -> {
+                verify(redisTemplate, timeout(5000).atLeastOnce()).execute(anyScript(), eq(List.of("lottery:lock:test-lock")),
+                        anyString(), eq(3000L));
+                return null;
+            });
+        } finally {
+            watchedService.shutdown();
+        }
+    }
+
+    @Test
+    void testFencedLockHandsOutTokenAndRetriesWhenLockExpiredFirst() {
+        DistributedLockService fencedService = new DistributedLockService(redisTemplate, config(3, 3000, false), new SimpleMeterRegistry());
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(true);
+        // Fence script: 0 while the key is no longer ours, then the next token; then the unlock
+        when(redisTemplate.execute(anyScript(), anyList(), anyString()))
+                .thenReturn(0L, 42L, 1L);
+
+        long token = fencedService.executeWithFencedLock("prize_draw:activity:1", 3, TimeUnit.SECONDS, fencingToken -> fencingToken);
+
+        assertEquals(42L, token);
+        verify(valueOperations, times(2)).setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        verify(redisTemplate, times(2)).execute(anyScript(),
+                eq(List.of("lottery:lock:prize_draw:activity:1", "lottery:lock:fence:prize_draw:activity:1")), anyString());
+    }
+
+    private DistributedLockConfig config(int maxAttempts, long maxWaitMillis, boolean releaseNotification) {
+        DistributedLockConfig config = new DistributedLockConfig();
+        config.setMaxRetryAttempts(maxAttempts);
+        config.setRetryDelayMillis(1);
+        config.setMaxRetryDelayMillis(5);
+        config.setMaxWaitMillis(maxWaitMillis);
+        config.setReleaseNotification(releaseNotification);
+        return config;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DefaultRedisScript<Long> anyScript() {
+        return any(DefaultRedisScript.class);
+    }
+}
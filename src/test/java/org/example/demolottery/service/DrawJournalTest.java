@@ -0,0 +1,123 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrawJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testRecordsReadBackAsAppended() throws IOException {
+        UserLotteryRecord won = record(1L, 10L, "First Prize");
+        UserLotteryRecord lost = record(2L, null, null);
+        lost.setResult(UserLotteryRecord.DrawResult.NO_PRIZE);
+
+        try (DrawJournal journal = new DrawJournal(directory, 16, true)) {
+            journal.append(List.of(won, lost));
+
+            assertEquals(2L, journal.appendedPosition());
+            List<UserLotteryRecord> read = journal.read(0, 10);
+            assertEquals(2, read.size());
+            assertEquals(1L, read.get(0).getId());
+            assertEquals("user1", read.get(0).getUserId());
+            assertEquals(99L, read.get(0).getBatchId());
+            assertEquals(10L, read.get(0).getPrizeId());
+            assertEquals("First Prize", read.get(0).getPrizeName());
+            assertEquals(won.getCreatedAt(), read.get(0).getCreatedAt());
+            assertEquals(UserLotteryRecord.DrawResult.WON, read.get(0).getResult());
+            assertNull(read.get(1).getPrizeId());
+            assertNull(read.get(1).getPrizeName());
+            assertEquals(UserLotteryRecord.DrawResult.NO_PRIZE, read.get(1).getResult());
+        }
+    }
+
+    @Test
+    void testReopenRecoversUnshippedRecordsAndDropsShippedSegments() throws IOException {
+        try (DrawJournal journal = new DrawJournal(directory, 4, false)) {
+            journal.append(records(10));
+            journal.markShipped(6);
+        }
+        assertFalse(Files.exists(directory.resolve(String.format("%016d.journal", 0))));
+        assertTrue(Files.exists(directory.resolve(String.format("%016d.journal", 1))));
+
+        try (DrawJournal journal = new DrawJournal(directory, 4, false)) {
+            assertEquals(6L, journal.shippedPosition());
+            assertEquals(10L, journal.appendedPosition());
+            assertEquals(10L, journal.recoveredPosition());
+            assertEquals(List.of(7L, 8L, 9L, 10L), journal.read(6, 10).stream().map(UserLotteryRecord::getId).toList());
+
+            journal.append(records(1));
+            assertEquals(11L, journal.appendedPosition());
+        }
+    }
+
+    @Test
+    void testTornRecordEndsTheJournal() throws IOException {
+        try (DrawJournal journal = new DrawJournal(directory, 8, false)) {
+            journal.append(records(3));
+        }
+        // Flip a byte of the second record as a crash in the middle of writing it would
+        try (FileChannel segment = FileChannel.open(directory.resolve(String.format("%016d.journal", 0)),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[]{42}), DrawJournal.RECORD_SIZE + 100);
+        }
+
+        try (DrawJournal journal = new DrawJournal(directory, 8, false)) {
+            assertEquals(1L, journal.appendedPosition());
+        }
+    }
+
+    @Test
+    void testTryAppendKeepsUnshippedRecordsWithinLimit() throws IOException {
+        try (DrawJournal journal = new DrawJournal(directory, 8, false)) {
+            assertTrue(journal.tryAppend(records(3), 4));
+            assertFalse(journal.tryAppend(records(2), 4));
+            assertEquals(3L, journal.appendedPosition());
+
+            journal.markShipped(2);
+            assertTrue(journal.tryAppend(records(2), 4));
+            assertEquals(5L, journal.appendedPosition());
+        }
+    }
+
+    @Test
+    void testSegmentSizeCannotChange() throws IOException {
+        try (DrawJournal journal = new DrawJournal(directory, 8, false)) {
+            journal.append(records(1));
+            journal.markShipped(1);
+        }
+
+        assertThrows(IllegalStateException.class, () -> new DrawJournal(directory, 16, false));
+    }
+
+    private static List<UserLotteryRecord> records(int count) {
+        List<UserLotteryRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(record(i + 1L, null, null));
+        }
+        return records;
+    }
+
+    private static UserLotteryRecord record(long id, Long prizeId, String prizeName) {
+        UserLotteryRecord record = new UserLotteryRecord("user1", 1L, 99L, prizeId, prizeName,
+                UserLotteryRecord.DrawResult.WON);
+        record.setId(id);
+        record.setCreatedAt(LocalDateTime.of(2026, 1, 2, 3, 4, 5, 678_000_000));
+        return record;
+    }
+}
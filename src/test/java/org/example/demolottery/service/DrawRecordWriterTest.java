@@ -0,0 +1,233 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DrawRecordWriterTest {
+
+    @Mock
+    private UserLotteryRecordRepository recordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path journalDirectory;
+
+    private final SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+
+    private DrawRecordWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    void testRecordsOfSeveralDrawsShareOneInsert() {
+        writer = writer(DrawRecordWriter.ENQUEUE, 6, 10_000, 100);
+
+        writer.write(records(2));
+        writer.write(records(2));
+        writer.write(records(2));
+
+        verify(recordRepository, timeout(2000)).batchInsert(argThat(records -> records.size() == 6));
+        verify(recordRepository, times(1)).batchInsert(anyList());
+    }
+
+    @Test
+    void testPartialBatchIsWrittenAfterFlushInterval() {
+        writer = writer(DrawRecordWriter.ENQUEUE, 500, 20, 100);
+
+        writer.write(records(3));
+
+        verify(recordRepository, timeout(2000)).batchInsert(argThat(records -> records.size() == 3));
+    }
+
+    @Test
+    void testFlushDurabilityReturnsAfterCommitAndReportsFailures() {
+        writer = writer(DrawRecordWriter.FLUSH, 500, 10, 100);
+
+        writer.write(records(2));
+        verify(recordRepository).batchInsert(argThat(records -> records.size() == 2));
+
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(recordRepository).batchInsert(anyList());
+        assertThrows(DataAccessResourceFailureException.class, () -> writer.write(records(1)));
+    }
+
+    @Test
+    void testEnqueueDurabilityRetriesFailedInserts() {
+        writer = writer(DrawRecordWriter.ENQUEUE, 500, 10, 100);
+        doThrow(new DataAccessResourceFailureException("connection lost"))
+                .doNothing()
+                .when(recordRepository).batchInsert(anyList());
+
+        writer.write(records(2));
+
+        verify(recordRepository, timeout(2000).times(2)).batchInsert(argThat(records -> records.size() == 2));
+    }
+
+    @Test
+    void testFullBufferRejectsNewDraws() throws InterruptedException {
+        writer = new DrawRecordWriter(recordRepository, idGenerator, transactionManager, DrawRecordWriter.ASYNC,
+                DrawRecordWriter.ENQUEUE, 500, 10, 1, 50, 5000);
+        writer.start();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(recordRepository).batchInsert(anyList());
+
+        // The first draw occupies the writer and the second fills the one-slot buffer
+        writer.write(records(1));
+        assertTrue(writing.await(2, TimeUnit.SECONDS));
+        writer.write(records(1));
+
+        assertThrows(AdmissionRejectedException.class, () -> writer.write(records(1)));
+        release.countDown();
+    }
+
+    @Test
+    void testAwaitWrittenReturnsOnceEarlierRecordsAreInserted() throws InterruptedException {
+        writer = writer(DrawRecordWriter.ENQUEUE, 500, 10, 100);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(recordRepository).batchInsert(anyList());
+
+        writer.write(records(2));
+        assertTrue(writing.await(2, TimeUnit.SECONDS));
+        Thread waiter = new Thread(writer::awaitWritten);
+        waiter.start();
+        waiter.join(200);
+        assertTrue(waiter.isAlive());
+
+        release.countDown();
+        waiter.join(2000);
+        assertFalse(waiter.isAlive());
+    }
+
+    @Test
+    void testAwaitWrittenWaitsForJournalToBeShipped() {
+        writer = journalWriter();
+        doThrow(new DataAccessResourceFailureException("connection lost"))
+                .doNothing()
+                .when(recordRepository).batchInsert(anyList());
+
+        writer.write(records(3));
+        writer.awaitWritten();
+
+        verify(recordRepository, times(2)).batchInsert(argThat(records -> records.size() == 3));
+    }
+
+    @Test
+    void testJournalDurabilityShipsAcknowledgedRecords() {
+        writer = journalWriter();
+
+        List<UserLotteryRecord> drawn = records(3);
+        writer.write(drawn);
+
+        assertTrue(drawn.stream().allMatch(record -> record.getId() != null));
+        verify(recordRepository, timeout(2000)).batchInsert(argThat(records -> records.size() == 3
+                && records.get(0).getId().equals(drawn.get(0).getId())));
+        verify(recordRepository, never()).findExistingIds(anyList());
+    }
+
+    @Test
+    void testJournalReplaySkipsRecordsAlreadyInserted() throws IOException {
+        List<UserLotteryRecord> drawn = records(3);
+        drawn.forEach(record -> {
+            record.setId(idGenerator.nextId());
+            record.setCreatedAt(LocalDateTime.now());
+        });
+        // A previous run journaled three records and committed the first before it stopped
+        try (DrawJournal journal = new DrawJournal(journalDirectory, 1024, false)) {
+            journal.append(drawn);
+        }
+        when(recordRepository.findExistingIds(anyList())).thenReturn(List.of(drawn.get(0).getId()));
+
+        writer = journalWriter();
+
+        verify(recordRepository, timeout(2000)).batchInsert(argThat(records -> records.size() == 2
+                && records.stream().noneMatch(record -> record.getId().equals(drawn.get(0).getId()))));
+    }
+
+    @Test
+    void testJournalRecordsFromBeforeRestartAreShippedBeforeStartReturns() throws IOException {
+        List<UserLotteryRecord> drawn = records(3);
+        drawn.forEach(record -> {
+            record.setId(idGenerator.nextId());
+            record.setCreatedAt(LocalDateTime.now());
+        });
+        try (DrawJournal journal = new DrawJournal(journalDirectory, 1024, false)) {
+            journal.append(drawn);
+        }
+
+        writer = journalWriter();
+
+        // Stock reconciled from the database right after startup already sees these draws
+        verify(recordRepository).batchInsert(argThat(records -> records.size() == 3));
+        try (DrawJournal journal = new DrawJournal(journalDirectory, 1024, false)) {
+            assertEquals(3L, journal.shippedPosition());
+        }
+    }
+
+    private DrawRecordWriter journalWriter() {
+        DrawRecordWriter recordWriter = new DrawRecordWriter(recordRepository, idGenerator, transactionManager,
+                DrawRecordWriter.ASYNC, DrawRecordWriter.JOURNAL, 500, 10, 100, 100, 5000);
+        ReflectionTestUtils.setField(recordWriter, "journalDirectory", journalDirectory.toString());
+        ReflectionTestUtils.setField(recordWriter, "journalSegmentRecords", 1024);
+        recordWriter.start();
+        return recordWriter;
+    }
+
+    private DrawRecordWriter writer(String durability, int batchSize, long flushIntervalMillis, int bufferCapacity) {
+        DrawRecordWriter recordWriter = new DrawRecordWriter(recordRepository, idGenerator, transactionManager, DrawRecordWriter.ASYNC,
+                durability, batchSize, flushIntervalMillis, bufferCapacity, 100, 5000);
+        recordWriter.start();
+        return recordWriter;
+    }
+
+    private static List<UserLotteryRecord> records(int count) {
+        List<UserLotteryRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new UserLotteryRecord("user1", 1L, 1L, null, "No Prize",
+                    UserLotteryRecord.DrawResult.NO_PRIZE));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryDrawQuotaStoreTest {
+
+    @Mock
+    private UserLotteryRecordRepository recordRepository;
+
+    private InMemoryDrawQuotaStore quotaStore;
+
+    private LotteryActivity activity;
+
+    @BeforeEach
+    void setUp() {
+        quotaStore = new InMemoryDrawQuotaStore(recordRepository);
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setMaxDrawsPerUser(10);
+    }
+
+    @Test
+    void testSeedsFromRecordsOnlyOnce() {
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(7L);
+
+        assertTrue(quotaStore.tryAcquire("user1", activity, 2));
+        assertFalse(quotaStore.tryAcquire("user1", activity, 2));
+        assertTrue(quotaStore.tryAcquire("user1", activity, 1));
+
+        assertEquals(10, quotaStore.getDrawCount("user1", 1L));
+        verify(recordRepository, times(1)).countByUserIdAndActivityId("user1", 1L);
+    }
+
+    @Test
+    void testReleasedDrawsCanBeUsedAgain() {
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+
+        assertTrue(quotaStore.tryAcquire("user1", activity, 10));
+        quotaStore.release("user1", 1L, 3);
+
+        assertTrue(quotaStore.tryAcquire("user1", activity, 3));
+        assertFalse(quotaStore.tryAcquire("user1", activity, 1));
+    }
+
+    @Test
+    void testConcurrentDrawsNeverExceedQuota() throws InterruptedException {
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+
+        int threadCount = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger acquired = new AtomicInteger();
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    if (quotaStore.tryAcquire("user1", activity, 1)) {
+                        acquired.incrementAndGet();
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(10, acquired.get());
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.repository.PrizeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LeasedPrizeStockStrategyTest {
+
+    @Mock
+    private PrizeRepository prizeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LeasedPrizeStockStrategy leasedStrategy;
+
+    private Prize prize;
+
+    @BeforeEach
+    void setUp() {
+        leasedStrategy = new LeasedPrizeStockStrategy(prizeRepository, transactionManager, 10, 2);
+
+        prize = new Prize();
+        prize.setId(1L);
+        prize.setActivityId(1L);
+        prize.setTotalQuantity(100);
+        prize.setRemainingQuantity(100);
+    }
+
+    @Test
+    void testServesDrawsFromLeasedSlice() {
+        when(prizeRepository.decrementRemainingQuantityBy(1L, 10)).thenReturn(1);
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals(1, leasedStrategy.reserve(prize, 1));
+        }
+
+        verify(prizeRepository, times(1)).decrementRemainingQuantityBy(1L, 10);
+        verify(prizeRepository, never()).decrementRemainingQuantity(anyLong());
+    }
+
+    @Test
+    void testRenewsSliceBelowLowWatermark() {
+        when(prizeRepository.decrementRemainingQuantityBy(1L, 10)).thenReturn(1);
+
+        for (int i = 0; i < 9; i++) {
+            leasedStrategy.reserve(prize, 1);
+        }
+
+        verify(prizeRepository, times(2)).decrementRemainingQuantityBy(1L, 10);
+        assertEquals(100 + 11, leasedStrategy.getAvailableQuantity(prize));
+    }
+
+    @Test
+    void testFallsBackToPerUnitDecrementWhenStockIsBelowLeaseSize() {
+        prize.setRemainingQuantity(3);
+        when(prizeRepository.decrementRemainingQuantityBy(1L, 10)).thenReturn(0);
+        when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(prize));
+        when(prizeRepository.decrementRemainingQuantity(1L)).thenReturn(1);
+
+        assertEquals(1, leasedStrategy.reserve(prize, 1));
+
+        verify(prizeRepository).decrementRemainingQuantity(1L);
+    }
+
+    @Test
+    void testConcurrentDrawsAcrossLeasesNeverOversell() throws InterruptedException {
+        AtomicInteger row = new AtomicInteger(95);
+        when(prizeRepository.decrementRemainingQuantityBy(eq(1L), anyInt())).thenAnswer(invocation -> {
+            int quantity = invocation.getArgument(1);
+            int current = row.get();
+            return current >= quantity && row.compareAndSet(current, current - quantity) ? 1 : 0;
+        });
+        when(prizeRepository.findByIdWithLock(1L)).thenAnswer(invocation -> {
+            Prize locked = new Prize();
+            locked.setId(1L);
+            locked.setRemainingQuantity(row.get());
+            return row.get() > 0 ? Optional.of(locked) : Optional.empty();
+        });
+        when(prizeRepository.decrementRemainingQuantity(1L)).thenAnswer(invocation -> {
+            int current = row.get();
+            return current > 0 && row.compareAndSet(current, current - 1) ? 1 : 0;
+        });
+
+        int threadCount = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger issued = new AtomicInteger();
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < 20; j++) {
+                        issued.addAndGet(leasedStrategy.reserve(prize, 1));
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(95, issued.get());
+        assertEquals(0, row.get());
+    }
+
+    @Test
+    void testShutdownReturnsUnusedLeasedUnits() {
+        when(prizeRepository.decrementRemainingQuantityBy(1L, 10)).thenReturn(1);
+
+        leasedStrategy.reserve(prize, 3);
+        leasedStrategy.shutdown();
+
+        verify(prizeRepository).incrementRemainingQuantityBy(1L, 7);
+    }
+}
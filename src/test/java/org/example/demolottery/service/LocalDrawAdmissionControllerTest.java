@@ -0,0 +1,49 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalDrawAdmissionControllerTest {
+
+    private LocalDrawAdmissionController admissionController;
+
+    private LotteryActivity activity;
+
+    @BeforeEach
+    void setUp() {
+        admissionController = new LocalDrawAdmissionController();
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setMaxConcurrentDraws(2);
+    }
+
+    @Test
+    void testAdmitsUpToLimitAndAgainAfterRelease() {
+        DrawAdmissionController.AdmissionPermit first = admissionController.tryAcquire(activity);
+        DrawAdmissionController.AdmissionPermit second = admissionController.tryAcquire(activity);
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(admissionController.tryAcquire(activity));
+
+        first.close();
+
+        assertNotNull(admissionController.tryAcquire(activity));
+    }
+
+    @Test
+    void testClosingPermitTwiceReleasesOnce() {
+        DrawAdmissionController.AdmissionPermit permit = admissionController.tryAcquire(activity);
+        admissionController.tryAcquire(activity);
+
+        permit.close();
+        permit.close();
+
+        assertNotNull(admissionController.tryAcquire(activity));
+        assertNull(admissionController.tryAcquire(activity));
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.demolottery.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.demolottery.config.DistributedLockConfig;
+import org.example.demolottery.exception.LockAcquisitionException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LocalLockProviderTest {
+
+    private static final int ROUNDS = 50;
+
+    @Test
+    void testSameKeyIsMutuallyExclusive() throws InterruptedException {
+        LocalLockProvider lockProvider = new LocalLockProvider(16, 5000);
+        int threadCount = 8;
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+
+        runConcurrently(threadCount, () -> lockProvider.executeWithLock("prize_draw:activity:1", 3, TimeUnit.SECONDS, () -> {
+            maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            Thread.yield();
+            inside.decrementAndGet();
+        }));
+
+        assertEquals(1, maxInside.get());
+    }
+
+    @Test
+    void testGivesUpAfterMaxWaitAndHandsOutNoFencingToken() throws InterruptedException {
+        LocalLockProvider lockProvider = new LocalLockProvider(16, 50);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> lockProvider.executeWithLock("test-lock", 3, TimeUnit.SECONDS, () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        LockAcquisitionException exception = assertThrows(LockAcquisitionException.class, () ->
+                lockProvider.executeWithLock("test-lock", 3, TimeUnit.SECONDS, () -> "never"));
+        assertEquals("Failed to acquire local lock: test-lock", exception.getMessage());
+
+        release.countDown();
+        holder.join();
+        long token = lockProvider.executeWithFencedLock("test-lock", 3, TimeUnit.SECONDS, fencingToken -> fencingToken);
+        assertEquals(0L, token);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testHierarchicalLockSendsOneContenderPerNodeToRedis() throws InterruptedException {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        when(redisTemplate.execute(any(DefaultRedisScript.class), anyList(), anyString())).thenReturn(1L);
+        DistributedLockConfig config = new DistributedLockConfig();
+        config.setWatchdogEnabled(false);
+        HierarchicalLockProvider lockProvider = new HierarchicalLockProvider(new LocalLockProvider(16, 5000),
+                new DistributedLockService(redisTemplate, config, new SimpleMeterRegistry()));
+        int threadCount = 8;
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+
+        runConcurrently(threadCount, () -> lockProvider.executeWithLock("prize_draw:activity:1", 3, TimeUnit.SECONDS, () -> {
+            maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            Thread.yield();
+            inside.decrementAndGet();
+        }));
+
+        // Each contender reached Redis only once it held the stripe, so no SET NX was wasted on a lost race
+        assertEquals(1, maxInside.get());
+        verify(valueOperations, times(threadCount * ROUNDS)).setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+    }
+
+    private void runConcurrently(int threadCount, Runnable task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        task.run();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
@@ -5,25 +5,36 @@ import org.example.demolottery.dto.response.LotteryDrawResponse;
 import org.example.demolottery.entity.LotteryActivity;
 import org.example.demolottery.entity.Prize;
 import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.DrawNotCommittedException;
 import org.example.demolottery.exception.LotteryException;
 import org.example.demolottery.repository.LotteryActivityRepository;
 import org.example.demolottery.repository.PrizeRepository;
 import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.util.SnowflakeIdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -46,10 +57,19 @@ class LotteryServiceTest {
     private ProbabilityCalculationService probabilityService;
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private LockProvider lockProvider;
 
     @Mock
-    private DistributedLockService distributedLockService;
+    private TicketPoolService ticketPoolService;
+
+    @Mock
+    private SingleWriterDrawEngine singleWriterEngine;
+
+    @Mock
+    private DrawRecordWriter recordWriter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     private LotteryService lotteryService;
 
@@ -59,8 +79,11 @@ class LotteryServiceTest {
 
     @BeforeEach
     void setUp() {
-        lotteryService = new LotteryService(activityRepository, prizeRepository, recordRepository,
-                probabilityService, redisTemplate, distributedLockService);
+        lotteryService = new LotteryService(activityRepository, recordRepository,
+                probabilityService, lockProvider, new SnowflakeIdGenerator(0),
+                new DatabasePrizeStockStrategy(prizeRepository), null, ticketPoolService,
+                new PrizeExhaustionTracker(5000), new InMemoryDrawQuotaStore(recordRepository),
+                new LocalDrawAdmissionController(), singleWriterEngine, recordWriter, transactionManager);
 
         testActivity = new LotteryActivity();
         testActivity.setId(1L);
@@ -76,7 +99,7 @@ class LotteryServiceTest {
         testPrize.setName("Test Prize");
         testPrize.setDescription("Test Description");
         testPrize.setImageUrl("test.jpg");
-        testPrize.setProbability(BigDecimal.valueOf(10.0));
+        testPrize.setProbabilityPpm(100_000);
         testPrize.setTotalQuantity(100);
         testPrize.setRemainingQuantity(50);
 
@@ -86,12 +109,18 @@ class LotteryServiceTest {
             Runnable action = invocation.getArgument(3);
             action.run();
             return null;
-        }).when(distributedLockService).executeWithLock(anyString(), anyLong(), any(), any(Runnable.class));
+        }).when(lockProvider).executeWithLock(anyString(), anyLong(), any(), any(Runnable.class));
         
         doAnswer(invocation -> {
             java.util.function.Supplier<?> action = invocation.getArgument(3);
             return action.get();
-        }).when(distributedLockService).executeWithLock(anyString(), anyLong(), any(), any(java.util.function.Supplier.class));
+        }).when(lockProvider).executeWithLock(anyString(), anyLong(), any(), anySupplier());
+
+        // Unfenced, as with local locks
+        doAnswer(invocation -> {
+            java.util.function.LongFunction<?> action = invocation.getArgument(3);
+            return action.apply(0L);
+        }).when(lockProvider).executeWithFencedLock(anyString(), anyLong(), any(), any());
     }
 
     @Test
@@ -102,7 +131,7 @@ class LotteryServiceTest {
         when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
         when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
                 .thenReturn(testPrizes);
-        when(probabilityService.calculateWinningPrize(testPrizes)).thenReturn(testPrize);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
         when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(testPrize));
         when(prizeRepository.decrementRemainingQuantity(1L)).thenReturn(1);
 
@@ -125,7 +154,7 @@ class LotteryServiceTest {
         when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
                 .thenReturn(testPrizes);
         when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(testPrize)).thenReturn(Optional.of(testPrize));
-        when(probabilityService.calculateWinningPrize(testPrizes))
+        when(probabilityService.calculateWinningPrize(1L, testPrizes))
                 .thenReturn(testPrize)
                 .thenReturn(null)
                 .thenReturn(testPrize);
@@ -185,7 +214,7 @@ class LotteryServiceTest {
         when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
         when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
                 .thenReturn(Collections.emptyList());
-        when(probabilityService.calculateWinningPrize(Collections.emptyList())).thenReturn(null);
+        when(probabilityService.calculateWinningPrize(1L, Collections.emptyList())).thenReturn(null);
 
         LotteryDrawResponse response = lotteryService.performDraw("user1", request);
 
@@ -205,7 +234,7 @@ class LotteryServiceTest {
         when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
         when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
                 .thenReturn(testPrizes);
-        when(probabilityService.calculateWinningPrize(testPrizes)).thenReturn(testPrize);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
         when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(testPrize));
         when(prizeRepository.decrementRemainingQuantity(1L)).thenReturn(0);
 
@@ -222,6 +251,143 @@ class LotteryServiceTest {
         ));
     }
 
+    @Test
+    void testResamplesDrawAfterOptimisticConflict() {
+        PrizeStockStrategy optimisticStrategy = mock(PrizeStockStrategy.class);
+        lotteryService = new LotteryService(activityRepository, recordRepository,
+                probabilityService, lockProvider, new SnowflakeIdGenerator(0),
+                optimisticStrategy, null, ticketPoolService, new PrizeExhaustionTracker(5000),
+                new InMemoryDrawQuotaStore(recordRepository), new LocalDrawAdmissionController(),
+                singleWriterEngine, recordWriter, transactionManager);
+        ReflectionTestUtils.setField(lotteryService, "resampleAttempts", 3);
+        LotteryDrawRequest request = new LotteryDrawRequest(1L, 1);
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(optimisticStrategy.findAvailablePrizes(1L)).thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+        when(optimisticStrategy.reserve(testPrize, 1))
+                .thenThrow(new OptimisticLockingFailureException("conflict"))
+                .thenReturn(1);
+
+        LotteryDrawResponse response = lotteryService.performDraw("user1", request);
+
+        assertTrue(response.getResults().get(0).getWon());
+        verify(optimisticStrategy, times(2)).findAvailablePrizes(1L);
+        verify(recordRepository, times(1)).save(any(UserLotteryRecord.class));
+    }
+
+    @Test
+    void testSelfSynchronizingStockSkipsPrizeLockAndReservationTransaction() {
+        PrizeStockStrategy inMemoryStrategy = mock(PrizeStockStrategy.class);
+        lotteryService = new LotteryService(activityRepository, recordRepository,
+                probabilityService, lockProvider, new SnowflakeIdGenerator(0),
+                inMemoryStrategy, null, ticketPoolService, new PrizeExhaustionTracker(5000),
+                new InMemoryDrawQuotaStore(recordRepository), new LocalDrawAdmissionController(),
+                singleWriterEngine, recordWriter, transactionManager);
+        ReflectionTestUtils.setField(lotteryService, "batchDrawEnabled", true);
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(inMemoryStrategy.requiresDrawLock()).thenReturn(false);
+        when(inMemoryStrategy.findAvailablePrizes(1L)).thenReturn(testPrizes);
+        when(inMemoryStrategy.getAvailableQuantity(testPrize)).thenReturn(10);
+        when(inMemoryStrategy.reserve(eq(testPrize), anyInt())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+
+        lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 1));
+        lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 3));
+
+        verify(inMemoryStrategy).reserve(testPrize, 1);
+        verify(inMemoryStrategy).reserve(testPrize, 3);
+        verify(lockProvider, never()).executeWithFencedLock(anyString(), anyLong(), any(), any());
+        verify(activityRepository, never()).advanceLockFence(anyLong(), anyLong());
+        // Only the record inserts open a transaction
+        verify(transactionManager, times(2)).getTransaction(any());
+    }
+
+    @Test
+    void testSoldOutActivitySkipsPrizeTable() {
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId(anyString(), eq(1L))).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(Collections.emptyList());
+
+        lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 1));
+        LotteryDrawResponse response = lotteryService.performDraw("user2", new LotteryDrawRequest(1L, 3));
+
+        assertEquals(3, response.getResults().size());
+        assertTrue(response.getResults().stream().noneMatch(LotteryDrawResponse.DrawResult::getWon));
+        verify(prizeRepository, times(1)).findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0);
+        verify(recordRepository).batchInsert(argThat(records -> records.size() == 3));
+    }
+
+    @Test
+    void testSoldOutActivityRejectedWhenConfigured() {
+        ReflectionTestUtils.setField(lotteryService, "rejectWhenSoldOut", true);
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId(anyString(), eq(1L))).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+        when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.empty());
+
+        lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 1));
+
+        assertThrows(LotteryException.class,
+                () -> lotteryService.performDraw("user2", new LotteryDrawRequest(1L, 1)));
+        verify(recordRepository, times(1)).save(any(UserLotteryRecord.class));
+    }
+
+    @Test
+    void testSingleWriterActivityIsDrawnByItsLoop() {
+        testActivity.setSingleWriter(true);
+        List<LotteryDrawResponse.DrawResult> results = List.of(new LotteryDrawResponse.DrawResult(1, false),
+                new LotteryDrawResponse.DrawResult(2, false));
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(singleWriterEngine.draw(eq("user1"), eq(testActivity), anyLong(), eq(2))).thenReturn(results);
+
+        LotteryDrawResponse response = lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 2));
+
+        assertSame(results, response.getResults());
+        verifyNoInteractions(prizeRepository, probabilityService);
+        verify(recordRepository, never()).batchInsert(any());
+    }
+
+    @Test
+    void testSingleWriterBatchThatRolledBackGivesQuotaBack() {
+        testActivity.setSingleWriter(true);
+        testActivity.setMaxDrawsPerUser(2);
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(singleWriterEngine.draw(eq("user1"), eq(testActivity), anyLong(), eq(2)))
+                .thenThrow(new DrawNotCommittedException("Draw failed. Please try again.", new RuntimeException("db down")))
+                .thenThrow(new LotteryException("Draw is taking longer than expected. Please check your draw records."));
+
+        assertThrows(DrawNotCommittedException.class,
+                () -> lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 2)));
+        assertEquals(0L, lotteryService.getUserDrawCount("user1", 1L));
+
+        // A timed-out draw may still commit, so its quota stays used
+        assertThrows(LotteryException.class,
+                () -> lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 2)));
+        assertEquals(2L, lotteryService.getUserDrawCount("user1", 1L));
+    }
+
+    @Test
+    void testDrawBeyondConcurrentLimitIsRejected() {
+        ReflectionTestUtils.setField(lotteryService, "admissionRetryAfterSeconds", 1L);
+        testActivity.setMaxConcurrentDraws(0);
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+
+        AdmissionRejectedException exception = assertThrows(AdmissionRejectedException.class,
+                () -> lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 1)));
+
+        assertEquals(1, exception.getRetryAfterSeconds());
+        verifyNoInteractions(recordRepository, prizeRepository);
+    }
+
     @Test
     void testGetUserDrawCount() {
         when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(5L);
@@ -231,4 +397,196 @@ class LotteryServiceTest {
         assertEquals(5L, count);
         verify(recordRepository).countByUserIdAndActivityId("user1", 1L);
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testBatchDrawUsesOneSnapshotAndGroupedDecrement() {
+        ReflectionTestUtils.setField(lotteryService, "batchDrawEnabled", true);
+        LotteryDrawRequest request = new LotteryDrawRequest(1L, 3);
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes))
+                .thenReturn(testPrize)
+                .thenReturn(null)
+                .thenReturn(testPrize);
+        when(prizeRepository.decrementRemainingQuantityBy(1L, 2)).thenReturn(1);
+
+        LotteryDrawResponse response = lotteryService.performDraw("user1", request);
+
+        assertEquals(3, response.getResults().size());
+        assertTrue(response.getResults().get(0).getWon());
+        assertFalse(response.getResults().get(1).getWon());
+        assertTrue(response.getResults().get(2).getWon());
+
+        verify(prizeRepository, times(1))
+                .findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0);
+        verify(prizeRepository).decrementRemainingQuantityBy(1L, 2);
+        verify(prizeRepository, never()).findByIdWithLock(anyLong());
+        verify(recordRepository, never()).save(any(UserLotteryRecord.class));
+        verify(recordRepository).batchInsert(argThat(records -> records.size() == 3));
+    }
+
+    @Test
+    void testBatchDrawDowngradesWinsBeyondAvailableStock() {
+        ReflectionTestUtils.setField(lotteryService, "batchDrawEnabled", true);
+        LotteryDrawRequest request = new LotteryDrawRequest(1L, 3);
+        testPrize.setRemainingQuantity(2);
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+
+        // Another node took one unit after the snapshot was read
+        Prize lockedPrize = new Prize();
+        lockedPrize.setId(1L);
+        lockedPrize.setRemainingQuantity(1);
+        when(prizeRepository.decrementRemainingQuantityBy(1L, 2)).thenReturn(0);
+        when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(lockedPrize));
+        when(prizeRepository.decrementRemainingQuantity(1L)).thenReturn(1);
+
+        LotteryDrawResponse response = lotteryService.performDraw("user1", request);
+
+        assertTrue(response.getResults().get(0).getWon());
+        assertFalse(response.getResults().get(1).getWon());
+        assertFalse(response.getResults().get(2).getWon());
+        verify(recordRepository).batchInsert(argThat(records ->
+                records.stream().filter(r -> r.getResult() == UserLotteryRecord.DrawResult.WON).count() == 1));
+    }
+
+    @Test
+    void testStaleLockHolderIsFencedOffBeforeWritingStock() {
+        LotteryDrawRequest request = new LotteryDrawRequest(1L, 1);
+        doAnswer(invocation -> {
+            java.util.function.LongFunction<?> action = invocation.getArgument(3);
+            return action.apply(7L);
+        }).when(lockProvider).executeWithFencedLock(anyString(), anyLong(), any(), any());
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        // A newer holder has already recorded a higher token than the 7 handed to this one
+        when(activityRepository.advanceLockFence(1L, 7L)).thenReturn(0);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> lotteryService.performDraw("user1", request));
+
+        verify(prizeRepository, never()).decrementRemainingQuantity(anyLong());
+        verify(recordRepository, never()).save(any(UserLotteryRecord.class));
+    }
+
+    @Test
+    void testReservedStockIsPutBackWhenRecordsFailToSave() {
+        LotteryDrawRequest request = new LotteryDrawRequest(1L, 1);
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+        when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(testPrize));
+        when(prizeRepository.decrementRemainingQuantity(1L)).thenReturn(1);
+        when(recordRepository.save(any(UserLotteryRecord.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> lotteryService.performDraw("user1", request));
+
+        // The decrement committed in the reservation transaction, so it is undone explicitly
+        InOrder inOrder = inOrder(prizeRepository, recordRepository);
+        inOrder.verify(prizeRepository).decrementRemainingQuantity(1L);
+        inOrder.verify(recordRepository).save(any(UserLotteryRecord.class));
+        inOrder.verify(prizeRepository).incrementRemainingQuantityBy(1L, 1);
+        // The reserved draw is given back too
+        assertEquals(0L, lotteryService.getUserDrawCount("user1", 1L));
+    }
+
+    @Test
+    void testRecordsGoThroughWriterWhenEnabled() {
+        LotteryDrawRequest request = new LotteryDrawRequest(1L, 3);
+
+        when(recordWriter.isEnabled()).thenReturn(true);
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+        when(prizeRepository.decrementRemainingQuantityBy(1L, 3)).thenReturn(1);
+
+        lotteryService.performDraw("user1", request);
+
+        verify(recordWriter).write(argThat(records -> records.size() == 3));
+        verify(recordRepository, never()).batchInsert(anyList());
+        verify(recordRepository, never()).save(any(UserLotteryRecord.class));
+    }
+
+    @Test
+    void testWriterBackpressureGivesBackStockAndQuota() {
+        LotteryDrawRequest request = new LotteryDrawRequest(1L, 1);
+
+        when(recordWriter.isEnabled()).thenReturn(true);
+        doThrow(new AdmissionRejectedException("Too many draw records waiting to be written. Please try again later.", 1))
+                .when(recordWriter).write(anyList());
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+        when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(testPrize));
+        when(prizeRepository.decrementRemainingQuantity(1L)).thenReturn(1);
+
+        assertThrows(AdmissionRejectedException.class, () -> lotteryService.performDraw("user1", request));
+
+        verify(prizeRepository).incrementRemainingQuantityBy(1L, 1);
+        assertEquals(0L, lotteryService.getUserDrawCount("user1", 1L));
+    }
+
+    @Test
+    void testParallelDrawsOfOneUserNeverExceedQuota() throws InterruptedException {
+        testActivity.setMaxDrawsPerUser(5);
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(testActivity));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        when(prizeRepository.findByActivityIdAndRemainingQuantityGreaterThanOrderBySortOrderAsc(1L, 0))
+                .thenReturn(testPrizes);
+        when(probabilityService.calculateWinningPrize(1L, testPrizes)).thenReturn(testPrize);
+        when(prizeRepository.findByIdWithLock(1L)).thenReturn(Optional.of(testPrize));
+        when(prizeRepository.decrementRemainingQuantity(1L)).thenReturn(1);
+
+        int threadCount = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        AtomicInteger drawn = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    lotteryService.performDraw("user1", new LotteryDrawRequest(1L, 1));
+                    drawn.incrementAndGet();
+                } catch (LotteryException e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(5, drawn.get());
+        assertEquals(threadCount - 5, rejected.get());
+        verify(recordRepository, times(5)).save(any(UserLotteryRecord.class));
+        verify(prizeRepository, times(5)).decrementRemainingQuantity(1L);
+        // The quota reservation is atomic, so no per-user lock is taken
+        verify(lockProvider, never()).executeWithLock(anyString(), anyLong(), any(), anySupplier());
+    }
+
+    private static <T> java.util.function.Supplier<T> anySupplier() {
+        return any();
+    }
+}
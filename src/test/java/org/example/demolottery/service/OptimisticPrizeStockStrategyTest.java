@@ -0,0 +1,93 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.repository.PrizeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OptimisticPrizeStockStrategyTest {
+
+    @Mock
+    private PrizeRepository prizeRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OptimisticPrizeStockStrategy optimisticStrategy;
+
+    private Prize prize;
+
+    @BeforeEach
+    void setUp() {
+        optimisticStrategy = new OptimisticPrizeStockStrategy(prizeRepository, transactionManager, 3);
+
+        prize = new Prize();
+        prize.setId(1L);
+        prize.setActivityId(1L);
+        prize.setTotalQuantity(10);
+        prize.setRemainingQuantity(10);
+        prize.setVersion(4L);
+    }
+
+    @Test
+    void testReservesAgainstSampledVersion() {
+        when(prizeRepository.decrementRemainingQuantityIfVersion(1L, 4L, 1)).thenReturn(1);
+
+        assertEquals(1, optimisticStrategy.reserve(prize, 1));
+
+        verify(prizeRepository, never()).findStockSnapshotById(anyLong());
+    }
+
+    @Test
+    void testRetriesWithRefreshedVersionAfterConflict() {
+        when(prizeRepository.decrementRemainingQuantityIfVersion(1L, 4L, 1)).thenReturn(0);
+        when(prizeRepository.findStockSnapshotById(1L)).thenReturn(Optional.of(snapshot(7, 5L)));
+        when(prizeRepository.decrementRemainingQuantityIfVersion(1L, 5L, 1)).thenReturn(1);
+
+        assertEquals(1, optimisticStrategy.reserve(prize, 1));
+    }
+
+    @Test
+    void testReturnsNothingOnceConcurrentDrawsSoldOut() {
+        when(prizeRepository.decrementRemainingQuantityIfVersion(1L, 4L, 1)).thenReturn(0);
+        when(prizeRepository.findStockSnapshotById(1L)).thenReturn(Optional.of(snapshot(0, 9L)));
+
+        assertEquals(0, optimisticStrategy.reserve(prize, 1));
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        when(prizeRepository.decrementRemainingQuantityIfVersion(eq(1L), anyLong(), eq(1))).thenReturn(0);
+        when(prizeRepository.findStockSnapshotById(1L)).thenReturn(Optional.of(snapshot(5, 6L)));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> optimisticStrategy.reserve(prize, 1));
+
+        verify(prizeRepository, times(3)).decrementRemainingQuantityIfVersion(eq(1L), anyLong(), eq(1));
+    }
+
+    private PrizeRepository.StockSnapshot snapshot(int remaining, long version) {
+        return new PrizeRepository.StockSnapshot() {
+            @Override
+            public Integer getRemainingQuantity() {
+                return remaining;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrizeExhaustionTrackerTest {
+
+    private PrizeExhaustionTracker tracker;
+
+    private Prize bigPrize;
+    private Prize smallPrize;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new PrizeExhaustionTracker(60_000);
+        bigPrize = createPrize(1L);
+        smallPrize = createPrize(2L);
+    }
+
+    @Test
+    void testExhaustedPrizeIsSkippedUntilAllAreGone() {
+        tracker.filterAvailable(1L, List.of(bigPrize, smallPrize));
+        tracker.markExhausted(1L, bigPrize);
+
+        assertEquals(List.of(smallPrize), tracker.filterAvailable(1L, List.of(bigPrize, smallPrize)));
+        assertFalse(tracker.isSoldOut(1L));
+
+        tracker.markExhausted(1L, smallPrize);
+
+        assertTrue(tracker.isSoldOut(1L));
+    }
+
+    @Test
+    void testEmptyStockReadMarksActivitySoldOut() {
+        tracker.filterAvailable(1L, List.of());
+
+        assertTrue(tracker.isSoldOut(1L));
+        assertFalse(tracker.isSoldOut(2L));
+    }
+
+    @Test
+    void testPrizeEditClearsExhaustion() {
+        tracker.filterAvailable(1L, List.of());
+        tracker.onPrizesChanged(new PrizesChangedEvent(1L));
+
+        assertFalse(tracker.isSoldOut(1L));
+    }
+
+    @Test
+    void testSoldOutIsRecheckedAfterInterval() {
+        tracker = new PrizeExhaustionTracker(0);
+        tracker.filterAvailable(1L, List.of());
+
+        assertFalse(tracker.isSoldOut(1L));
+    }
+
+    private Prize createPrize(Long id) {
+        Prize prize = new Prize();
+        prize.setId(id);
+        prize.setActivityId(1L);
+        prize.setRemainingQuantity(1);
+        return prize;
+    }
+}
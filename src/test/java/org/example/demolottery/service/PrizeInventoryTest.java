@@ -0,0 +1,154 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PrizeInventoryTest {
+
+    @Mock
+    private PrizeRepository prizeRepository;
+
+    @Mock
+    private UserLotteryRecordRepository recordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PrizeInventory prizeInventory;
+
+    private Prize prize;
+
+    @BeforeEach
+    void setUp() {
+        prizeInventory = new PrizeInventory(prizeRepository, recordRepository, transactionManager);
+
+        prize = new Prize();
+        prize.setId(1L);
+        prize.setActivityId(1L);
+        prize.setTotalQuantity(100);
+        prize.setRemainingQuantity(100);
+
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(prize));
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(new ArrayList<>());
+    }
+
+    @Test
+    void testConcurrentDecrementsNeverOversell() throws InterruptedException {
+        int threadCount = 16;
+        int attemptsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger issued = new AtomicInteger();
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < attemptsPerThread; j++) {
+                        issued.addAndGet(prizeInventory.tryDecrement(prize, 1));
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(100, issued.get());
+        assertEquals(0, prizeInventory.getRemaining(1L, 1L));
+    }
+
+    @Test
+    void testPartialReservationWhenQuantityExceedsRemaining() {
+        prize.setRemainingQuantity(3);
+        prize.setTotalQuantity(3);
+
+        assertEquals(3, prizeInventory.tryDecrement(prize, 5));
+        assertEquals(0, prizeInventory.tryDecrement(prize, 1));
+    }
+
+    @Test
+    void testFlushWritesAccumulatedDeltaOnce() {
+        prizeInventory.tryDecrement(prize, 1);
+        prizeInventory.tryDecrement(prize, 2);
+        prizeInventory.release(prize, 1);
+
+        prizeInventory.flush();
+        prizeInventory.flush();
+
+        verify(prizeRepository, times(1)).batchDecrementRemainingQuantity(Map.of(1L, 2));
+    }
+
+    @Test
+    void testFailedFlushKeepsDeltaForRetry() {
+        prizeInventory.tryDecrement(prize, 4);
+        doThrow(new RuntimeException("db down")).doNothing()
+                .when(prizeRepository).batchDecrementRemainingQuantity(anyMap());
+
+        prizeInventory.flush();
+        prizeInventory.flush();
+
+        verify(prizeRepository, times(2)).batchDecrementRemainingQuantity(Map.of(1L, 4));
+    }
+
+    @Test
+    void testReconcileRecoversDecrementsLostBeforeFlush() {
+        // 7 wins were committed but the process died before their stock delta was flushed
+        List<Object[]> wonCounts = new ArrayList<>();
+        wonCounts.add(new Object[]{1L, 7L});
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(wonCounts);
+
+        prizeInventory.load(1L);
+
+        assertEquals(93, prizeInventory.getRemaining(1L, 1L));
+        verify(prizeRepository).updateRemainingQuantity(1L, 93);
+    }
+
+    @Test
+    void testPrizeEditKeepsUnitsHeldByInFlightDraws() {
+        // 5 units are reserved by a draw that has not committed yet
+        assertEquals(5, prizeInventory.tryDecrement(prize, 5));
+
+        Prize edited = new Prize();
+        edited.setId(1L);
+        edited.setActivityId(1L);
+        edited.setTotalQuantity(110);
+        edited.setRemainingQuantity(100);
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(edited));
+        prizeInventory.applyPrizeChanges(1L);
+
+        assertEquals(105, prizeInventory.getRemaining(1L, 1L));
+        // The row was already adjusted by the edit itself
+        verify(prizeRepository, never()).incrementRemainingQuantityBy(anyLong(), anyInt());
+        verify(recordRepository, times(1)).countByActivityIdAndResultGroupByPrizeId(anyLong(), any());
+
+        // The draw rolls back and its units go back exactly once
+        prizeInventory.release(prize, 5);
+        assertEquals(110, prizeInventory.getRemaining(1L, 1L));
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.dto.request.CreatePrizeRequest;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.repository.LotteryActivityRepository;
+import org.example.demolottery.repository.PrizeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PrizeServiceTest {
+
+    @Mock
+    private PrizeRepository prizeRepository;
+
+    @Mock
+    private LotteryActivityRepository activityRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private PrizeService prizeService;
+
+    private Prize prize;
+
+    @BeforeEach
+    void setUp() {
+        prizeService = new PrizeService(prizeRepository, activityRepository, eventPublisher);
+
+        prize = new Prize("Prize", null, 100_000, 100, 1L);
+        prize.setId(1L);
+        // 60 of 100 already won
+        prize.setRemainingQuantity(40);
+
+        when(activityRepository.findById(1L)).thenReturn(Optional.of(new LotteryActivity()));
+        when(prizeRepository.findById(1L)).thenReturn(Optional.of(prize));
+        when(prizeRepository.save(any(Prize.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void testRaisingTotalAddsToRemainingStock() {
+        prizeService.updatePrize(1L, 1L, request(110));
+
+        assertEquals(110, prize.getTotalQuantity());
+        assertEquals(50, prize.getRemainingQuantity());
+    }
+
+    @Test
+    void testCuttingTotalBelowWhatWasWonLeavesNothing() {
+        prizeService.updatePrize(1L, 1L, request(50));
+
+        assertEquals(50, prize.getTotalQuantity());
+        assertEquals(0, prize.getRemainingQuantity());
+    }
+
+    private static CreatePrizeRequest request(int totalQuantity) {
+        CreatePrizeRequest request = new CreatePrizeRequest();
+        request.setName("Prize");
+        request.setProbability(new BigDecimal("10"));
+        request.setTotalQuantity(totalQuantity);
+        return request;
+    }
+}
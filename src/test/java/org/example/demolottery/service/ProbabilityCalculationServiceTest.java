@@ -4,10 +4,8 @@ import org.example.demolottery.entity.Prize;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -17,29 +15,30 @@ import static org.junit.jupiter.api.Assertions.*;
 @ExtendWith(MockitoExtension.class)
 class ProbabilityCalculationServiceTest {
 
-    @InjectMocks
     private ProbabilityCalculationService probabilityService;
 
     private List<Prize> testPrizes;
 
     @BeforeEach
     void setUp() {
+        probabilityService = new ProbabilityCalculationService(new ThreadLocalDrbgRandomSource(1000, 60_000));
+
         testPrizes = new ArrayList<>();
         
         Prize prize1 = new Prize();
         prize1.setId(1L);
         prize1.setName("Prize 1");
-        prize1.setProbability(BigDecimal.valueOf(10.0));
+        prize1.setProbabilityPpm(100_000);
         
         Prize prize2 = new Prize();
         prize2.setId(2L);
         prize2.setName("Prize 2");
-        prize2.setProbability(BigDecimal.valueOf(5.0));
+        prize2.setProbabilityPpm(50_000);
         
         Prize prize3 = new Prize();
         prize3.setId(3L);
         prize3.setName("Prize 3");
-        prize3.setProbability(BigDecimal.valueOf(15.0));
+        prize3.setProbabilityPpm(150_000);
         
         testPrizes.addAll(Arrays.asList(prize1, prize2, prize3));
     }
@@ -94,7 +93,7 @@ class ProbabilityCalculationServiceTest {
     @Test
     void testValidateProbabilitySumInvalid() {
         Prize prize4 = new Prize();
-        prize4.setProbability(BigDecimal.valueOf(80.0));
+        prize4.setProbabilityPpm(800_000);
         testPrizes.add(prize4);
 
         assertFalse(probabilityService.validateProbabilitySum(testPrizes));
@@ -105,10 +104,10 @@ class ProbabilityCalculationServiceTest {
         testPrizes.clear();
         
         Prize prize1 = new Prize();
-        prize1.setProbability(BigDecimal.valueOf(60.0));
+        prize1.setProbabilityPpm(600_000);
         
         Prize prize2 = new Prize();
-        prize2.setProbability(BigDecimal.valueOf(40.0));
+        prize2.setProbabilityPpm(400_000);
         
         testPrizes.addAll(Arrays.asList(prize1, prize2));
 
@@ -117,8 +116,7 @@ class ProbabilityCalculationServiceTest {
 
     @Test
     void testCalculateNoPrizeProbability() {
-        BigDecimal noPrizeProbability = probabilityService.calculateNoPrizeProbability(testPrizes);
-        assertEquals(0, BigDecimal.valueOf(70.0).compareTo(noPrizeProbability));
+        assertEquals(700_000, probabilityService.calculateNoPrizeProbabilityPpm(testPrizes));
     }
 
     @Test
@@ -126,11 +124,10 @@ class ProbabilityCalculationServiceTest {
         testPrizes.clear();
         
         Prize prize1 = new Prize();
-        prize1.setProbability(BigDecimal.valueOf(100.0));
+        prize1.setProbabilityPpm(1_000_000);
         testPrizes.add(prize1);
 
-        BigDecimal noPrizeProbability = probabilityService.calculateNoPrizeProbability(testPrizes);
-        assertEquals(0, BigDecimal.valueOf(0.0).compareTo(noPrizeProbability));
+        assertEquals(0, probabilityService.calculateNoPrizeProbabilityPpm(testPrizes));
     }
 
     @Test
@@ -138,11 +135,10 @@ class ProbabilityCalculationServiceTest {
         testPrizes.clear();
         
         Prize prize1 = new Prize();
-        prize1.setProbability(BigDecimal.valueOf(120.0));
+        prize1.setProbabilityPpm(1_200_000);
         testPrizes.add(prize1);
 
-        BigDecimal noPrizeProbability = probabilityService.calculateNoPrizeProbability(testPrizes);
-        assertEquals(0, BigDecimal.ZERO.compareTo(noPrizeProbability));
+        assertEquals(0, probabilityService.calculateNoPrizeProbabilityPpm(testPrizes));
     }
 
     @Test
@@ -151,7 +147,7 @@ class ProbabilityCalculationServiceTest {
         
         Prize highProbPrize = new Prize();
         highProbPrize.setId(1L);
-        highProbPrize.setProbability(BigDecimal.valueOf(90.0));
+        highProbPrize.setProbabilityPpm(900_000);
         testPrizes.add(highProbPrize);
 
         int totalTrials = 1000;
@@ -175,7 +171,7 @@ class ProbabilityCalculationServiceTest {
         
         Prize lowProbPrize = new Prize();
         lowProbPrize.setId(1L);
-        lowProbPrize.setProbability(BigDecimal.valueOf(1.0));
+        lowProbPrize.setProbabilityPpm(10_000);
         testPrizes.add(lowProbPrize);
 
         int totalTrials = 10000;
@@ -192,4 +188,104 @@ class ProbabilityCalculationServiceTest {
         assertTrue(winPercentage >= 0.5 && winPercentage <= 1.5, 
                 "Low probability prize should win around 1%, got " + winPercentage + "%");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testAliasTableMassMatchesConfiguredProbabilities() {
+        PrizeAliasTable table = PrizeAliasTable.build(testPrizes);
+
+        long[] hits = new long[table.slotCount()];
+        for (long value = 0; value < table.bound(); value++) {
+            hits[table.slotFor(value)]++;
+        }
+
+        // Every slot receives exactly its parts-per-million share of the sample space
+        long columns = table.slotCount();
+        assertEquals(100_000 * columns, hits[0]);
+        assertEquals(50_000 * columns, hits[1]);
+        assertEquals(150_000 * columns, hits[2]);
+        assertEquals(700_000 * columns, hits[3]);
+        assertTrue(table.isNoPrize(3));
+    }
+
+    @Test
+    void testAliasTableClipsProbabilityBeyondOneHundredPercent() {
+        testPrizes.clear();
+
+        Prize prize1 = new Prize();
+        prize1.setId(1L);
+        prize1.setProbabilityPpm(600_000);
+
+        Prize prize2 = new Prize();
+        prize2.setId(2L);
+        prize2.setProbabilityPpm(600_000);
+
+        testPrizes.addAll(Arrays.asList(prize1, prize2));
+
+        PrizeAliasTable table = PrizeAliasTable.build(testPrizes);
+
+        assertEquals(600_000, table.weightOf(0));
+        assertEquals(400_000, table.weightOf(1));
+        assertEquals(0, table.weightOf(2));
+    }
+
+    @Test
+    void testCachedActivityDistribution() {
+        int totalTrials = 10000;
+        int prize1Wins = 0;
+        int noPrizeWins = 0;
+
+        for (int i = 0; i < totalTrials; i++) {
+            Prize result = probabilityService.calculateWinningPrize(1L, testPrizes);
+            if (result == null) {
+                noPrizeWins++;
+            } else if (result.getId().equals(1L)) {
+                prize1Wins++;
+            }
+        }
+
+        double prize1Percentage = (double) prize1Wins / totalTrials * 100;
+        double noPrizePercentage = (double) noPrizeWins / totalTrials * 100;
+
+        assertTrue(prize1Percentage >= 8.0 && prize1Percentage <= 12.0,
+                "Prize 1 should win around 10%, got " + prize1Percentage + "%");
+        assertTrue(noPrizePercentage >= 68.0 && noPrizePercentage <= 72.0,
+                "No prize should win around 70%, got " + noPrizePercentage + "%");
+    }
+
+    @Test
+    void testCachedTableRebuiltWhenPrizeExhausted() {
+        for (int i = 0; i < 100; i++) {
+            probabilityService.calculateWinningPrize(1L, testPrizes);
+        }
+
+        // Prize 3 sold out, so it drops out of the available list
+        List<Prize> remaining = new ArrayList<>(testPrizes.subList(0, 2));
+
+        for (int i = 0; i < 10000; i++) {
+            Prize result = probabilityService.calculateWinningPrize(1L, remaining);
+            assertTrue(result == null || !result.getId().equals(3L),
+                    "Exhausted prize must not be drawn from a stale table");
+        }
+    }
+
+    @Test
+    void testSubBasisPointJackpotProbability() {
+        testPrizes.clear();
+
+        Prize jackpot = new Prize();
+        jackpot.setId(1L);
+        jackpot.setProbabilityPpm(3);
+        testPrizes.add(jackpot);
+
+        PrizeAliasTable table = PrizeAliasTable.build(testPrizes);
+
+        long hits = 0;
+        for (long value = 0; value < table.bound(); value++) {
+            if (table.slotFor(value) == 0) {
+                hits++;
+            }
+        }
+
+        assertEquals(3L * table.slotCount(), hits);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the admission scripts against a real Redis; skipped where Docker is not available
+@Testcontainers(disabledWithoutDocker = true)
+class RedisDrawAdmissionControllerTest {
+
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisDrawAdmissionController admissionController;
+
+    private LotteryActivity activity;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.getRequiredConnectionFactory().getConnection().serverCommands().flushAll();
+        admissionController = new RedisDrawAdmissionController(redisTemplate, new SharedSecureRandomSource(), 300);
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setMaxConcurrentDraws(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        admissionController.shutdown();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void testLeaseOfRunningDrawIsRenewed() throws InterruptedException {
+        DrawAdmissionController.AdmissionPermit permit = admissionController.tryAcquire(activity);
+        assertNotNull(permit);
+
+        // Several lease lengths later the draw still holds its slot
+        Thread.sleep(1000);
+        assertNull(admissionController.tryAcquire(activity));
+
+        permit.close();
+        DrawAdmissionController.AdmissionPermit next = admissionController.tryAcquire(activity);
+        assertNotNull(next);
+        next.close();
+    }
+
+    @Test
+    void testShutdownGivesBackHeldPermits() {
+        assertNotNull(admissionController.tryAcquire(activity));
+
+        admissionController.shutdown();
+
+        assertNotNull(admissionController.tryAcquire(activity));
+    }
+}
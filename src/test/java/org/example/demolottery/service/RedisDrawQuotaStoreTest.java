@@ -0,0 +1,78 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Runs the quota scripts against a real Redis; skipped where Docker is not available
+@Testcontainers(disabledWithoutDocker = true)
+class RedisDrawQuotaStoreTest {
+
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private final UserLotteryRecordRepository recordRepository = mock(UserLotteryRecordRepository.class);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RedisDrawQuotaStore quotaStore;
+
+    private LotteryActivity activity;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.getRequiredConnectionFactory().getConnection().serverCommands().flushAll();
+        quotaStore = new RedisDrawQuotaStore(redisTemplate, recordRepository);
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setMaxDrawsPerUser(3);
+        activity.setEndTime(LocalDateTime.now().plusDays(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void testReleaseGivesBackReservedDraws() {
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(1L);
+
+        assertTrue(quotaStore.tryAcquire("user1", activity, 2));
+        assertFalse(quotaStore.tryAcquire("user1", activity, 1));
+        quotaStore.release("user1", 1L, 2);
+
+        assertEquals(1L, quotaStore.getDrawCount("user1", 1L));
+        assertTrue(quotaStore.tryAcquire("user1", activity, 2));
+    }
+
+    @Test
+    void testReleaseNeverCreatesOrUnderflowsCounter() {
+        quotaStore.release("user1", 1L, 2);
+        assertNull(redisTemplate.opsForHash().get("lottery:quota:{1}", "user1"));
+
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(0L);
+        assertTrue(quotaStore.tryAcquire("user1", activity, 1));
+        quotaStore.release("user1", 1L, 5);
+        assertEquals("1", redisTemplate.opsForHash().get("lottery:quota:{1}", "user1"));
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.exception.LotteryException;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Runs the draw and seed scripts against a real Redis; skipped where Docker is not available
+@Testcontainers(disabledWithoutDocker = true)
+class RedisDrawScriptLuaTest {
+
+    @Container
+    private static final GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private final PrizeRepository prizeRepository = mock(PrizeRepository.class);
+    private final UserLotteryRecordRepository recordRepository = mock(UserLotteryRecordRepository.class);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RedisDrawScriptService redisDrawScriptService;
+
+    private LotteryActivity activity;
+    private Prize prize;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.getRequiredConnectionFactory().getConnection().serverCommands().flushAll();
+
+        redisDrawScriptService = new RedisDrawScriptService(redisTemplate, prizeRepository, recordRepository,
+                new SharedSecureRandomSource(), mock(DrawRecordWriter.class), mock(PlatformTransactionManager.class), 100);
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setMaxDrawsPerUser(5);
+        activity.setEndTime(LocalDateTime.now().plusDays(1));
+
+        // Always won while in stock
+        prize = new Prize();
+        prize.setId(7L);
+        prize.setActivityId(1L);
+        prize.setName("Sure Thing");
+        prize.setProbabilityPpm(1_000_000);
+        prize.setTotalQuantity(2);
+        prize.setRemainingQuantity(2);
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(prize));
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void testDrawStopsAtStockAndQuota() {
+        List<LotteryDrawResponse.DrawResult> results = redisDrawScriptService.draw("user1", activity, 1L, 3);
+
+        assertEquals(List.of(true, true, false), results.stream().map(LotteryDrawResponse.DrawResult::getWon).toList());
+        assertEquals("0", redisTemplate.opsForHash().get("lottery:draw:{1}:stock", "7"));
+        assertEquals(3L, redisDrawScriptService.getUserDrawCount("user1", 1L));
+
+        LotteryException exception = assertThrows(LotteryException.class,
+                () -> redisDrawScriptService.draw("user1", activity, 2L, 3));
+        assertEquals("Draw count exceeds maximum allowed per user", exception.getMessage());
+        assertEquals(3L, redisDrawScriptService.getUserDrawCount("user1", 1L));
+    }
+
+    @Test
+    void testPrizeEditIsAppliedToStockAsDelta() {
+        redisDrawScriptService.draw("user1", activity, 1L, 1);
+
+        // The row still shows the stock before the draw: its record has not been flushed
+        prize.setTotalQuantity(5);
+        redisDrawScriptService.onPrizesChanged(new PrizesChangedEvent(1L));
+        redisDrawScriptService.draw("user2", activity, 2L, 1);
+
+        // 2 seeded, 1 drawn, 3 added by the edit, 1 drawn
+        assertEquals("3", redisTemplate.opsForHash().get("lottery:draw:{1}:stock", "7"));
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.LotteryException;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RedisDrawScriptServiceTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private PrizeRepository prizeRepository;
+
+    @Mock
+    private UserLotteryRecordRepository recordRepository;
+
+    @Mock
+    private DrawRecordWriter recordWriter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RedisDrawScriptService redisDrawScriptService;
+
+    private LotteryActivity testActivity;
+    private Prize testPrize;
+
+    @BeforeEach
+    void setUp() {
+        redisDrawScriptService = new RedisDrawScriptService(redisTemplate, prizeRepository, recordRepository,
+                new SharedSecureRandomSource(), recordWriter, transactionManager, 100);
+
+        testActivity = new LotteryActivity();
+        testActivity.setId(1L);
+        testActivity.setMaxDrawsPerUser(10);
+        testActivity.setEndTime(LocalDateTime.now().plusDays(1));
+
+        testPrize = new Prize();
+        testPrize.setId(7L);
+        testPrize.setActivityId(1L);
+        testPrize.setName("Test Prize");
+        testPrize.setProbabilityPpm(500_000);
+        testPrize.setTotalQuantity(10);
+        testPrize.setRemainingQuantity(10);
+    }
+
+    @Test
+    void testQuotaExceededRejectsDraw() {
+        stubDrawScript(List.of(List.of(RedisDrawScriptService.STATUS_QUOTA_EXCEEDED)));
+
+        LotteryException exception = assertThrows(LotteryException.class,
+                () -> redisDrawScriptService.draw("user1", testActivity, 1L, 2));
+
+        assertEquals("Draw count exceeds maximum allowed per user", exception.getMessage());
+        redisDrawScriptService.flush();
+        verify(recordRepository, never()).batchInsert(anyList());
+    }
+
+    @Test
+    void testSeedsMissingStateThenWritesRecordsBehindDraw() {
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(testPrize));
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(4L);
+        stubDrawScript(List.of(List.of(RedisDrawScriptService.STATUS_PRIZES_NOT_LOADED),
+                List.of(RedisDrawScriptService.STATUS_USER_NOT_LOADED),
+                List.of(RedisDrawScriptService.STATUS_OK, 7L, 0L)));
+
+        List<LotteryDrawResponse.DrawResult> results = redisDrawScriptService.draw("user1", testActivity, 1L, 2);
+
+        assertTrue(results.get(0).getWon());
+        assertEquals("Test Prize", results.get(0).getPrizeName());
+        assertFalse(results.get(1).getWon());
+        verify(redisTemplate, times(2)).execute(argThat((RedisScript<Long> script) -> script.getResultType() == Long.class),
+                anyList(), any(Object[].class));
+        verify(recordRepository, never()).batchInsert(anyList());
+
+        redisDrawScriptService.flush();
+
+        verify(recordRepository).batchInsert(argThat(records -> records.size() == 2
+                && records.get(0).getResult() == UserLotteryRecord.DrawResult.WON
+                && records.get(1).getResult() == UserLotteryRecord.DrawResult.NO_PRIZE));
+        verify(prizeRepository).batchDecrementRemainingQuantity(Map.of(7L, 1));
+    }
+
+    @Test
+    void testRecordsGoToWriterBeforeDrawIsAnswered() {
+        when(recordWriter.isEnabled()).thenReturn(true);
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(testPrize));
+        stubDrawScript(List.of(List.of(RedisDrawScriptService.STATUS_OK, 7L, 0L)));
+        doThrow(new AdmissionRejectedException("full", 1)).doNothing().when(recordWriter).write(anyList());
+
+        // Turned away by the writer after Redis committed the draw, so kept here instead
+        redisDrawScriptService.draw("user1", testActivity, 1L, 2);
+        redisDrawScriptService.draw("user2", testActivity, 2L, 2);
+
+        verify(recordWriter, times(2)).write(argThat(records -> records.size() == 2
+                && records.get(0).getResult() == UserLotteryRecord.DrawResult.WON));
+        redisDrawScriptService.flush();
+        verify(recordRepository).batchInsert(argThat(records -> records.size() == 2
+                && records.get(0).getUserId().equals("user1")));
+        verify(prizeRepository, times(2)).batchDecrementRemainingQuantity(Map.of(7L, 1));
+
+        redisDrawScriptService.flush();
+        verifyNoMoreInteractions(recordRepository);
+    }
+
+    @Test
+    void testFailedFlushKeepsEveryRecordForRetry() {
+        // Capacity for exactly the records of two draws
+        redisDrawScriptService = new RedisDrawScriptService(redisTemplate, prizeRepository, recordRepository,
+                new SharedSecureRandomSource(), recordWriter, transactionManager, 4);
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(testPrize));
+        stubDrawScript(List.of(List.of(RedisDrawScriptService.STATUS_OK, 7L, 0L)));
+        doThrow(new RuntimeException("db down")).doNothing().when(recordRepository).batchInsert(anyList());
+
+        redisDrawScriptService.draw("user1", testActivity, 1L, 2);
+        redisDrawScriptService.flush();
+        redisDrawScriptService.draw("user2", testActivity, 2L, 2);
+
+        // The failed batch still counts against the capacity, so the next draw is turned away
+        // before the script could commit it
+        assertThrows(AdmissionRejectedException.class, () -> redisDrawScriptService.draw("user3", testActivity, 3L, 1));
+        verify(redisTemplate, times(2)).execute(argThat((RedisScript<?> script) -> script.getResultType() == List.class),
+                anyList(), any(Object[].class));
+
+        redisDrawScriptService.flush();
+        verify(recordRepository).batchInsert(argThat(records -> records.size() == 4));
+        redisDrawScriptService.draw("user3", testActivity, 3L, 1);
+    }
+
+    @Test
+    void testRecordThatNeverGoesInIsDroppedWithoutHoldingBackOthers() {
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(testPrize));
+        stubDrawScript(List.of(List.of(RedisDrawScriptService.STATUS_OK, 0L, 0L)));
+        doAnswer(invocation -> {
+            List<UserLotteryRecord> records = invocation.getArgument(0);
+            if (records.stream().anyMatch(record -> record.getUserId().equals("poison"))) {
+                throw new DataIntegrityViolationException("Data too long for column 'user_id'");
+            }
+            return null;
+        }).when(recordRepository).batchInsert(anyList());
+
+        redisDrawScriptService.draw("user1", testActivity, 1L, 2);
+        redisDrawScriptService.draw("poison", testActivity, 2L, 2);
+        redisDrawScriptService.draw("user2", testActivity, 3L, 2);
+        for (int i = 0; i < 3; i++) {
+            redisDrawScriptService.flush();
+        }
+
+        verify(recordRepository, atLeastOnce()).batchInsert(argThat(records -> records.stream()
+                .anyMatch(record -> record.getUserId().equals("user2"))
+                && records.stream().noneMatch(record -> record.getUserId().equals("poison"))));
+        clearInvocations(recordRepository);
+        redisDrawScriptService.flush();
+        verify(recordRepository, never()).batchInsert(anyList());
+
+        // Both dropped records gave their room back
+        for (int i = 0; i < 50; i++) {
+            redisDrawScriptService.draw("user3", testActivity, 4L, 2);
+        }
+    }
+
+    @Test
+    void testPrizeEditKeepsStockInRedis() {
+        redisDrawScriptService.onPrizesChanged(new PrizesChangedEvent(1L));
+
+        verify(redisTemplate).delete("lottery:draw:{1}:weights");
+        verify(redisTemplate, never()).delete(anyCollection());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void stubDrawScript(List<List<Long>> responses) {
+        when(redisTemplate.execute(argThat((RedisScript script) -> script.getResultType() == List.class),
+                anyList(), any(Object[].class)))
+                .thenReturn(responses.get(0), responses.subList(1, responses.size()).toArray());
+    }
+}
@@ -0,0 +1,197 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.exception.AdmissionRejectedException;
+import org.example.demolottery.exception.DrawNotCommittedException;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.example.demolottery.util.ProbabilityUnits;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SingleWriterDrawEngineTest {
+
+    @Mock
+    private PrizeRepository prizeRepository;
+
+    @Mock
+    private UserLotteryRecordRepository recordRepository;
+
+    @Mock
+    private DrawRecordWriter recordWriter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SingleWriterDrawEngine engine;
+
+    private LotteryActivity activity;
+
+    private Prize prize;
+
+    @BeforeEach
+    void setUp() {
+        engine = new SingleWriterDrawEngine(prizeRepository, recordRepository, new SharedSecureRandomSource(),
+                recordWriter, transactionManager, 1024, 64, 5000);
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setSingleWriter(true);
+
+        // Always wins while in stock
+        prize = new Prize();
+        prize.setId(1L);
+        prize.setActivityId(1L);
+        prize.setName("Prize");
+        prize.setProbabilityPpm(ProbabilityUnits.PPM_SCALE);
+        prize.setTotalQuantity(100);
+        prize.setRemainingQuantity(100);
+
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(prize));
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(new ArrayList<>());
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testConcurrentDrawsNeverOversell() throws InterruptedException {
+        int threadCount = 16;
+        int drawsPerThread = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        AtomicInteger won = new AtomicInteger();
+        AtomicInteger decremented = new AtomicInteger();
+        doAnswer(invocation -> {
+            Map<Long, Integer> decrements = invocation.getArgument(0);
+            decremented.addAndGet(decrements.getOrDefault(1L, 0));
+            return null;
+        }).when(prizeRepository).batchDecrementRemainingQuantity(anyMap());
+
+        for (int i = 0; i < threadCount; i++) {
+            String userId = "user" + i;
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < drawsPerThread; j++) {
+                        for (LotteryDrawResponse.DrawResult result : engine.draw(userId, activity, 1L, 1)) {
+                            if (result.getWon()) {
+                                won.incrementAndGet();
+                            }
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(100, won.get());
+        assertEquals(100, decremented.get());
+        assertTrue(engine.isSoldOut(1L));
+    }
+
+    @Test
+    void testFailedCommitPutsStockBack() {
+        prize.setTotalQuantity(1);
+        prize.setRemainingQuantity(1);
+        doThrow(new DataAccessResourceFailureException("connection lost"))
+                .doNothing()
+                .when(recordRepository).batchInsert(anyList());
+
+        // Nothing of the batch was written, which tells the caller to give the quota back
+        assertThrows(DrawNotCommittedException.class, () -> engine.draw("user1", activity, 1L, 1));
+        List<LotteryDrawResponse.DrawResult> results = engine.draw("user1", activity, 2L, 1);
+
+        assertTrue(results.get(0).getWon());
+        verify(prizeRepository).batchDecrementRemainingQuantity(Map.of(1L, 1));
+    }
+
+    @Test
+    void testPrizeChangeReloadsStockFromCommittedRecords() {
+        engine.draw("user1", activity, 1L, 3);
+
+        List<Object[]> issued = new ArrayList<>();
+        issued.add(new Object[]{1L, 99L});
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(issued);
+        engine.onPrizesChanged(new PrizesChangedEvent(1L));
+
+        List<LotteryDrawResponse.DrawResult> results = engine.draw("user1", activity, 2L, 3);
+
+        assertEquals(1, results.stream().filter(LotteryDrawResponse.DrawResult::getWon).count());
+        assertTrue(engine.isSoldOut(1L));
+    }
+
+    @Test
+    void testRecordWriterTakesTheBatchAndIsDrainedBeforeReconcile() {
+        when(recordWriter.isEnabled()).thenReturn(true);
+        prize.setTotalQuantity(1);
+        prize.setRemainingQuantity(1);
+        doThrow(new AdmissionRejectedException("full", 1))
+                .doNothing()
+                .when(recordWriter).write(anyList());
+
+        // Turned away by the writer, so nothing was issued
+        assertThrows(DrawNotCommittedException.class, () -> engine.draw("user1", activity, 1L, 1));
+        assertTrue(engine.draw("user1", activity, 2L, 1).get(0).getWon());
+
+        verify(recordRepository, never()).batchInsert(anyList());
+        verify(prizeRepository).batchDecrementRemainingQuantity(Map.of(1L, 1));
+
+        // The next loop counts what the writer still had on its way
+        engine.onPrizesChanged(new PrizesChangedEvent(1L));
+        clearInvocations(recordWriter, recordRepository);
+        engine.draw("user1", activity, 3L, 1);
+
+        InOrder inOrder = inOrder(recordWriter, recordRepository);
+        inOrder.verify(recordWriter).awaitWritten();
+        inOrder.verify(recordRepository).countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON);
+    }
+
+    @Test
+    void testIdleLoopParksUntilNextDraw() throws InterruptedException {
+        engine.draw("user1", activity, 1L, 1);
+
+        Thread loopThread = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("draw-loop-1"))
+                .findFirst().orElseThrow();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (loopThread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, loopThread.getState());
+
+        assertTrue(engine.draw("user1", activity, 2L, 1).get(0).getWon());
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.UserActivityQuota;
+import org.example.demolottery.repository.UserActivityQuotaRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TableDrawQuotaStoreTest {
+
+    @Mock
+    private UserActivityQuotaRepository quotaRepository;
+
+    @Mock
+    private UserLotteryRecordRepository recordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TableDrawQuotaStore quotaStore;
+
+    private LotteryActivity activity;
+
+    @BeforeEach
+    void setUp() {
+        quotaStore = new TableDrawQuotaStore(quotaRepository, recordRepository, transactionManager);
+
+        activity = new LotteryActivity();
+        activity.setId(1L);
+        activity.setMaxDrawsPerUser(10);
+    }
+
+    @Test
+    void testChargesExistingRowWithoutCounting() {
+        when(quotaRepository.incrementDrawsUsed("user1", 1L, 3, 10)).thenReturn(1);
+
+        assertTrue(quotaStore.tryAcquire("user1", activity, 3));
+
+        verifyNoInteractions(recordRepository);
+    }
+
+    @Test
+    void testRejectsWhenRowIsFull() {
+        when(quotaRepository.incrementDrawsUsed("user1", 1L, 3, 10)).thenReturn(0);
+        when(quotaRepository.findDrawsUsed("user1", 1L)).thenReturn(Optional.of(9));
+
+        assertFalse(quotaStore.tryAcquire("user1", activity, 3));
+
+        verify(quotaRepository, never()).save(any());
+    }
+
+    @Test
+    void testSeedsMissingRowFromRecords() {
+        when(quotaRepository.incrementDrawsUsed("user1", 1L, 3, 10)).thenReturn(0).thenReturn(1);
+        when(quotaRepository.findDrawsUsed("user1", 1L)).thenReturn(Optional.empty());
+        when(recordRepository.countByUserIdAndActivityId("user1", 1L)).thenReturn(4L);
+
+        assertTrue(quotaStore.tryAcquire("user1", activity, 3));
+
+        verify(quotaRepository).save(argThat((UserActivityQuota quota) -> quota.getDrawsUsed() == 4));
+    }
+
+    @Test
+    void testConcurrentSeedIsTolerated() {
+        when(quotaRepository.incrementDrawsUsed("user1", 1L, 3, 10)).thenReturn(0).thenReturn(1);
+        when(quotaRepository.findDrawsUsed("user1", 1L)).thenReturn(Optional.empty());
+        when(quotaRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertTrue(quotaStore.tryAcquire("user1", activity, 3));
+    }
+
+    @Test
+    void testReleaseDecrementsRow() {
+        quotaStore.release("user1", 1L, 3);
+
+        verify(quotaRepository).decrementDrawsUsed("user1", 1L, 3);
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.demolottery.service;
+
+import org.example.demolottery.dto.response.LotteryDrawResponse;
+import org.example.demolottery.entity.LotteryActivity;
+import org.example.demolottery.entity.Prize;
+import org.example.demolottery.entity.UserLotteryRecord;
+import org.example.demolottery.event.PrizesChangedEvent;
+import org.example.demolottery.exception.LotteryException;
+import org.example.demolottery.repository.LotteryActivityRepository;
+import org.example.demolottery.repository.PrizeRepository;
+import org.example.demolottery.repository.UserLotteryRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TicketPoolServiceTest {
+
+    @Mock
+    private LotteryActivityRepository activityRepository;
+
+    @Mock
+    private PrizeRepository prizeRepository;
+
+    @Mock
+    private UserLotteryRecordRepository recordRepository;
+
+    @Mock
+    private DrawRecordWriter recordWriter;
+
+    private TicketPoolService ticketPoolService;
+
+    private LotteryActivity testActivity;
+    private Prize bigPrize;
+    private Prize smallPrize;
+
+    @BeforeEach
+    void setUp() {
+        ticketPoolService = new TicketPoolService(activityRepository, prizeRepository, recordRepository,
+                new SharedSecureRandomSource(), recordWriter);
+
+        testActivity = new LotteryActivity();
+        testActivity.setId(1L);
+        testActivity.setTicketPoolSize(1000);
+
+        bigPrize = createPrize(1L, "Big", 3);
+        smallPrize = createPrize(2L, "Small", 50);
+        when(prizeRepository.findByActivityIdOrderBySortOrderAsc(1L)).thenReturn(List.of(bigPrize, smallPrize));
+    }
+
+    @Test
+    void testPoolIssuesExactlyConfiguredQuantities() {
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(new ArrayList<>());
+        when(recordRepository.countByActivityId(1L)).thenReturn(0L);
+
+        Map<String, Integer> outcomes = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            for (LotteryDrawResponse.DrawResult result : ticketPoolService.draw("user" + i, testActivity, 1L, 10)) {
+                outcomes.merge(result.getWon() ? result.getPrizeName() : "No Prize", 1, Integer::sum);
+            }
+        }
+
+        assertEquals(3, outcomes.get("Big"));
+        assertEquals(50, outcomes.get("Small"));
+        assertEquals(947, outcomes.get("No Prize"));
+        assertThrows(LotteryException.class, () -> ticketPoolService.draw("late", testActivity, 1L, 1));
+    }
+
+    @Test
+    void testRebuiltPoolOnlyHoldsTicketsNotYetIssued() {
+        // 990 draws already recorded, including all Big prizes and 45 Small ones
+        List<Object[]> wonCounts = new ArrayList<>();
+        wonCounts.add(new Object[]{1L, 3L});
+        wonCounts.add(new Object[]{2L, 45L});
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(wonCounts);
+        when(recordRepository.countByActivityId(1L)).thenReturn(990L);
+
+        List<LotteryDrawResponse.DrawResult> results = ticketPoolService.draw("user1", testActivity, 1L, 10);
+
+        assertEquals(5, results.stream().filter(LotteryDrawResponse.DrawResult::getWon).count());
+        assertTrue(results.stream().filter(LotteryDrawResponse.DrawResult::getWon)
+                .allMatch(result -> "Small".equals(result.getPrizeName())));
+        assertThrows(LotteryException.class, () -> ticketPoolService.draw("user2", testActivity, 1L, 1));
+    }
+
+    @Test
+    void testPrizeEditWaitsForDrawsInFlight() throws InterruptedException {
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(new ArrayList<>());
+        when(recordRepository.countByActivityId(1L)).thenReturn(0L);
+        CountDownLatch drawn = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // Takes every ticket in a transaction that commits only when told to
+        Thread drawer = new Thread(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                ticketPoolService.draw("user1", testActivity, 1L, 1000);
+                drawn.countDown();
+                commit.await();
+                TransactionSynchronizationManager.getSynchronizations()
+                        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        });
+        drawer.start();
+        assertTrue(drawn.await(2, TimeUnit.SECONDS));
+
+        Thread editor = new Thread(() -> ticketPoolService.onPrizesChanged(new PrizesChangedEvent(1L)));
+        editor.start();
+        editor.join(200);
+        assertTrue(editor.isAlive());
+
+        List<Object[]> wonCounts = new ArrayList<>();
+        wonCounts.add(new Object[]{1L, 3L});
+        wonCounts.add(new Object[]{2L, 50L});
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(wonCounts);
+        when(recordRepository.countByActivityId(1L)).thenReturn(1000L);
+        commit.countDown();
+        editor.join(2000);
+        assertFalse(editor.isAlive());
+
+        // The rebuilt pool sees the committed draw and has nothing left to issue
+        assertThrows(LotteryException.class, () -> ticketPoolService.draw("user2", testActivity, 1L, 1));
+    }
+
+    @Test
+    void testRecordsHandedToWriterStayIssuedAndAreCountedOnRebuild() {
+        when(recordWriter.isEnabled()).thenReturn(true);
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(new ArrayList<>());
+        when(recordRepository.countByActivityId(1L)).thenReturn(0L);
+
+        // The writer accepted the records, then the draw's transaction rolled back
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ticketPoolService.draw("user1", testActivity, 1L, 1000);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(recordWriter).write(argThat(records -> records.size() == 1000));
+        verify(recordRepository, never()).batchInsert(anyList());
+        // Those tickets are not handed out again
+        assertThrows(LotteryException.class, () -> ticketPoolService.draw("user2", testActivity, 1L, 1));
+
+        // The next pool is built from the records once the writer has them in the database
+        ticketPoolService.onPrizesChanged(new PrizesChangedEvent(1L));
+        clearInvocations(recordWriter, recordRepository);
+        List<Object[]> wonCounts = new ArrayList<>();
+        wonCounts.add(new Object[]{1L, 3L});
+        wonCounts.add(new Object[]{2L, 50L});
+        when(recordRepository.countByActivityIdAndResultGroupByPrizeId(1L, UserLotteryRecord.DrawResult.WON))
+                .thenReturn(wonCounts);
+        when(recordRepository.countByActivityId(1L)).thenReturn(1000L);
+        assertThrows(LotteryException.class, () -> ticketPoolService.draw("user3", testActivity, 1L, 1));
+
+        InOrder inOrder = inOrder(recordWriter, recordRepository);
+        inOrder.verify(recordWriter).awaitWritten();
+        inOrder.verify(recordRepository).countByActivityId(1L);
+    }
+
+    private Prize createPrize(Long id, String name, int quantity) {
+        Prize prize = new Prize();
+        prize.setId(id);
+        prize.setActivityId(1L);
+        prize.setName(name);
+        prize.setTotalQuantity(quantity);
+        prize.setRemainingQuantity(quantity);
+        return prize;
+    }
+}
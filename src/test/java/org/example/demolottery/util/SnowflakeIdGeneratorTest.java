@@ -0,0 +1,80 @@
+package org.example.demolottery.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void testIdsCarryTimeAndNode() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, () -> SnowflakeIdGenerator.EPOCH_MILLIS + 1000);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertEquals(1000L, first >>> 22);
+        assertEquals(5L, (first >>> 12) & 1023);
+        assertEquals(0L, first & 4095);
+        assertEquals(first + 1, second);
+    }
+
+    @Test
+    void testIdsKeepIncreasingWhenClockStepsBackOrSequenceRunsOut() {
+        AtomicLong now = new AtomicLong(SnowflakeIdGenerator.EPOCH_MILLIS + 1000);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, now::get);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 5000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        // 5001 ids cannot fit one millisecond, so the last ones were borrowed from the next
+        assertEquals(1001L, previous >>> 22);
+
+        now.addAndGet(-500);
+        assertTrue(generator.nextId() > previous);
+    }
+
+    @Test
+    void testConcurrentIdsAreUnique() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        int threadCount = 8;
+        int idsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < idsPerThread; i++) {
+                        ids.add(generator.nextId());
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(threadCount * idsPerThread, ids.size());
+    }
+
+    @Test
+    void testRejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1));
+    }
+}